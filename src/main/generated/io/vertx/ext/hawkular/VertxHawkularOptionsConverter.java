@@ -27,21 +27,95 @@ import io.vertx.core.json.JsonArray;
 public class VertxHawkularOptionsConverter {
 
   public static void fromJson(JsonObject json, VertxHawkularOptions obj) {
+    if (json.getValue("adaptiveBatchingEnabled") instanceof Boolean) {
+      obj.setAdaptiveBatchingEnabled((Boolean)json.getValue("adaptiveBatchingEnabled"));
+    }
     if (json.getValue("batchDelay") instanceof Number) {
       obj.setBatchDelay(((Number)json.getValue("batchDelay")).intValue());
     }
+    if (json.getValue("batchMaxBytes") instanceof Number) {
+      obj.setBatchMaxBytes(((Number)json.getValue("batchMaxBytes")).intValue());
+    }
     if (json.getValue("batchSize") instanceof Number) {
       obj.setBatchSize(((Number)json.getValue("batchSize")).intValue());
     }
+    if (json.getValue("changeOnlyReportingEnabled") instanceof Boolean) {
+      obj.setChangeOnlyReportingEnabled((Boolean)json.getValue("changeOnlyReportingEnabled"));
+    }
+    if (json.getValue("compressionEnabled") instanceof Boolean) {
+      obj.setCompressionEnabled((Boolean)json.getValue("compressionEnabled"));
+    }
+    if (json.getValue("compressionThreshold") instanceof Number) {
+      obj.setCompressionThreshold(((Number)json.getValue("compressionThreshold")).intValue());
+    }
+    if (json.getValue("counterRatesEnabled") instanceof Boolean) {
+      obj.setCounterRatesEnabled((Boolean)json.getValue("counterRatesEnabled"));
+    }
+    if (json.getValue("dedicatedContextEnabled") instanceof Boolean) {
+      obj.setDedicatedContextEnabled((Boolean)json.getValue("dedicatedContextEnabled"));
+    }
     if (json.getValue("enabled") instanceof Boolean) {
       obj.setEnabled((Boolean)json.getValue("enabled"));
     }
+    if (json.getValue("endpoints") instanceof JsonArray) {
+      json.getJsonArray("endpoints").forEach(item -> {
+        if (item instanceof String)
+          obj.addEndpoint((String)item);
+      });
+    }
+    if (json.getValue("eventBusAddresses") instanceof JsonArray) {
+      json.getJsonArray("eventBusAddresses").forEach(item -> {
+        if (item instanceof String)
+          obj.addEventBusAddress((String)item);
+      });
+    }
+    if (json.getValue("eventBusLatencyHistogramsEnabled") instanceof Boolean) {
+      obj.setEventBusLatencyHistogramsEnabled((Boolean)json.getValue("eventBusLatencyHistogramsEnabled"));
+    }
+    if (json.getValue("exporter") instanceof String) {
+      obj.setExporter((String)json.getValue("exporter"));
+    }
+    if (json.getValue("heartbeatInterval") instanceof Number) {
+      obj.setHeartbeatInterval(((Number)json.getValue("heartbeatInterval")).intValue());
+    }
     if (json.getValue("host") instanceof String) {
       obj.setHost((String)json.getValue("host"));
     }
     if (json.getValue("httpOptions") instanceof JsonObject) {
       obj.setHttpOptions(new io.vertx.core.http.HttpClientOptions((JsonObject)json.getValue("httpOptions")));
     }
+    if (json.getValue("httpServerRoutes") instanceof JsonArray) {
+      json.getJsonArray("httpServerRoutes").forEach(item -> {
+        if (item instanceof String)
+          obj.addHttpServerRoute((String)item);
+      });
+    }
+    if (json.getValue("latencyHistogramsEnabled") instanceof Boolean) {
+      obj.setLatencyHistogramsEnabled((Boolean)json.getValue("latencyHistogramsEnabled"));
+    }
+    if (json.getValue("latencyPercentiles") instanceof JsonArray) {
+      java.util.ArrayList<java.lang.Double> list = new java.util.ArrayList<>();
+      json.getJsonArray("latencyPercentiles").forEach(item -> {
+        if (item instanceof Number)
+          list.add(((Number)item).doubleValue());
+      });
+      obj.setLatencyPercentiles(list);
+    }
+    if (json.getValue("maxEventBusAddresses") instanceof Number) {
+      obj.setMaxEventBusAddresses(((Number)json.getValue("maxEventBusAddresses")).intValue());
+    }
+    if (json.getValue("maxHttpServerRoutes") instanceof Number) {
+      obj.setMaxHttpServerRoutes(((Number)json.getValue("maxHttpServerRoutes")).intValue());
+    }
+    if (json.getValue("maxInFlightRequests") instanceof Number) {
+      obj.setMaxInFlightRequests(((Number)json.getValue("maxInFlightRequests")).intValue());
+    }
+    if (json.getValue("maxQueueBytes") instanceof Number) {
+      obj.setMaxQueueBytes(((Number)json.getValue("maxQueueBytes")).intValue());
+    }
+    if (json.getValue("maxQueueSize") instanceof Number) {
+      obj.setMaxQueueSize(((Number)json.getValue("maxQueueSize")).intValue());
+    }
     if (json.getValue("metricsBridgeAddress") instanceof String) {
       obj.setMetricsBridgeAddress((String)json.getValue("metricsBridgeAddress"));
     }
@@ -51,27 +125,106 @@ public class VertxHawkularOptionsConverter {
     if (json.getValue("metricsServiceUri") instanceof String) {
       obj.setMetricsServiceUri((String)json.getValue("metricsServiceUri"));
     }
+    if (json.getValue("overflowPolicy") instanceof String) {
+      obj.setOverflowPolicy(io.vertx.ext.hawkular.OverflowPolicy.valueOf((String)json.getValue("overflowPolicy")));
+    }
     if (json.getValue("port") instanceof Number) {
       obj.setPort(((Number)json.getValue("port")).intValue());
     }
     if (json.getValue("prefix") instanceof String) {
       obj.setPrefix((String)json.getValue("prefix"));
     }
+    if (json.getValue("requestTimeout") instanceof Number) {
+      obj.setRequestTimeout(((Number)json.getValue("requestTimeout")).intValue());
+    }
     if (json.getValue("schedule") instanceof Number) {
       obj.setSchedule(((Number)json.getValue("schedule")).intValue());
     }
+    if (json.getValue("shardingPolicy") instanceof String) {
+      obj.setShardingPolicy(io.vertx.ext.hawkular.ShardingPolicy.valueOf((String)json.getValue("shardingPolicy")));
+    }
+    if (json.getValue("spoolDirectory") instanceof String) {
+      obj.setSpoolDirectory((String)json.getValue("spoolDirectory"));
+    }
+    if (json.getValue("spoolEnabled") instanceof Boolean) {
+      obj.setSpoolEnabled((Boolean)json.getValue("spoolEnabled"));
+    }
+    if (json.getValue("spoolMaxSize") instanceof Number) {
+      obj.setSpoolMaxSize(((Number)json.getValue("spoolMaxSize")).intValue());
+    }
+    if (json.getValue("spoolSegmentSize") instanceof Number) {
+      obj.setSpoolSegmentSize(((Number)json.getValue("spoolSegmentSize")).intValue());
+    }
     if (json.getValue("tenant") instanceof String) {
       obj.setTenant((String)json.getValue("tenant"));
     }
+    if (json.getValue("tenantPrefixes") instanceof JsonObject) {
+      obj.setTenantPrefixes(((JsonObject)json.getValue("tenantPrefixes")).copy());
+    }
+    if (json.getValue("udpHost") instanceof String) {
+      obj.setUdpHost((String)json.getValue("udpHost"));
+    }
+    if (json.getValue("udpMaxPacketSize") instanceof Number) {
+      obj.setUdpMaxPacketSize(((Number)json.getValue("udpMaxPacketSize")).intValue());
+    }
+    if (json.getValue("udpPort") instanceof Number) {
+      obj.setUdpPort(((Number)json.getValue("udpPort")).intValue());
+    }
   }
 
   public static void toJson(VertxHawkularOptions obj, JsonObject json) {
+    json.put("adaptiveBatchingEnabled", obj.isAdaptiveBatchingEnabled());
     json.put("batchDelay", obj.getBatchDelay());
+    json.put("batchMaxBytes", obj.getBatchMaxBytes());
     json.put("batchSize", obj.getBatchSize());
+    json.put("changeOnlyReportingEnabled", obj.isChangeOnlyReportingEnabled());
+    json.put("compressionEnabled", obj.isCompressionEnabled());
+    json.put("compressionThreshold", obj.getCompressionThreshold());
+    json.put("counterRatesEnabled", obj.isCounterRatesEnabled());
+    json.put("dedicatedContextEnabled", obj.isDedicatedContextEnabled());
     json.put("enabled", obj.isEnabled());
+    if (obj.getEndpoints() != null) {
+      json.put("endpoints", new JsonArray(
+          obj.getEndpoints().
+              stream().
+              map(item -> item).
+              collect(java.util.stream.Collectors.toList())));
+    }
+    if (obj.getEventBusAddresses() != null) {
+      json.put("eventBusAddresses", new JsonArray(
+          obj.getEventBusAddresses().
+              stream().
+              map(item -> item).
+              collect(java.util.stream.Collectors.toList())));
+    }
+    json.put("eventBusLatencyHistogramsEnabled", obj.isEventBusLatencyHistogramsEnabled());
+    if (obj.getExporter() != null) {
+      json.put("exporter", obj.getExporter());
+    }
+    json.put("heartbeatInterval", obj.getHeartbeatInterval());
     if (obj.getHost() != null) {
       json.put("host", obj.getHost());
     }
+    if (obj.getHttpServerRoutes() != null) {
+      json.put("httpServerRoutes", new JsonArray(
+          obj.getHttpServerRoutes().
+              stream().
+              map(item -> item).
+              collect(java.util.stream.Collectors.toList())));
+    }
+    json.put("latencyHistogramsEnabled", obj.isLatencyHistogramsEnabled());
+    if (obj.getLatencyPercentiles() != null) {
+      json.put("latencyPercentiles", new JsonArray(
+          obj.getLatencyPercentiles().
+              stream().
+              map(item -> item).
+              collect(java.util.stream.Collectors.toList())));
+    }
+    json.put("maxEventBusAddresses", obj.getMaxEventBusAddresses());
+    json.put("maxHttpServerRoutes", obj.getMaxHttpServerRoutes());
+    json.put("maxInFlightRequests", obj.getMaxInFlightRequests());
+    json.put("maxQueueBytes", obj.getMaxQueueBytes());
+    json.put("maxQueueSize", obj.getMaxQueueSize());
     if (obj.getMetricsBridgeAddress() != null) {
       json.put("metricsBridgeAddress", obj.getMetricsBridgeAddress());
     }
@@ -79,13 +232,34 @@ public class VertxHawkularOptionsConverter {
     if (obj.getMetricsServiceUri() != null) {
       json.put("metricsServiceUri", obj.getMetricsServiceUri());
     }
+    if (obj.getOverflowPolicy() != null) {
+      json.put("overflowPolicy", obj.getOverflowPolicy().name());
+    }
     json.put("port", obj.getPort());
     if (obj.getPrefix() != null) {
       json.put("prefix", obj.getPrefix());
     }
+    json.put("requestTimeout", obj.getRequestTimeout());
     json.put("schedule", obj.getSchedule());
+    if (obj.getShardingPolicy() != null) {
+      json.put("shardingPolicy", obj.getShardingPolicy().name());
+    }
+    if (obj.getSpoolDirectory() != null) {
+      json.put("spoolDirectory", obj.getSpoolDirectory());
+    }
+    json.put("spoolEnabled", obj.isSpoolEnabled());
+    json.put("spoolMaxSize", obj.getSpoolMaxSize());
+    json.put("spoolSegmentSize", obj.getSpoolSegmentSize());
     if (obj.getTenant() != null) {
       json.put("tenant", obj.getTenant());
     }
+    if (obj.getTenantPrefixes() != null) {
+      json.put("tenantPrefixes", obj.getTenantPrefixes());
+    }
+    if (obj.getUdpHost() != null) {
+      json.put("udpHost", obj.getUdpHost());
+    }
+    json.put("udpMaxPacketSize", obj.getUdpMaxPacketSize());
+    json.put("udpPort", obj.getUdpPort());
   }
 }
\ No newline at end of file
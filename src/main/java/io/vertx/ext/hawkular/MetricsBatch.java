@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.ext.hawkular;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A batch of custom metrics to send to the metrics bridge, as an alternative to JSON messages.
+ * <p>
+ * Batches are transferred with a binary codec, registered when the event bus starts: locally the batch instance itself
+ * is delivered, and on a clustered event bus each distinct metric id is written once per batch. A batch must not be
+ * modified after it has been sent.
+ * <pre>
+ * vertx.eventBus().send("metrics", new MetricsBatch().gauge("cache.size", size).counter("orders", orderCount));
+ * </pre>
+ * This class is not thread-safe.
+ *
+ * @author Thomas Segismont
+ */
+public class MetricsBatch {
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private final Map<String, Integer> idIndexes = new HashMap<>();
+  private String[] ids;
+  private int idCount;
+  private int[] idRefs;
+  private long[] timestamps;
+  private double[] values;
+  private boolean[] counters;
+  private int size;
+
+  public MetricsBatch() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param initialCapacity expected number of points
+   */
+  public MetricsBatch(int initialCapacity) {
+    int capacity = Math.max(1, initialCapacity);
+    ids = new String[capacity];
+    idRefs = new int[capacity];
+    timestamps = new long[capacity];
+    values = new double[capacity];
+    counters = new boolean[capacity];
+  }
+
+  /**
+   * Adds a gauge point, timestamped now.
+   */
+  public MetricsBatch gauge(String id, double value) {
+    return add(id, System.currentTimeMillis(), value, false);
+  }
+
+  /**
+   * Adds a gauge point.
+   */
+  public MetricsBatch gauge(String id, long timestamp, double value) {
+    return add(id, timestamp, value, false);
+  }
+
+  /**
+   * Adds a counter point, timestamped now.
+   */
+  public MetricsBatch counter(String id, double value) {
+    return add(id, System.currentTimeMillis(), value, true);
+  }
+
+  /**
+   * Adds a counter point.
+   */
+  public MetricsBatch counter(String id, long timestamp, double value) {
+    return add(id, timestamp, value, true);
+  }
+
+  /**
+   * Adds a point.
+   *
+   * @param id        the metric id
+   * @param timestamp the point timestamp, in milliseconds
+   * @param value     the point value
+   * @param counter   true for a counter, false for a gauge
+   * @return the current {@link MetricsBatch} instance
+   */
+  public MetricsBatch add(String id, long timestamp, double value, boolean counter) {
+    if (size == timestamps.length) {
+      int capacity = 2 * size;
+      idRefs = Arrays.copyOf(idRefs, capacity);
+      timestamps = Arrays.copyOf(timestamps, capacity);
+      values = Arrays.copyOf(values, capacity);
+      counters = Arrays.copyOf(counters, capacity);
+    }
+    idRefs[size] = idIndex(id);
+    timestamps[size] = timestamp;
+    values[size] = value;
+    counters[size] = counter;
+    size++;
+    return this;
+  }
+
+  private int idIndex(String id) {
+    Integer index = idIndexes.get(id);
+    if (index == null) {
+      if (idCount == ids.length) {
+        ids = Arrays.copyOf(ids, 2 * idCount);
+      }
+      index = idCount;
+      ids[idCount++] = id;
+      idIndexes.put(id, index);
+    }
+    return index;
+  }
+
+  /**
+   * @return the number of points
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the number of distinct metric ids
+   */
+  public int idCount() {
+    return idCount;
+  }
+
+  /**
+   * @param index the index of a distinct metric id, between 0 and {@link #idCount()}
+   * @return the metric id
+   */
+  public String id(int index) {
+    return ids[index];
+  }
+
+  /**
+   * @param point the index of a point, between 0 and {@link #size()}
+   * @return the index of the point's metric id
+   */
+  public int idIndexOf(int point) {
+    return idRefs[point];
+  }
+
+  /**
+   * @param point the index of a point, between 0 and {@link #size()}
+   * @return the point's metric id
+   */
+  public String idOf(int point) {
+    return ids[idRefs[point]];
+  }
+
+  /**
+   * @param point the index of a point, between 0 and {@link #size()}
+   * @return the point's timestamp, in milliseconds
+   */
+  public long timestampOf(int point) {
+    return timestamps[point];
+  }
+
+  /**
+   * @param point the index of a point, between 0 and {@link #size()}
+   * @return the point's value
+   */
+  public double valueOf(int point) {
+    return values[point];
+  }
+
+  /**
+   * @param point the index of a point, between 0 and {@link #size()}
+   * @return true if the point belongs to a counter, false for a gauge
+   */
+  public boolean isCounter(int point) {
+    return counters[point];
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular;
+
+import io.vertx.codegen.annotations.VertxGen;
+
+/**
+ * What to do when the sender queue is full.
+ *
+ * @author Thomas Segismont
+ */
+@VertxGen
+public enum OverflowPolicy {
+  /**
+   * Drop the oldest queued metrics to make room for the new ones.
+   */
+  DROP_OLDEST,
+  /**
+   * Drop the new metrics.
+   */
+  DROP_NEWEST,
+  /**
+   * Keep only the latest queued value of each metric. If this is not enough, drop the oldest queued metrics.
+   */
+  COALESCE
+}
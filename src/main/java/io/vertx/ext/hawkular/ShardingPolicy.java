@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular;
+
+import io.vertx.codegen.annotations.VertxGen;
+
+/**
+ * How batches are distributed when several Hawkular endpoints are configured.
+ *
+ * @author Thomas Segismont
+ */
+@VertxGen
+public enum ShardingPolicy {
+  /**
+   * Send each batch to the next healthy endpoint.
+   */
+  ROUND_ROBIN,
+  /**
+   * Split batches so that points of a metric are always sent to the same endpoint, as long as it is healthy.
+   */
+  METRIC_ID_HASH
+}
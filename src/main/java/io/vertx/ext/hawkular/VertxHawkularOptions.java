@@ -20,6 +20,10 @@ import io.vertx.core.http.HttpClientOptions;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.metrics.MetricsOptions;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Vert.x Hawkular monitoring configuration.
  *
@@ -27,6 +31,11 @@ import io.vertx.core.metrics.MetricsOptions;
  */
 @DataObject(generateConverter = true, inheritConverter = true)
 public class VertxHawkularOptions extends MetricsOptions {
+  /**
+   * The default metrics exporter = hawkular.
+   */
+  public static final String DEFAULT_EXPORTER = "hawkular";
+
   /**
    * The default Hawkular server host = localhost.
    */
@@ -62,6 +71,11 @@ public class VertxHawkularOptions extends MetricsOptions {
    */
   public static final int DEFAULT_BATCH_SIZE = 50;
 
+  /**
+   * Default value for the maximum size of a batch (in bytes) = 0 (batches are limited by number of metrics).
+   */
+  public static final int DEFAULT_BATCH_MAX_BYTES = 0;
+
   /**
    * Default value for the maximum delay between two consecutive batches (in seconds) = 1.
    */
@@ -78,45 +92,263 @@ public class VertxHawkularOptions extends MetricsOptions {
    */
   public static final boolean DEFAULT_METRICS_BRIDGE_ENABLED = false;
 
+  /**
+   * The default value to enable / disable compression of the requests sent to the Hawkular server. Disabled by
+   * default.
+   */
+  public static final boolean DEFAULT_COMPRESSION_ENABLED = false;
+
+  /**
+   * Default value for the minimum size of a request body to be compressed (in bytes) = 1024.
+   */
+  public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+  /**
+   * Default value for the maximum number of metrics queued or in flight = 10000.
+   */
+  public static final int DEFAULT_MAX_QUEUE_SIZE = 10000;
+
+  /**
+   * Default value for the maximum estimated size of metrics queued or in flight (in bytes) = 0 (no limit).
+   */
+  public static final int DEFAULT_MAX_QUEUE_BYTES = 0;
+
+  /**
+   * The default policy applied when the sender queue is full = {@link OverflowPolicy#DROP_OLDEST}.
+   */
+  public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.DROP_OLDEST;
+
+  /**
+   * Default value for the maximum number of requests sent to the Hawkular server and waiting for a response = 4.
+   */
+  public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 4;
+
+  /**
+   * Default value for the time after which a request to the Hawkular server fails if no response is received
+   * (in milliseconds) = 10000.
+   */
+  public static final int DEFAULT_REQUEST_TIMEOUT = 10000;
+
+  /**
+   * The default value to enable / disable the disk spool for metrics which could not be sent. Disabled by default.
+   */
+  public static final boolean DEFAULT_SPOOL_ENABLED = false;
+
+  /**
+   * The default spool directory = .vertx-monitor-spool (relative to the working directory).
+   */
+  public static final String DEFAULT_SPOOL_DIRECTORY = ".vertx-monitor-spool";
+
+  /**
+   * Default value for the size of a spool segment file (in bytes) = 4 MiB.
+   */
+  public static final int DEFAULT_SPOOL_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+  /**
+   * Default value for the maximum total size of spool segment files (in bytes) = 64 MiB.
+   */
+  public static final int DEFAULT_SPOOL_MAX_SIZE = 64 * 1024 * 1024;
+
+  /**
+   * The default StatsD or InfluxDB UDP server host = localhost.
+   */
+  public static final String DEFAULT_UDP_HOST = "localhost";
+
+  /**
+   * The default StatsD or InfluxDB UDP server port = 8125.
+   */
+  public static final int DEFAULT_UDP_PORT = 8125;
+
+  /**
+   * Default value for the maximum size of a datagram payload (in bytes) = 1432, which fits in a 1500 bytes Ethernet
+   * MTU.
+   */
+  public static final int DEFAULT_UDP_MAX_PACKET_SIZE = 1432;
+
+  /**
+   * The default value to enable / disable running metrics collection and sending on a dedicated worker context.
+   * Disabled by default. The worker context is not isolated, it shares the Vert.x worker pool.
+   */
+  public static final boolean DEFAULT_DEDICATED_CONTEXT_ENABLED = false;
+
+  /**
+   * The default value to enable / disable adaptive batching. Disabled by default.
+   */
+  public static final boolean DEFAULT_ADAPTIVE_BATCHING_ENABLED = false;
+
+  /**
+   * The default policy used to distribute batches among Hawkular endpoints = {@link ShardingPolicy#ROUND_ROBIN}.
+   */
+  public static final ShardingPolicy DEFAULT_SHARDING_POLICY = ShardingPolicy.ROUND_ROBIN;
+
+  /**
+   * The default value to enable / disable change-only reporting. Disabled by default.
+   */
+  public static final boolean DEFAULT_CHANGE_ONLY_REPORTING_ENABLED = false;
+
+  /**
+   * Default interval after which an unchanged point is sent anyway, with change-only reporting = 60 seconds.
+   */
+  public static final int DEFAULT_HEARTBEAT_INTERVAL = 60;
+
+  /**
+   * The default value to enable / disable client-side counter rates. Disabled by default.
+   */
+  public static final boolean DEFAULT_COUNTER_RATES_ENABLED = false;
+
+  /**
+   * The default value to enable / disable latency histograms. Disabled by default.
+   */
+  public static final boolean DEFAULT_LATENCY_HISTOGRAMS_ENABLED = false;
+
+  /**
+   * Default maximum number of per route series of an HTTP server = 100.
+   */
+  public static final int DEFAULT_MAX_HTTP_SERVER_ROUTES = 100;
+
+  /**
+   * The default value to enable / disable event bus handlers latency histograms. Disabled by default.
+   */
+  public static final boolean DEFAULT_EVENT_BUS_LATENCY_HISTOGRAMS_ENABLED = false;
+
+  /**
+   * Default maximum number of per address event bus series = 100.
+   */
+  public static final int DEFAULT_MAX_EVENT_BUS_ADDRESSES = 100;
+
+  private String exporter;
+  private List<String> endpoints;
   private String host;
   private int port;
   private HttpClientOptions httpOptions;
   private String metricsServiceUri;
   private String tenant;
+  private JsonObject tenantPrefixes;
   private int schedule;
   private String prefix;
   private int batchSize;
+  private int batchMaxBytes;
   private int batchDelay;
   private boolean metricsBridgeEnabled;
   private String metricsBridgeAddress;
+  private boolean compressionEnabled;
+  private int compressionThreshold;
+  private int maxQueueSize;
+  private int maxQueueBytes;
+  private OverflowPolicy overflowPolicy;
+  private int maxInFlightRequests;
+  private int requestTimeout;
+  private boolean spoolEnabled;
+  private String spoolDirectory;
+  private int spoolSegmentSize;
+  private int spoolMaxSize;
+  private String udpHost;
+  private int udpPort;
+  private int udpMaxPacketSize;
+  private boolean dedicatedContextEnabled;
+  private boolean adaptiveBatchingEnabled;
+  private ShardingPolicy shardingPolicy;
+  private boolean changeOnlyReportingEnabled;
+  private int heartbeatInterval;
+  private boolean counterRatesEnabled;
+  private boolean latencyHistogramsEnabled;
+  private List<String> httpServerRoutes;
+  private int maxHttpServerRoutes;
+  private boolean eventBusLatencyHistogramsEnabled;
+  private List<String> eventBusAddresses;
+  private int maxEventBusAddresses;
+  private List<Double> latencyPercentiles;
 
   public VertxHawkularOptions() {
+    exporter = DEFAULT_EXPORTER;
+    endpoints = new ArrayList<>();
     host = DEFAULT_HOST;
     port = DEFAULT_PORT;
-    httpOptions = new HttpClientOptions();
+    // Reuse connections to the Hawkular servers and don't wait for a response before sending a request
+    httpOptions = new HttpClientOptions().setKeepAlive(true).setPipelining(true);
     metricsServiceUri = DEFAULT_METRICS_URI;
     tenant = DEFAULT_TENANT;
+    tenantPrefixes = new JsonObject();
     schedule = DEFAULT_SCHEDULE;
     prefix = DEFAULT_PREFIX;
     batchSize = DEFAULT_BATCH_SIZE;
+    batchMaxBytes = DEFAULT_BATCH_MAX_BYTES;
     batchDelay = DEFAULT_BATCH_DELAY;
     metricsBridgeEnabled = DEFAULT_METRICS_BRIDGE_ENABLED;
     metricsBridgeAddress = DEFAULT_METRICS_BRIDGE_ADDRESS;
+    compressionEnabled = DEFAULT_COMPRESSION_ENABLED;
+    compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+    maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+    maxQueueBytes = DEFAULT_MAX_QUEUE_BYTES;
+    overflowPolicy = DEFAULT_OVERFLOW_POLICY;
+    maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+    requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+    spoolEnabled = DEFAULT_SPOOL_ENABLED;
+    spoolDirectory = DEFAULT_SPOOL_DIRECTORY;
+    spoolSegmentSize = DEFAULT_SPOOL_SEGMENT_SIZE;
+    spoolMaxSize = DEFAULT_SPOOL_MAX_SIZE;
+    udpHost = DEFAULT_UDP_HOST;
+    udpPort = DEFAULT_UDP_PORT;
+    udpMaxPacketSize = DEFAULT_UDP_MAX_PACKET_SIZE;
+    dedicatedContextEnabled = DEFAULT_DEDICATED_CONTEXT_ENABLED;
+    adaptiveBatchingEnabled = DEFAULT_ADAPTIVE_BATCHING_ENABLED;
+    shardingPolicy = DEFAULT_SHARDING_POLICY;
+    changeOnlyReportingEnabled = DEFAULT_CHANGE_ONLY_REPORTING_ENABLED;
+    heartbeatInterval = DEFAULT_HEARTBEAT_INTERVAL;
+    counterRatesEnabled = DEFAULT_COUNTER_RATES_ENABLED;
+    latencyHistogramsEnabled = DEFAULT_LATENCY_HISTOGRAMS_ENABLED;
+    latencyPercentiles = new ArrayList<>(Arrays.asList(50.0, 90.0, 99.0, 99.9));
+    httpServerRoutes = new ArrayList<>();
+    maxHttpServerRoutes = DEFAULT_MAX_HTTP_SERVER_ROUTES;
+    eventBusLatencyHistogramsEnabled = DEFAULT_EVENT_BUS_LATENCY_HISTOGRAMS_ENABLED;
+    eventBusAddresses = new ArrayList<>();
+    maxEventBusAddresses = DEFAULT_MAX_EVENT_BUS_ADDRESSES;
   }
 
   public VertxHawkularOptions(VertxHawkularOptions other) {
     super(other);
+    exporter = other.exporter;
+    endpoints = new ArrayList<>(other.endpoints);
     host = other.host;
     port = other.port;
     httpOptions = other.httpOptions;
     metricsServiceUri = other.metricsServiceUri;
     tenant = other.tenant;
+    tenantPrefixes = other.tenantPrefixes.copy();
     schedule = other.schedule;
     prefix = other.prefix;
     batchSize = other.batchSize;
+    batchMaxBytes = other.batchMaxBytes;
     batchDelay = other.batchDelay;
     metricsBridgeAddress = other.metricsBridgeAddress;
     metricsBridgeEnabled = other.metricsBridgeEnabled;
+    compressionEnabled = other.compressionEnabled;
+    compressionThreshold = other.compressionThreshold;
+    maxQueueSize = other.maxQueueSize;
+    maxQueueBytes = other.maxQueueBytes;
+    overflowPolicy = other.overflowPolicy;
+    maxInFlightRequests = other.maxInFlightRequests;
+    requestTimeout = other.requestTimeout;
+    spoolEnabled = other.spoolEnabled;
+    spoolDirectory = other.spoolDirectory;
+    spoolSegmentSize = other.spoolSegmentSize;
+    spoolMaxSize = other.spoolMaxSize;
+    udpHost = other.udpHost;
+    udpPort = other.udpPort;
+    udpMaxPacketSize = other.udpMaxPacketSize;
+    dedicatedContextEnabled = other.dedicatedContextEnabled;
+    adaptiveBatchingEnabled = other.adaptiveBatchingEnabled;
+    shardingPolicy = other.shardingPolicy;
+    changeOnlyReportingEnabled = other.changeOnlyReportingEnabled;
+    heartbeatInterval = other.heartbeatInterval;
+    counterRatesEnabled = other.counterRatesEnabled;
+    latencyHistogramsEnabled = other.latencyHistogramsEnabled;
+    latencyPercentiles = new ArrayList<>(other.latencyPercentiles);
+    httpServerRoutes = new ArrayList<>(other.httpServerRoutes);
+    maxHttpServerRoutes = other.maxHttpServerRoutes;
+    eventBusLatencyHistogramsEnabled = other.eventBusLatencyHistogramsEnabled;
+    eventBusAddresses = new ArrayList<>(other.eventBusAddresses);
+    maxEventBusAddresses = other.maxEventBusAddresses;
   }
 
   public VertxHawkularOptions(JsonObject json) {
@@ -124,6 +356,47 @@ public class VertxHawkularOptions extends MetricsOptions {
     VertxHawkularOptionsConverter.fromJson(json, this);
   }
 
+  /**
+   * @return the name of the metrics exporter
+   */
+  public String getExporter() {
+    return exporter;
+  }
+
+  /**
+   * Set the name of the metrics exporter: hawkular, statsd or influx. Other exporters are discovered with
+   * {@link java.util.ServiceLoader}, see {@link io.vertx.ext.hawkular.spi.MetricsExporterFactory}.
+   */
+  public VertxHawkularOptions setExporter(String exporter) {
+    this.exporter = exporter;
+    return this;
+  }
+
+  /**
+   * @return the Hawkular endpoints, as {@code host:port} strings
+   */
+  public List<String> getEndpoints() {
+    return endpoints;
+  }
+
+  /**
+   * Set the Hawkular endpoints, as {@code host:port} strings. When not empty, batches are distributed among the
+   * endpoints according to the sharding policy, and the host and port options are ignored. Endpoints which fail are
+   * avoided until they recover.
+   */
+  public VertxHawkularOptions setEndpoints(List<String> endpoints) {
+    this.endpoints = endpoints;
+    return this;
+  }
+
+  /**
+   * Add a Hawkular endpoint, as a {@code host:port} string.
+   */
+  public VertxHawkularOptions addEndpoint(String endpoint) {
+    endpoints.add(endpoint);
+    return this;
+  }
+
   /**
    * @return the Hawkular Metrics service host
    */
@@ -199,6 +472,30 @@ public class VertxHawkularOptions extends MetricsOptions {
     return this;
   }
 
+  /**
+   * @return the tenants metrics are sent to, by metric name prefix
+   */
+  public JsonObject getTenantPrefixes() {
+    return tenantPrefixes;
+  }
+
+  /**
+   * Set the tenants metrics are sent to, by metric name prefix. Keys are metric name prefixes, values are tenants: a
+   * metric is sent to the tenant of the longest matching prefix, or to the default tenant if no prefix matches.
+   */
+  public VertxHawkularOptions setTenantPrefixes(JsonObject tenantPrefixes) {
+    this.tenantPrefixes = tenantPrefixes;
+    return this;
+  }
+
+  /**
+   * Send metrics which name starts with {@code prefix} to {@code tenant}.
+   */
+  public VertxHawkularOptions addTenantPrefix(String prefix, String tenant) {
+    tenantPrefixes.put(prefix, tenant);
+    return this;
+  }
+
   /**
    * @return the metric collection interval (in seconds)
    */
@@ -244,6 +541,23 @@ public class VertxHawkularOptions extends MetricsOptions {
     return this;
   }
 
+  /**
+   * @return the maximum size of a batch (in bytes)
+   */
+  public int getBatchMaxBytes() {
+    return batchMaxBytes;
+  }
+
+  /**
+   * Set the maximum size of a batch (in bytes), before compression. When positive, batches are limited by size
+   * instead of number of metrics, and a batch is sent as soon as queued metrics reach this size. Sizes are upper bounds
+   * computed before encoding, so a payload never exceeds this limit, unless a single metric is bigger than the limit.
+   */
+  public VertxHawkularOptions setBatchMaxBytes(int batchMaxBytes) {
+    this.batchMaxBytes = batchMaxBytes;
+    return this;
+  }
+
   /**
    * @return the maximum delay between two consecutive batches
    */
@@ -277,7 +591,7 @@ public class VertxHawkularOptions extends MetricsOptions {
   /**
    * Sets the metric bridge address on which the application is sending the custom metrics. Application can send
    * metrics to this event bus address. The message is a JSON object specifying at least the {@code source} and
-   * {@code value} fields ({@code value} is a double).
+   * {@code value} fields ({@code value} is a double), a JSON array of such objects, or a {@link MetricsBatch}.
    * <p/>
    * Don't forget to also enable the bridge with {@link #setMetricsBridgeEnabled(boolean)}.
    *
@@ -308,4 +622,476 @@ public class VertxHawkularOptions extends MetricsOptions {
     this.metricsBridgeEnabled = metricsBridgeEnabled;
     return this;
   }
+
+  /**
+   * Checks whether or not the requests sent to the Hawkular server are compressed.
+   *
+   * @return {@code true} if compression is enabled, {@code false} otherwise.
+   */
+  public boolean isCompressionEnabled() {
+    return compressionEnabled;
+  }
+
+  /**
+   * Sets whether or not the requests sent to the Hawkular server should be compressed. When enabled, request bodies
+   * larger than the compression threshold are sent with {@code Content-Encoding: gzip}.
+   *
+   * @param compressionEnabled {@code true} to enable compression, {@code false} to disable it.
+   * @return the current {@link VertxHawkularOptions} instance
+   */
+  public VertxHawkularOptions setCompressionEnabled(boolean compressionEnabled) {
+    this.compressionEnabled = compressionEnabled;
+    return this;
+  }
+
+  /**
+   * @return the minimum size of a request body to be compressed (in bytes)
+   */
+  public int getCompressionThreshold() {
+    return compressionThreshold;
+  }
+
+  /**
+   * Set the minimum size of a request body to be compressed (in bytes).
+   */
+  public VertxHawkularOptions setCompressionThreshold(int compressionThreshold) {
+    this.compressionThreshold = compressionThreshold;
+    return this;
+  }
+
+  /**
+   * @return the maximum number of metrics queued or in flight
+   */
+  public int getMaxQueueSize() {
+    return maxQueueSize;
+  }
+
+  /**
+   * Set the maximum number of metrics queued or in flight. When it is exceeded, metrics are dropped according to the
+   * overflow policy. It bounds all tenants together: when metrics are sent to several tenants, it is split evenly
+   * between the queues of the tenants.
+   */
+  public VertxHawkularOptions setMaxQueueSize(int maxQueueSize) {
+    this.maxQueueSize = maxQueueSize;
+    return this;
+  }
+
+  /**
+   * @return the maximum estimated size of metrics queued or in flight (in bytes)
+   */
+  public int getMaxQueueBytes() {
+    return maxQueueBytes;
+  }
+
+  /**
+   * Set the maximum estimated size of metrics queued or in flight (in bytes). When it is exceeded, metrics are dropped
+   * according to the overflow policy. Zero or negative means no limit. It bounds all tenants together: when metrics
+   * are sent to several tenants, it is split evenly between the queues of the tenants.
+   */
+  public VertxHawkularOptions setMaxQueueBytes(int maxQueueBytes) {
+    this.maxQueueBytes = maxQueueBytes;
+    return this;
+  }
+
+  /**
+   * @return the policy applied when the sender queue is full
+   */
+  public OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  /**
+   * Set the policy applied when the sender queue is full.
+   */
+  public VertxHawkularOptions setOverflowPolicy(OverflowPolicy overflowPolicy) {
+    this.overflowPolicy = overflowPolicy;
+    return this;
+  }
+
+  /**
+   * @return the maximum number of requests sent to the Hawkular server and waiting for a response
+   */
+  public int getMaxInFlightRequests() {
+    return maxInFlightRequests;
+  }
+
+  /**
+   * Set the maximum number of requests sent to the Hawkular server and waiting for a response. When it is reached,
+   * batches stay in the sender queue until a response is received.
+   */
+  public VertxHawkularOptions setMaxInFlightRequests(int maxInFlightRequests) {
+    this.maxInFlightRequests = maxInFlightRequests;
+    return this;
+  }
+
+  /**
+   * @return the time after which a request to the Hawkular server fails if no response is received (in milliseconds)
+   */
+  public int getRequestTimeout() {
+    return requestTimeout;
+  }
+
+  /**
+   * Set the time after which a request to the Hawkular server fails if no response is received (in milliseconds). A
+   * request which times out leaves the in-flight window and its batch is handled as undelivered. Zero or negative means
+   * no timeout.
+   */
+  public VertxHawkularOptions setRequestTimeout(int requestTimeout) {
+    this.requestTimeout = requestTimeout;
+    return this;
+  }
+
+  /**
+   * Checks whether or not the disk spool is enabled.
+   *
+   * @return {@code true} if the spool is enabled, {@code false} otherwise.
+   */
+  public boolean isSpoolEnabled() {
+    return spoolEnabled;
+  }
+
+  /**
+   * Sets whether or not the disk spool should be enabled. When enabled, batches which could not be sent, or which
+   * would overflow the sender queue, are written to disk and sent again once the Hawkular server is reachable.
+   *
+   * @param spoolEnabled {@code true} to enable the spool, {@code false} to disable it.
+   * @return the current {@link VertxHawkularOptions} instance
+   */
+  public VertxHawkularOptions setSpoolEnabled(boolean spoolEnabled) {
+    this.spoolEnabled = spoolEnabled;
+    return this;
+  }
+
+  /**
+   * @return the directory where spool segment files are stored
+   */
+  public String getSpoolDirectory() {
+    return spoolDirectory;
+  }
+
+  /**
+   * Set the directory where spool segment files are stored. It must not be shared by different Vert.x instances.
+   */
+  public VertxHawkularOptions setSpoolDirectory(String spoolDirectory) {
+    this.spoolDirectory = spoolDirectory;
+    return this;
+  }
+
+  /**
+   * @return the size of a spool segment file (in bytes)
+   */
+  public int getSpoolSegmentSize() {
+    return spoolSegmentSize;
+  }
+
+  /**
+   * Set the size of a spool segment file (in bytes). Batches bigger than a segment can't be spooled.
+   */
+  public VertxHawkularOptions setSpoolSegmentSize(int spoolSegmentSize) {
+    this.spoolSegmentSize = spoolSegmentSize;
+    return this;
+  }
+
+  /**
+   * @return the maximum total size of spool segment files (in bytes)
+   */
+  public int getSpoolMaxSize() {
+    return spoolMaxSize;
+  }
+
+  /**
+   * Set the maximum total size of spool segment files (in bytes). When it is reached, the oldest segment is discarded.
+   */
+  public VertxHawkularOptions setSpoolMaxSize(int spoolMaxSize) {
+    this.spoolMaxSize = spoolMaxSize;
+    return this;
+  }
+
+  /**
+   * @return the StatsD or InfluxDB UDP server host
+   */
+  public String getUdpHost() {
+    return udpHost;
+  }
+
+  /**
+   * Set the StatsD or InfluxDB UDP server host, used by the statsd and influx exporters.
+   */
+  public VertxHawkularOptions setUdpHost(String udpHost) {
+    this.udpHost = udpHost;
+    return this;
+  }
+
+  /**
+   * @return the StatsD or InfluxDB UDP server port
+   */
+  public int getUdpPort() {
+    return udpPort;
+  }
+
+  /**
+   * Set the StatsD or InfluxDB UDP server port, used by the statsd and influx exporters.
+   */
+  public VertxHawkularOptions setUdpPort(int udpPort) {
+    this.udpPort = udpPort;
+    return this;
+  }
+
+  /**
+   * @return the maximum size of a datagram payload (in bytes)
+   */
+  public int getUdpMaxPacketSize() {
+    return udpMaxPacketSize;
+  }
+
+  /**
+   * Set the maximum size of a datagram payload (in bytes). Lines are packed in datagrams up to this size, it should
+   * fit in the network MTU to avoid IP fragmentation.
+   */
+  public VertxHawkularOptions setUdpMaxPacketSize(int udpMaxPacketSize) {
+    this.udpMaxPacketSize = udpMaxPacketSize;
+    return this;
+  }
+
+  /**
+   * @return true if metrics collection and sending run on a dedicated worker context, which shares the worker pool
+   */
+  public boolean isDedicatedContextEnabled() {
+    return dedicatedContextEnabled;
+  }
+
+  /**
+   * Set whether metrics collection, encoding and sending run on a dedicated worker context. When disabled, they run on
+   * an event loop context, which may be shared with application verticles.
+   * <p>
+   * This mode only keeps metrics work off the event loops, it is not isolated: there is no thread of its own, and no
+   * hand-off queue. The context tasks run one at a time on the Vert.x worker pool, which is shared with the application
+   * blocking code ({@code executeBlocking} and worker verticles). Long blocking tasks can starve metrics collection and
+   * sending, and a slow collection holds a worker thread the application could use.
+   */
+  public VertxHawkularOptions setDedicatedContextEnabled(boolean dedicatedContextEnabled) {
+    this.dedicatedContextEnabled = dedicatedContextEnabled;
+    return this;
+  }
+
+  /**
+   * @return true if batch size and flush delay adapt to the metrics arrival rate and the Hawkular server latency
+   */
+  public boolean isAdaptiveBatchingEnabled() {
+    return adaptiveBatchingEnabled;
+  }
+
+  /**
+   * Set whether batch size and flush delay adapt to the metrics arrival rate and the Hawkular server latency. Under
+   * heavy load, batches grow above the batch size so that the in-flight requests window keeps up with the arrival
+   * rate. Under light load, queued metrics are sent promptly instead of waiting for the batch delay. In this mode, no
+   * timer runs while the queue is empty.
+   */
+  public VertxHawkularOptions setAdaptiveBatchingEnabled(boolean adaptiveBatchingEnabled) {
+    this.adaptiveBatchingEnabled = adaptiveBatchingEnabled;
+    return this;
+  }
+
+  /**
+   * @return the policy used to distribute batches among Hawkular endpoints
+   */
+  public ShardingPolicy getShardingPolicy() {
+    return shardingPolicy;
+  }
+
+  /**
+   * Set the policy used to distribute batches among Hawkular endpoints.
+   */
+  public VertxHawkularOptions setShardingPolicy(ShardingPolicy shardingPolicy) {
+    this.shardingPolicy = shardingPolicy;
+    return this;
+  }
+
+  /**
+   * @return true if collected points are only sent when their value changed, or when the heartbeat interval elapsed
+   */
+  public boolean isChangeOnlyReportingEnabled() {
+    return changeOnlyReportingEnabled;
+  }
+
+  /**
+   * Set whether collected points are only sent when their value changed since the last point sent for the same metric.
+   * Unchanged points are still sent once per heartbeat interval. Points sent to the metrics bridge are never
+   * suppressed.
+   */
+  public VertxHawkularOptions setChangeOnlyReportingEnabled(boolean changeOnlyReportingEnabled) {
+    this.changeOnlyReportingEnabled = changeOnlyReportingEnabled;
+    return this;
+  }
+
+  /**
+   * @return the interval after which an unchanged point is sent anyway, with change-only reporting (in seconds)
+   */
+  public int getHeartbeatInterval() {
+    return heartbeatInterval;
+  }
+
+  /**
+   * Set the interval after which an unchanged point is sent anyway, with change-only reporting (in seconds).
+   */
+  public VertxHawkularOptions setHeartbeatInterval(int heartbeatInterval) {
+    this.heartbeatInterval = heartbeatInterval;
+    return this;
+  }
+
+  /**
+   * @return true if per-second rates of counters are computed and sent as gauges
+   */
+  public boolean isCounterRatesEnabled() {
+    return counterRatesEnabled;
+  }
+
+  /**
+   * Set whether per-second rates of counters are computed from consecutive collections and sent as gauges, named after
+   * the counter with a <code>.rate</code> suffix. When a counter decreases, for example after metrics are closed and
+   * registered again, it is considered reset: no rate is sent for this interval.
+   */
+  public VertxHawkularOptions setCounterRatesEnabled(boolean counterRatesEnabled) {
+    this.counterRatesEnabled = counterRatesEnabled;
+    return this;
+  }
+
+  /**
+   * @return true if the latency distribution of HTTP server requests is recorded
+   */
+  public boolean isLatencyHistogramsEnabled() {
+    return latencyHistogramsEnabled;
+  }
+
+  /**
+   * Set whether the latency distribution of HTTP server requests is recorded in a histogram per server address. At
+   * each collection, the configured percentiles, the minimum and the maximum of the latencies recorded during the
+   * interval are sent as gauges (in milliseconds).
+   */
+  public VertxHawkularOptions setLatencyHistogramsEnabled(boolean latencyHistogramsEnabled) {
+    this.latencyHistogramsEnabled = latencyHistogramsEnabled;
+    return this;
+  }
+
+  /**
+   * @return the latency percentiles sent when latency histograms are enabled
+   */
+  public List<Double> getLatencyPercentiles() {
+    return latencyPercentiles;
+  }
+
+  /**
+   * Set the latency percentiles sent when latency histograms are enabled, between 0 and 100. Defaults to 50, 90, 99
+   * and 99.9. A percentile is sent as a gauge named after its value without the decimal point, e.g. {@code p999} for
+   * 99.9.
+   */
+  public VertxHawkularOptions setLatencyPercentiles(List<Double> latencyPercentiles) {
+    this.latencyPercentiles = latencyPercentiles;
+    return this;
+  }
+
+  /**
+   * @return the HTTP server route templates
+   */
+  public List<String> getHttpServerRoutes() {
+    return httpServerRoutes;
+  }
+
+  /**
+   * Set the HTTP server route templates. When not empty, request count, errors (5xx responses), processing time and,
+   * if enabled, latency histograms are also kept per route: a method and the template matching the request path.
+   * Templates are paths where a segment can be a named parameter, like {@code /users/:id}, and the last segment can be
+   * {@code *} to match any remainder. When several templates match, the most specific wins, segment by segment: a
+   * literal segment is preferred to a parameter, which is preferred to a wildcard, whatever the order of the templates.
+   * For identical templates, the first one wins. Requests matching no template are counted in an {@code _unmatched}
+   * route. In metric ids, the slashes of a template are replaced with dots and parameters are written {@code :name},
+   * e.g. {@code GET./users/{id}} is reported as {@code route.GET.users.:id}.
+   */
+  public VertxHawkularOptions setHttpServerRoutes(List<String> httpServerRoutes) {
+    this.httpServerRoutes = httpServerRoutes;
+    return this;
+  }
+
+  /**
+   * Add an HTTP server route template.
+   */
+  public VertxHawkularOptions addHttpServerRoute(String httpServerRoute) {
+    httpServerRoutes.add(httpServerRoute);
+    return this;
+  }
+
+  /**
+   * @return the maximum number of per route series of an HTTP server
+   */
+  public int getMaxHttpServerRoutes() {
+    return maxHttpServerRoutes;
+  }
+
+  /**
+   * Set the maximum number of per route series of an HTTP server, a route being a method and a template. Once reached,
+   * requests of new routes are counted in a single overflow series.
+   */
+  public VertxHawkularOptions setMaxHttpServerRoutes(int maxHttpServerRoutes) {
+    this.maxHttpServerRoutes = maxHttpServerRoutes;
+    return this;
+  }
+
+  /**
+   * @return true if the latency distribution of event bus handlers is recorded
+   */
+  public boolean isEventBusLatencyHistogramsEnabled() {
+    return eventBusLatencyHistogramsEnabled;
+  }
+
+  /**
+   * Set whether the latency distribution of event bus handlers is recorded in a histogram per address. At each
+   * collection, the configured percentiles, the minimum and the maximum of the handling times recorded during the
+   * interval are sent as gauges (in milliseconds), along with the number of messages handled. Reply handlers are not
+   * tracked. To keep the cost per address low, about 2 KB, percentiles are approximated within 12.5%.
+   */
+  public VertxHawkularOptions setEventBusLatencyHistogramsEnabled(boolean eventBusLatencyHistogramsEnabled) {
+    this.eventBusLatencyHistogramsEnabled = eventBusLatencyHistogramsEnabled;
+    return this;
+  }
+
+  /**
+   * @return the event bus addresses with their own traffic series
+   */
+  public List<String> getEventBusAddresses() {
+    return eventBusAddresses;
+  }
+
+  /**
+   * Set the event bus addresses with their own traffic series. When not empty, sent, published and received messages,
+   * bytes written and read, and reply failures by type are also counted per address. An entry is either an address or
+   * a prefix followed by {@code *}. Reply addresses are never matched by a prefix entry, only by an exact entry.
+   */
+  public VertxHawkularOptions setEventBusAddresses(List<String> eventBusAddresses) {
+    this.eventBusAddresses = eventBusAddresses;
+    return this;
+  }
+
+  /**
+   * Add an event bus address, or an address prefix followed by {@code *}.
+   */
+  public VertxHawkularOptions addEventBusAddress(String eventBusAddress) {
+    eventBusAddresses.add(eventBusAddress);
+    return this;
+  }
+
+  /**
+   * @return the maximum number of per address event bus series
+   */
+  public int getMaxEventBusAddresses() {
+    return maxEventBusAddresses;
+  }
+
+  /**
+   * Set the maximum number of addresses with their own event bus traffic series. Once reached, traffic of new
+   * addresses is counted in a single overflow series.
+   */
+  public VertxHawkularOptions setMaxEventBusAddresses(int maxEventBusAddresses) {
+    this.maxEventBusAddresses = maxEventBusAddresses;
+    return this;
+  }
 }
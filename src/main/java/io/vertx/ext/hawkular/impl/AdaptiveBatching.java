@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.ext.hawkular.impl;
+
+import static java.util.concurrent.TimeUnit.*;
+
+/**
+ * Computes batch size and flush delay from the observed metrics arrival rate and server latency.
+ * <p>
+ * To keep up with the arrival rate, each of the in-flight requests must carry the points arriving during a round trip.
+ * Batches are never smaller than the configured batch size, so that requests stay efficient under light load. When a
+ * batch is not expected to fill up within the batch delay, queued metrics are flushed promptly instead of waiting.
+ * <p>
+ * Instances are not thread-safe and must be confined to the metrics context.
+ *
+ * @author Thomas Segismont
+ */
+public class AdaptiveBatching {
+  // Weight of the latest observation in the moving averages
+  private static final double ALPHA = 0.2;
+  private static final long RATE_WINDOW = NANOSECONDS.convert(100, MILLISECONDS);
+  private static final long MIN_FLUSH_DELAY = NANOSECONDS.convert(10, MILLISECONDS);
+
+  private final int minBatchSize;
+  private final int maxBatchSize;
+  private final int maxInFlightRequests;
+  private final long maxFlushDelay;
+
+  private long windowStart;
+  private long windowPoints;
+  // Points per nanosecond
+  private double arrivalRate;
+  // Nanoseconds
+  private double latency;
+
+  /**
+   * @param minBatchSize        the minimum number of metrics in a batch
+   * @param maxBatchSize        the maximum number of metrics in a batch
+   * @param maxInFlightRequests the maximum number of requests waiting for a response
+   * @param maxFlushDelay       the maximum delay before queued metrics are sent, in nanoseconds
+   */
+  public AdaptiveBatching(int minBatchSize, int maxBatchSize, int maxInFlightRequests, long maxFlushDelay) {
+    this(minBatchSize, maxBatchSize, maxInFlightRequests, maxFlushDelay, System.nanoTime());
+  }
+
+  AdaptiveBatching(int minBatchSize, int maxBatchSize, int maxInFlightRequests, long maxFlushDelay, long now) {
+    this.minBatchSize = minBatchSize;
+    this.maxBatchSize = Math.max(minBatchSize, maxBatchSize);
+    this.maxInFlightRequests = maxInFlightRequests;
+    this.maxFlushDelay = maxFlushDelay;
+    windowStart = now;
+  }
+
+  /**
+   * @param points number of points just queued
+   */
+  public void onArrival(int points) {
+    onArrival(points, System.nanoTime());
+  }
+
+  void onArrival(int points, long now) {
+    windowPoints += points;
+    long elapsed = now - windowStart;
+    if (elapsed >= RATE_WINDOW) {
+      double rate = (double) windowPoints / elapsed;
+      arrivalRate = arrivalRate == 0 ? rate : ALPHA * rate + (1 - ALPHA) * arrivalRate;
+      windowStart = now;
+      windowPoints = 0;
+    }
+  }
+
+  /**
+   * @param responseTime time elapsed until a response has been received, in nanoseconds
+   */
+  public void onResponse(long responseTime) {
+    latency = latency == 0 ? responseTime : ALPHA * responseTime + (1 - ALPHA) * latency;
+  }
+
+  /**
+   * @return the number of metrics a batch should carry
+   */
+  public int batchSize() {
+    double perRequest = Math.ceil(arrivalRate * latency / maxInFlightRequests);
+    return (int) Math.min(Math.max(perRequest, minBatchSize), maxBatchSize);
+  }
+
+  /**
+   * @param queued number of metrics waiting in the queue
+   * @return the delay before queued metrics should be sent, in milliseconds
+   */
+  public long flushDelay(int queued) {
+    int missing = batchSize() - queued;
+    long delay = MIN_FLUSH_DELAY;
+    if (missing > 0 && arrivalRate > 0) {
+      double fillTime = missing / arrivalRate;
+      if (fillTime <= maxFlushDelay) {
+        // The batch is expected to fill up soon, wait for it
+        delay = Math.max((long) fillTime, MIN_FLUSH_DELAY);
+      }
+    }
+    return Math.max(1, MILLISECONDS.convert(delay, NANOSECONDS));
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.core.net.SocketAddress;
+import io.vertx.ext.hawkular.spi.MetricSink;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Caches the ids of per address metrics, so that they are not rebuilt at each collection.
+ * <p>
+ * Ids are built with the {@code baseName + host + ":" + port + "." + name} pattern. All the ids of an address are built
+ * at once, the first time the address is seen, and looked up by metric kind: the index of the name in the array given
+ * to the constructor.
+ * <p>
+ * Suppliers invalidate the addresses of a metrics instance when it is unregistered, so that ids of addresses which are
+ * no longer measured do not pile up. Invalidated ids are then released from the sink at the next collection: aggregated
+ * values of these addresses may have gone backwards or restarted from zero, so rates and change filtering must start
+ * afresh. Ids of other addresses are left untouched.
+ *
+ * @author Thomas Segismont
+ */
+public class AddressMetricIds {
+  private final String baseName;
+  private final String[] names;
+  private final Map<SocketAddress, String[]> ids = new ConcurrentHashMap<>();
+  private final Queue<String[]> invalidated = new ConcurrentLinkedQueue<>();
+
+  /**
+   * @param baseName the prefix of all ids
+   * @param names    the metric names, by kind
+   */
+  public AddressMetricIds(String baseName, String... names) {
+    this.baseName = baseName;
+    this.names = names;
+  }
+
+  /**
+   * @param address the measured address
+   * @param kind    the index of the metric name
+   * @return the metric id
+   */
+  public String id(SocketAddress address, int kind) {
+    return ids(address)[kind];
+  }
+
+  /**
+   * @param address the measured address
+   * @return the metric ids of this address, by kind, must not be modified
+   */
+  public String[] ids(SocketAddress address) {
+    String[] addressIds = ids.get(address);
+    if (addressIds == null) {
+      String addressId = baseName + address.host() + ":" + address.port() + ".";
+      addressIds = new String[names.length];
+      for (int i = 0; i < names.length; i++) {
+        addressIds[i] = addressId + names[i];
+      }
+      ids.put(address, addressIds);
+    }
+    return addressIds;
+  }
+
+  /**
+   * Removes the cached ids of an address. They will be released by the next call to {@link #release(MetricSink)}.
+   *
+   * @param address the address, ignored if null or not cached
+   */
+  public void invalidate(SocketAddress address) {
+    String[] addressIds = address == null ? null : ids.remove(address);
+    if (addressIds != null) {
+      invalidated.add(addressIds);
+    }
+  }
+
+  /**
+   * Removes the cached ids of several addresses.
+   *
+   * @param addresses the addresses
+   * @see #invalidate(SocketAddress)
+   */
+  public void invalidate(Iterable<SocketAddress> addresses) {
+    for (SocketAddress address : addresses) {
+      invalidate(address);
+    }
+  }
+
+  /**
+   * Releases the invalidated ids from the sink. Suppliers must call it before writing points.
+   *
+   * @param sink the sink
+   */
+  public void release(MetricSink sink) {
+    String[] addressIds;
+    while ((addressIds = invalidated.poll()) != null) {
+      for (String id : addressIds) {
+        sink.release(id);
+      }
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.ext.hawkular.impl;
+
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes numbers as ASCII text directly into a {@link ByteBuf}, without going through a string for integral values.
+ *
+ * @author Thomas Segismont
+ */
+public final class AsciiNumbers {
+  private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+  // Doubles with an absolute value below this limit are exactly representable as longs
+  private static final double MAX_INTEGRAL = 1L << 53;
+
+  /**
+   * Writes the decimal representation of a long.
+   *
+   * @param buffer the target buffer
+   * @param value  the value to write
+   */
+  public static void writeLong(ByteBuf buffer, long value) {
+    if (value == Long.MIN_VALUE) {
+      buffer.writeBytes(MIN_LONG);
+      return;
+    }
+    if (value < 0) {
+      buffer.writeByte('-');
+      value = -value;
+    }
+    int length = 1;
+    for (long remaining = value / 10; remaining != 0; remaining /= 10) {
+      length++;
+    }
+    buffer.ensureWritable(length);
+    int start = buffer.writerIndex();
+    for (int i = start + length - 1; i >= start; i--) {
+      buffer.setByte(i, (int) ('0' + value % 10));
+      value /= 10;
+    }
+    buffer.writerIndex(start + length);
+  }
+
+  /**
+   * Writes the decimal representation of a finite double. Integral values are written without a fraction part.
+   *
+   * @param buffer the target buffer
+   * @param value  the value to write
+   */
+  public static void writeDouble(ByteBuf buffer, double value) {
+    // Most values are integral (counters, connections, ...) and can be written without going through a string
+    if (value == Math.rint(value) && Math.abs(value) < MAX_INTEGRAL) {
+      writeLong(buffer, (long) value);
+    } else {
+      String s = Double.toString(value);
+      for (int i = 0; i < s.length(); i++) {
+        buffer.writeByte(s.charAt(i));
+      }
+    }
+  }
+
+  /**
+   * @param value a double
+   * @return true if the value is neither NaN nor infinite
+   */
+  public static boolean isFinite(double value) {
+    return !Double.isNaN(value) && !Double.isInfinite(value);
+  }
+
+  private AsciiNumbers() {
+    // Utility class
+  }
+}
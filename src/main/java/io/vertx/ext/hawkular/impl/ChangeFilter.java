@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.ext.hawkular.spi.MetricSink;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Suppresses collected points which value did not change since the last point sent for the same metric, unless the
+ * heartbeat interval elapsed.
+ * <p>
+ * The last sent value and time of each metric are kept in primitive arrays indexed by the metric id handle: handles of
+ * a {@link MetricSink} are dense and stable, so no boxing or hashing is involved. A filter must always be used with
+ * the same sink, and be notified when its handles are {@link #release(int) released}, so that recycled slots start
+ * afresh.
+ * <p>
+ * Instances are not thread-safe and must be confined to the metrics context.
+ *
+ * @author Thomas Segismont
+ */
+public class ChangeFilter implements IntPredicate {
+  private static final int INITIAL_CAPACITY = 256;
+
+  private final long heartbeatInterval;
+
+  private MetricSink sink;
+  private double[] lastValues = new double[INITIAL_CAPACITY];
+  // Zero if no point was sent yet
+  private long[] lastTimestamps = new long[INITIAL_CAPACITY];
+  private long suppressed;
+
+  /**
+   * @param heartbeatInterval the interval after which an unchanged point is sent anyway, in milliseconds
+   */
+  public ChangeFilter(long heartbeatInterval) {
+    this.heartbeatInterval = heartbeatInterval;
+  }
+
+  /**
+   * Removes unchanged points from the sink.
+   *
+   * @param sink the sink
+   * @param from the index of the first point to filter
+   */
+  public void filter(MetricSink sink, int from) {
+    this.sink = sink;
+    suppressed += sink.retain(from, this);
+  }
+
+  @Override
+  public boolean test(int point) {
+    int handle = sink.handleOf(point);
+    if (handle >= lastTimestamps.length) {
+      int capacity = Math.max(2 * lastTimestamps.length, handle + 1);
+      lastValues = Arrays.copyOf(lastValues, capacity);
+      lastTimestamps = Arrays.copyOf(lastTimestamps, capacity);
+    }
+    long timestamp = sink.timestampOf(point);
+    double value = sink.valueOf(point);
+    long lastTimestamp = lastTimestamps[handle];
+    if (lastTimestamp != 0 && timestamp - lastTimestamp < heartbeatInterval
+      && Double.doubleToLongBits(value) == Double.doubleToLongBits(lastValues[handle])) {
+      return false;
+    }
+    lastValues[handle] = value;
+    lastTimestamps[handle] = timestamp;
+    return true;
+  }
+
+  /**
+   * Forgets the last sent point of a released metric id handle.
+   *
+   * @param handle the released handle
+   */
+  public void release(int handle) {
+    if (handle < lastTimestamps.length) {
+      lastValues[handle] = 0;
+      lastTimestamps[handle] = 0;
+    }
+  }
+
+  /**
+   * @return total number of points suppressed
+   */
+  public long getSuppressed() {
+    return suppressed;
+  }
+}
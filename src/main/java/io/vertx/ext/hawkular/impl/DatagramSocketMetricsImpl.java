@@ -20,6 +20,7 @@ import io.vertx.core.spi.metrics.DatagramSocketMetrics;
 
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.LongAdder;
@@ -89,6 +90,13 @@ public class DatagramSocketMetricsImpl implements DatagramSocketMetrics {
     return bytesSent.entrySet().stream().collect(toMap(Entry::getKey, e -> e.getValue().sum()));
   }
 
+  /**
+   * @return the remote addresses measured so far
+   */
+  public Set<SocketAddress> getRemoteAddresses() {
+    return bytesSent.keySet();
+  }
+
   public long getErrorCount() {
     return errors.sum();
   }
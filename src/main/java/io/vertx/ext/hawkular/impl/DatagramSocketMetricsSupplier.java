@@ -16,17 +16,14 @@
 package io.vertx.ext.hawkular.impl;
 
 import io.vertx.core.net.SocketAddress;
-import org.hawkular.metrics.client.common.MetricType;
-import org.hawkular.metrics.client.common.SingleMetric;
+import io.vertx.ext.hawkular.spi.MetricSink;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 
-import static org.hawkular.metrics.client.common.MetricType.*;
+import static io.vertx.ext.hawkular.spi.MetricSink.*;
 
 /**
  * Aggregates values from {@link DatagramSocketMetricsImpl} instances and exposes metrics for collection.
@@ -34,15 +31,22 @@ import static org.hawkular.metrics.client.common.MetricType.*;
  * @author Thomas Segismont
  */
 public class DatagramSocketMetricsSupplier implements MetricSupplier {
-  private final String baseName;
+  private static final int BYTES_RECEIVED = 0;
+  private static final int BYTES_SENT = 1;
+
+  private final AddressMetricIds ids;
+  private final String errorCountId;
   private final Set<DatagramSocketMetricsImpl> metricsSet = new CopyOnWriteArraySet<>();
 
   public DatagramSocketMetricsSupplier(String prefix) {
-    baseName = prefix + (prefix.isEmpty() ? "" : ".") + "vertx.datagram.";
+    String baseName = prefix + (prefix.isEmpty() ? "" : ".") + "vertx.datagram.";
+    ids = new AddressMetricIds(baseName, "bytesReceived", "bytesSent");
+    errorCountId = baseName + "errorCount";
   }
 
   @Override
-  public List<SingleMetric> collect() {
+  public void collect(MetricSink sink) {
+    ids.release(sink);
     long timestamp = System.currentTimeMillis();
     Map<SocketAddress, Long> received = new HashMap<>();
     Map<SocketAddress, Long> sent = new HashMap<>();
@@ -55,21 +59,15 @@ public class DatagramSocketMetricsSupplier implements MetricSupplier {
       datagramSocketMetrics.getBytesSent().forEach((address, bytes) -> sent.merge(address, bytes, Long::sum));
       errorCount += datagramSocketMetrics.getErrorCount();
     }
-    List<SingleMetric> res = new ArrayList<>(received.size() + sent.size() + 1);
-    received.forEach((address, count) -> {
-      String addressId = address.host() + ":" + address.port();
-      res.add(metric(addressId + ".bytesReceived", timestamp, count, COUNTER));
-    });
-    sent.forEach((address, count) -> {
-      String addressId = address.host() + ":" + address.port();
-      res.add(metric(addressId + ".bytesSent", timestamp, count, COUNTER));
-    });
-    res.add(new SingleMetric(baseName + "errorCount", timestamp, Long.valueOf(errorCount).doubleValue(), COUNTER));
-    return res;
+    write(sink, BYTES_RECEIVED, timestamp, received, COUNTER);
+    write(sink, BYTES_SENT, timestamp, sent, COUNTER);
+    sink.counter(errorCountId, timestamp, errorCount);
   }
 
-  private SingleMetric metric(String name, long timestamp, Number value, MetricType type) {
-    return new SingleMetric(baseName + name, timestamp, value.doubleValue(), type);
+  private void write(MetricSink sink, int kind, long timestamp, Map<SocketAddress, Long> values, byte type) {
+    for (Map.Entry<SocketAddress, Long> entry : values.entrySet()) {
+      sink.add(sink.handle(ids.id(entry.getKey(), kind)), timestamp, entry.getValue(), type);
+    }
   }
 
   public void register(DatagramSocketMetricsImpl datagramSocketMetrics) {
@@ -78,5 +76,7 @@ public class DatagramSocketMetricsSupplier implements MetricSupplier {
 
   public void unregister(DatagramSocketMetricsImpl datagramSocketMetrics) {
     metricsSet.remove(datagramSocketMetrics);
+    ids.invalidate(datagramSocketMetrics.getServerAddress());
+    ids.invalidate(datagramSocketMetrics.getRemoteAddresses());
   }
 }
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.ext.hawkular.ShardingPolicy;
+import io.vertx.ext.hawkular.VertxHawkularOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.*;
+
+/**
+ * The Hawkular endpoints metrics are sent to, and their health.
+ * <p>
+ * An endpoint is unhealthy after a request failed with a server error or an exception. It is avoided until a backoff
+ * delay, doubled after each consecutive failure, has elapsed; then a single batch probes it. When no endpoint is
+ * healthy, the one which should recover first is used.
+ * <p>
+ * Instances are not thread-safe and must be confined to the metrics context.
+ *
+ * @author Thomas Segismont
+ */
+public class Endpoints {
+  private static final long MIN_BACKOFF = NANOSECONDS.convert(1, SECONDS);
+  private static final long MAX_BACKOFF = NANOSECONDS.convert(1, MINUTES);
+
+  private final List<Endpoint> endpoints;
+  private final ShardingPolicy shardingPolicy;
+
+  private int next;
+
+  /**
+   * @param options Vertx Hawkular options
+   */
+  public Endpoints(VertxHawkularOptions options) {
+    List<Endpoint> list = new ArrayList<>();
+    for (String endpoint : options.getEndpoints()) {
+      int colon = endpoint.lastIndexOf(':');
+      if (colon < 0) {
+        list.add(new Endpoint(endpoint, VertxHawkularOptions.DEFAULT_PORT));
+      } else {
+        list.add(new Endpoint(endpoint.substring(0, colon), Integer.parseInt(endpoint.substring(colon + 1))));
+      }
+    }
+    if (list.isEmpty()) {
+      list.add(new Endpoint(options.getHost(), options.getPort()));
+    }
+    endpoints = Collections.unmodifiableList(list);
+    shardingPolicy = options.getShardingPolicy();
+  }
+
+  /**
+   * @return all endpoints
+   */
+  public List<Endpoint> all() {
+    return endpoints;
+  }
+
+  /**
+   * @return true if there are several endpoints
+   */
+  public boolean isMultiple() {
+    return endpoints.size() > 1;
+  }
+
+  /**
+   * @return true if batches must be split by metric id
+   */
+  public boolean isHashSharded() {
+    return shardingPolicy == ShardingPolicy.METRIC_ID_HASH && isMultiple();
+  }
+
+  /**
+   * @return the next endpoint to send a batch to
+   */
+  public Endpoint next() {
+    return next(System.nanoTime());
+  }
+
+  Endpoint next(long now) {
+    int start = next;
+    next = (next + 1) % endpoints.size();
+    return availableFrom(start, null, true, now);
+  }
+
+  /**
+   * @param id a metric id
+   * @return the endpoint points of this metric should be sent to
+   */
+  public Endpoint forId(String id) {
+    return forId(id, System.nanoTime());
+  }
+
+  Endpoint forId(String id, long now) {
+    return availableFrom(Math.floorMod(id.hashCode(), endpoints.size()), null, true, now);
+  }
+
+  /**
+   * @param failed an endpoint which just failed
+   * @return another endpoint available to retry the request, or null
+   */
+  public Endpoint failover(Endpoint failed) {
+    return failover(failed, System.nanoTime());
+  }
+
+  Endpoint failover(Endpoint failed, long now) {
+    return availableFrom(endpoints.indexOf(failed) + 1, failed, false, now);
+  }
+
+  private Endpoint availableFrom(int start, Endpoint excluded, boolean fallback, long now) {
+    Endpoint recoveringFirst = null;
+    for (int i = 0; i < endpoints.size(); i++) {
+      Endpoint endpoint = endpoints.get((start + i) % endpoints.size());
+      if (endpoint == excluded) {
+        continue;
+      }
+      if (endpoint.isAvailable(now)) {
+        if (!endpoint.isHealthy()) {
+          // This batch probes the endpoint, others keep avoiding it until the response is received
+          endpoint.retryTime = now + MIN_BACKOFF;
+        }
+        return endpoint;
+      }
+      if (recoveringFirst == null || endpoint.retryTime - recoveringFirst.retryTime < 0) {
+        recoveringFirst = endpoint;
+      }
+    }
+    if (!fallback) {
+      return null;
+    }
+    return recoveringFirst != null ? recoveringFirst : excluded;
+  }
+
+  /**
+   * A Hawkular server.
+   */
+  public static class Endpoint {
+    private final String host;
+    private final int port;
+    private final String name;
+
+    private int consecutiveFailures;
+    private long retryTime;
+
+    private Endpoint(String host, int port) {
+      this.host = host;
+      this.port = port;
+      name = host + ":" + port;
+    }
+
+    /**
+     * @return the server host
+     */
+    public String getHost() {
+      return host;
+    }
+
+    /**
+     * @return the server port
+     */
+    public int getPort() {
+      return port;
+    }
+
+    /**
+     * @return {@code host:port}
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return true if the last request sent to this endpoint succeeded
+     */
+    public boolean isHealthy() {
+      return consecutiveFailures == 0;
+    }
+
+    private boolean isAvailable(long now) {
+      return consecutiveFailures == 0 || now - retryTime >= 0;
+    }
+
+    /**
+     * Updates the health of this endpoint.
+     *
+     * @param succeeded false if the request failed with a server error or an exception
+     */
+    public void onResponse(boolean succeeded) {
+      onResponse(succeeded, System.nanoTime());
+    }
+
+    void onResponse(boolean succeeded, long now) {
+      if (succeeded) {
+        consecutiveFailures = 0;
+      } else {
+        long backoff = Math.min(MIN_BACKOFF << Math.min(consecutiveFailures, 16), MAX_BACKOFF);
+        consecutiveFailures++;
+        retryTime = now + backoff;
+      }
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.ext.hawkular.spi.MetricSink;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts event bus traffic per address: sent, published and received messages, bytes written and read, and reply
+ * failures by type.
+ * <p>
+ * Only addresses matching the configured entries are tracked: an entry is either an address or a prefix followed by
+ * {@code *}. Reply addresses, which Vert.x generates per request, are never matched by a prefix: only an exact entry
+ * tracks an address which looks like a reply address. Counters of an address are created the first time it is seen and
+ * kept afterwards; once the cardinality cap is reached, traffic of new addresses is counted in a single overflow
+ * series.
+ *
+ * @author Thomas Segismont
+ */
+public class EventBusAddressMetrics {
+  static final String OVERFLOW = "_overflow";
+
+  private static final int SENT = 0;
+  private static final int PUBLISHED = 1;
+  private static final int RECEIVED = 2;
+  private static final int BYTES_WRITTEN = 3;
+  private static final int BYTES_READ = 4;
+  private static final int REPLY_FAILURES = 5;
+  private static final ReplyFailure[] FAILURES = ReplyFailure.values();
+  private static final String[] NAMES;
+
+  static {
+    NAMES = new String[REPLY_FAILURES + FAILURES.length];
+    NAMES[SENT] = "sentMessages";
+    NAMES[PUBLISHED] = "publishedMessages";
+    NAMES[RECEIVED] = "receivedMessages";
+    NAMES[BYTES_WRITTEN] = "bytesWritten";
+    NAMES[BYTES_READ] = "bytesRead";
+    for (ReplyFailure failure : FAILURES) {
+      NAMES[REPLY_FAILURES + failure.ordinal()] = "replyFailures." + failure.name();
+    }
+  }
+
+  private final String baseName;
+  private final Set<String> addresses = new HashSet<>();
+  private final String[] prefixes;
+  private final int maxAddresses;
+  private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<>();
+  private final AtomicInteger size = new AtomicInteger();
+  private final Counters overflow;
+  private volatile boolean overflowed;
+
+  /**
+   * @param baseName     the prefix of all metric ids
+   * @param entries      the tracked addresses, or address prefixes followed by {@code *}
+   * @param maxAddresses the maximum number of addresses with their own series
+   */
+  public EventBusAddressMetrics(String baseName, List<String> entries, int maxAddresses) {
+    this.baseName = baseName;
+    List<String> prefixList = new ArrayList<>();
+    for (String entry : entries) {
+      if (entry.endsWith("*")) {
+        prefixList.add(entry.substring(0, entry.length() - 1));
+      } else {
+        addresses.add(entry);
+      }
+    }
+    prefixes = prefixList.toArray(new String[prefixList.size()]);
+    this.maxAddresses = maxAddresses;
+    overflow = new Counters(OVERFLOW);
+  }
+
+  /**
+   * Counts a message sent or published to {@code address}.
+   */
+  public void messageSent(String address, boolean publish) {
+    Counters c = countersOf(address);
+    if (c != null) {
+      c.counters[publish ? PUBLISHED : SENT].increment();
+    }
+  }
+
+  /**
+   * Counts a message received on {@code address}.
+   */
+  public void messageReceived(String address) {
+    Counters c = countersOf(address);
+    if (c != null) {
+      c.counters[RECEIVED].increment();
+    }
+  }
+
+  /**
+   * Counts bytes of a message written to the cluster for {@code address}.
+   */
+  public void messageWritten(String address, int numberOfBytes) {
+    Counters c = countersOf(address);
+    if (c != null) {
+      c.counters[BYTES_WRITTEN].add(numberOfBytes);
+    }
+  }
+
+  /**
+   * Counts bytes of a message read from the cluster for {@code address}.
+   */
+  public void messageRead(String address, int numberOfBytes) {
+    Counters c = countersOf(address);
+    if (c != null) {
+      c.counters[BYTES_READ].add(numberOfBytes);
+    }
+  }
+
+  /**
+   * Counts a reply failure of a message sent to {@code address}.
+   */
+  public void replyFailure(String address, ReplyFailure failure) {
+    Counters c = countersOf(address);
+    if (c != null) {
+      c.counters[REPLY_FAILURES + failure.ordinal()].increment();
+    }
+  }
+
+  private Counters countersOf(String address) {
+    Counters c = counters.get(address);
+    if (c != null) {
+      return c;
+    }
+    if (!addresses.contains(address) && (!matchesPrefix(address) || isReplyAddress(address))) {
+      return null;
+    }
+    c = size.get() >= maxAddresses ? null : counters.computeIfAbsent(address, a -> {
+      if (size.incrementAndGet() > maxAddresses) {
+        size.decrementAndGet();
+        return null;
+      }
+      return new Counters(a);
+    });
+    if (c == null) {
+      overflowed = true;
+      return overflow;
+    }
+    return c;
+  }
+
+  private boolean matchesPrefix(String address) {
+    for (String prefix : prefixes) {
+      if (address.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Vert.x generates reply addresses from a sequence number, or a UUID when clustered
+  private static boolean isReplyAddress(String address) {
+    int length = address.length();
+    if (length == 0) {
+      return false;
+    }
+    if (length == 36 && address.charAt(8) == '-' && address.charAt(13) == '-' && address.charAt(18) == '-'
+      && address.charAt(23) == '-') {
+      return true;
+    }
+    for (int i = 0; i < length; i++) {
+      char c = address.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes the counters of all tracked addresses, and of the overflow series once it has been used.
+   *
+   * @param sink      the sink to write to
+   * @param timestamp the points timestamp
+   */
+  public void collect(MetricSink sink, long timestamp) {
+    for (Counters c : counters.values()) {
+      c.writeTo(sink, timestamp);
+    }
+    if (overflowed) {
+      overflow.writeTo(sink, timestamp);
+    }
+  }
+
+  private class Counters {
+    final String[] ids = new String[NAMES.length];
+    final LongAdder[] counters = new LongAdder[NAMES.length];
+
+    Counters(String address) {
+      for (int i = 0; i < NAMES.length; i++) {
+        ids[i] = baseName + address + "." + NAMES[i];
+        counters[i] = new LongAdder();
+      }
+    }
+
+    void writeTo(MetricSink sink, long timestamp) {
+      for (int i = 0; i < NAMES.length; i++) {
+        sink.add(sink.handle(ids[i]), timestamp, counters[i].sum(), MetricSink.COUNTER);
+      }
+    }
+  }
+}
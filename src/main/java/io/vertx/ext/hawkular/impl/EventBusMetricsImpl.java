@@ -17,20 +17,33 @@ package io.vertx.ext.hawkular.impl;
 
 import io.vertx.core.eventbus.ReplyFailure;
 import io.vertx.core.spi.metrics.EventBusMetrics;
-import org.hawkular.metrics.client.common.MetricType;
-import org.hawkular.metrics.client.common.SingleMetric;
+import io.vertx.ext.hawkular.VertxHawkularOptions;
+import io.vertx.ext.hawkular.spi.MetricSink;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.LongAdder;
 
+import static io.vertx.ext.hawkular.spi.MetricSink.*;
+
 /**
  * @author Thomas Segismont
  */
 public class EventBusMetricsImpl implements EventBusMetrics<EventBusHandlerMetrics>, MetricSupplier {
+  // Handler latencies are recorded for each address, with 8 sub-buckets per power of two to save memory
+  private static final int LATENCY_SUB_BUCKET_BITS = 3;
+  private static final String[] TOTAL_NAMES = {"errorCount", "bytesWritten", "bytesRead", "pending", "pendingLocal",
+    "pendingRemote", "publishedMessages", "publishedLocalMessages", "publishedRemoteMessages", "sentMessages",
+    "sentLocalMessages", "sentRemoteMessages", "receivedMessages", "receivedLocalMessages", "receivedRemoteMessages",
+    "deliveredMessages", "deliveredLocalMessages", "deliveredRemoteMessages", "replyFailures"};
+  private static final byte[] TOTAL_TYPES = {COUNTER, COUNTER, COUNTER, GAUGE, GAUGE, GAUGE, COUNTER, COUNTER, COUNTER,
+    COUNTER, COUNTER, COUNTER, COUNTER, COUNTER, COUNTER, COUNTER, COUNTER, COUNTER, COUNTER};
+
   private final String baseName;
+  private final String handlersId;
   private final Scheduler scheduler;
   private final LongAdder handlers = new LongAdder();
   private final ConcurrentMap<String, HandlersMeasurements> handlersMeasurements = new ConcurrentHashMap<>(0);
@@ -53,9 +66,45 @@ public class EventBusMetricsImpl implements EventBusMetrics<EventBusHandlerMetri
   private final LongAdder deliveredLocalMessages = new LongAdder();
   private final LongAdder deliveredRemoteMessages = new LongAdder();
   private final LongAdder replyFailures = new LongAdder();
+  // Written at each collection, in the order of TOTAL_NAMES
+  private final LongAdder[] totals;
+  private final String[] totalIds;
+  private final double[] latencyPercentiles;
+  private final String[] latencyNames;
+  private final LatencyHistogram.Snapshot snapshot = new LatencyHistogram.Snapshot(LATENCY_SUB_BUCKET_BITS);
+  // Ids of removed addresses, released at the next collection
+  private final Queue<String[]> removedIds = new ConcurrentLinkedQueue<>();
+  // Null if per address traffic is not counted
+  private final EventBusAddressMetrics addressMetrics;
 
-  public EventBusMetricsImpl(String prefix, Scheduler scheduler) {
+  public EventBusMetricsImpl(VertxHawkularOptions options, Scheduler scheduler) {
+    String prefix = options.getPrefix();
     baseName = prefix + (prefix.isEmpty() ? "" : ".") + "vertx.eventbus.";
+    handlersId = baseName + "handlers";
+    totals = new LongAdder[]{errorCount, bytesWritten, bytesRead, pending, pendingLocal, pendingRemote,
+      publishedMessages, publishedLocalMessages, publishedRemoteMessages, sentMessages, sentLocalMessages,
+      sentRemoteMessages, receivedMessages, receivedLocalMessages, receivedRemoteMessages, deliveredMessages,
+      deliveredLocalMessages, deliveredRemoteMessages, replyFailures};
+    totalIds = new String[TOTAL_NAMES.length];
+    for (int i = 0; i < TOTAL_NAMES.length; i++) {
+      totalIds[i] = baseName + TOTAL_NAMES[i];
+    }
+    if (options.isEventBusLatencyHistogramsEnabled()) {
+      latencyPercentiles = LatencyHistogram.toArray(options.getLatencyPercentiles());
+      String[] names = LatencyHistogram.metricNames(latencyPercentiles);
+      latencyNames = new String[names.length + 1];
+      latencyNames[0] = "handledMessages";
+      System.arraycopy(names, 0, latencyNames, 1, names.length);
+    } else {
+      latencyPercentiles = null;
+      latencyNames = null;
+    }
+    List<String> addresses = options.getEventBusAddresses();
+    if (addresses.isEmpty()) {
+      addressMetrics = null;
+    } else {
+      addressMetrics = new EventBusAddressMetrics(baseName, addresses, options.getMaxEventBusAddresses());
+    }
     this.scheduler = scheduler;
     scheduler.register(this);
   }
@@ -72,7 +121,14 @@ public class EventBusMetricsImpl implements EventBusMetrics<EventBusHandlerMetri
           break;
         }
       } else {
-        HandlersMeasurements candidate = new HandlersMeasurements();
+        // Reply addresses are unique, recording their latency distribution would create a series per request
+        LatencyHistogram latencies;
+        if (latencyNames == null || replyHandler) {
+          latencies = null;
+        } else {
+          latencies = new LatencyHistogram(LATENCY_SUB_BUCKET_BITS);
+        }
+        HandlersMeasurements candidate = new HandlersMeasurements(latencies);
         if (handlersMeasurements.putIfAbsent(address, candidate) == null) {
           break;
         }
@@ -90,6 +146,10 @@ public class EventBusMetricsImpl implements EventBusMetrics<EventBusHandlerMetri
       HandlersMeasurements candidate = current.decrementHandlersCount();
       if (candidate.handlersCount() == 0) {
         if (handlersMeasurements.remove(address, current)) {
+          String[] ids = current.ids();
+          if (ids != null) {
+            removedIds.add(ids);
+          }
           break;
         }
       } else {
@@ -125,6 +185,9 @@ public class EventBusMetricsImpl implements EventBusMetrics<EventBusHandlerMetri
 
   @Override
   public void messageSent(String address, boolean publish, boolean local, boolean remote) {
+    if (addressMetrics != null) {
+      addressMetrics.messageSent(address, publish);
+    }
     if (publish) {
       publishedMessages.increment();
       if (local) {
@@ -144,6 +207,9 @@ public class EventBusMetricsImpl implements EventBusMetrics<EventBusHandlerMetri
 
   @Override
   public void messageReceived(String address, boolean publish, boolean local, int handlers) {
+    if (addressMetrics != null) {
+      addressMetrics.messageReceived(address);
+    }
     pending.add(handlers);
     receivedMessages.increment();
     if (local) {
@@ -166,53 +232,71 @@ public class EventBusMetricsImpl implements EventBusMetrics<EventBusHandlerMetri
   @Override
   public void messageWritten(String address, int numberOfBytes) {
     bytesWritten.add(numberOfBytes);
+    if (addressMetrics != null) {
+      addressMetrics.messageWritten(address, numberOfBytes);
+    }
   }
 
   @Override
   public void messageRead(String address, int numberOfBytes) {
     bytesRead.add(numberOfBytes);
+    if (addressMetrics != null) {
+      addressMetrics.messageRead(address, numberOfBytes);
+    }
   }
 
   @Override
   public void replyFailure(String address, ReplyFailure failure) {
     replyFailures.increment();
+    if (addressMetrics != null) {
+      addressMetrics.replyFailure(address, failure);
+    }
   }
 
   @Override
-  public List<SingleMetric> collect() {
+  public void collect(MetricSink sink) {
+    String[] ids;
+    while ((ids = removedIds.poll()) != null) {
+      for (String id : ids) {
+        sink.release(id);
+      }
+    }
     long timestamp = System.currentTimeMillis();
-    List<SingleMetric> metrics = new ArrayList<>();
-    metrics.add(buildMetric("handlers", timestamp, handlers.sum(), MetricType.GAUGE));
+    sink.add(sink.handle(handlersId), timestamp, handlers.sum(), GAUGE);
     handlersMeasurements.entrySet().forEach(e -> {
-      String address = e.getKey();
       HandlersMeasurements measurements = e.getValue();
-      String source = address + ".processingTime";
-      metrics.add(buildMetric(source, timestamp, measurements.processingTime(), MetricType.COUNTER));
+      String[] addressIds = measurements.ids();
+      if (addressIds == null) {
+        addressIds = addressIds(e.getKey(), measurements.latencies() != null);
+        measurements.setIds(addressIds);
+      }
+      sink.add(sink.handle(addressIds[0]), timestamp, measurements.processingTime(), COUNTER);
+      LatencyHistogram latencies = measurements.latencies();
+      if (latencies != null) {
+        latencies.drainTo(snapshot);
+        if (snapshot.isEmpty()) {
+          snapshot.reset();
+        } else {
+          sink.add(sink.handle(addressIds[1]), timestamp, snapshot.getTotal(), GAUGE);
+          snapshot.write(sink, timestamp, addressIds, 2, latencyPercentiles);
+        }
+      }
     });
-    metrics.add(buildMetric("errorCount", timestamp, errorCount.sum(), MetricType.COUNTER));
-    metrics.add(buildMetric("bytesWritten", timestamp, bytesWritten.sum(), MetricType.COUNTER));
-    metrics.add(buildMetric("bytesRead", timestamp, bytesRead.sum(), MetricType.COUNTER));
-    metrics.add(buildMetric("pending", timestamp, pending.sum(), MetricType.GAUGE));
-    metrics.add(buildMetric("pendingLocal", timestamp, pendingLocal.sum(), MetricType.GAUGE));
-    metrics.add(buildMetric("pendingRemote", timestamp, pendingRemote.sum(), MetricType.GAUGE));
-    metrics.add(buildMetric("publishedMessages", timestamp, publishedMessages.sum(), MetricType.COUNTER));
-    metrics.add(buildMetric("publishedLocalMessages", timestamp, publishedLocalMessages.sum(), MetricType.COUNTER));
-    metrics.add(buildMetric("publishedRemoteMessages", timestamp, publishedRemoteMessages.sum(), MetricType.COUNTER));
-    metrics.add(buildMetric("sentMessages", timestamp, sentMessages.sum(), MetricType.COUNTER));
-    metrics.add(buildMetric("sentLocalMessages", timestamp, sentLocalMessages.sum(), MetricType.COUNTER));
-    metrics.add(buildMetric("sentRemoteMessages", timestamp, sentRemoteMessages.sum(), MetricType.COUNTER));
-    metrics.add(buildMetric("receivedMessages", timestamp, receivedMessages.sum(), MetricType.COUNTER));
-    metrics.add(buildMetric("receivedLocalMessages", timestamp, receivedLocalMessages.sum(), MetricType.COUNTER));
-    metrics.add(buildMetric("receivedRemoteMessages", timestamp, receivedRemoteMessages.sum(), MetricType.COUNTER));
-    metrics.add(buildMetric("deliveredMessages", timestamp, deliveredMessages.sum(), MetricType.COUNTER));
-    metrics.add(buildMetric("deliveredLocalMessages", timestamp, deliveredLocalMessages.sum(), MetricType.COUNTER));
-    metrics.add(buildMetric("deliveredRemoteMessages", timestamp, deliveredRemoteMessages.sum(), MetricType.COUNTER));
-    metrics.add(buildMetric("replyFailures", timestamp, replyFailures.sum(), MetricType.COUNTER));
-    return metrics;
+    for (int i = 0; i < totals.length; i++) {
+      sink.add(sink.handle(totalIds[i]), timestamp, totals[i].sum(), TOTAL_TYPES[i]);
+    }
+    if (addressMetrics != null) {
+      addressMetrics.collect(sink, timestamp);
+    }
   }
 
-  private SingleMetric buildMetric(String name, long timestamp, Number value, MetricType type) {
-    return new SingleMetric(baseName + name, timestamp, value.doubleValue(), type);
+  private String[] addressIds(String address, boolean latencies) {
+    String[] ids = new String[latencies ? 1 + latencyNames.length : 1];
+    ids[0] = baseName + address + ".processingTime";
+    for (int i = 1; i < ids.length; i++) {
+      ids[i] = baseName + address + "." + latencyNames[i - 1];
+    }
+    return ids;
   }
 
   @Override
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.ext.hawkular.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses payloads to the gzip format. The {@link Deflater} is reused from one payload to the next.
+ * <p>
+ * Instances are not thread-safe and must be confined to the metrics context.
+ *
+ * @author Thomas Segismont
+ */
+public class GzipCompressor {
+  private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+  private static final int MIN_WRITABLE = 512;
+
+  private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+  private final CRC32 crc = new CRC32();
+
+  /**
+   * @param payload the bytes to compress, from reader index to writer index; indexes are not modified
+   * @return a new buffer containing the gzip compressed payload
+   */
+  public Buffer compress(ByteBuf payload) {
+    int length = payload.readableBytes();
+    byte[] input;
+    int offset;
+    if (payload.hasArray()) {
+      input = payload.array();
+      offset = payload.arrayOffset() + payload.readerIndex();
+    } else {
+      input = new byte[length];
+      offset = 0;
+      payload.getBytes(payload.readerIndex(), input, 0, length);
+    }
+    deflater.reset();
+    deflater.setInput(input, offset, length);
+    deflater.finish();
+    crc.reset();
+    crc.update(input, offset, length);
+
+    // Metrics payloads are highly repetitive, expect a good compression ratio
+    ByteBuf compressed = Unpooled.buffer(Math.max(length / 4, MIN_WRITABLE));
+    compressed.writeBytes(HEADER);
+    while (!deflater.finished()) {
+      compressed.ensureWritable(MIN_WRITABLE);
+      int writerIndex = compressed.writerIndex();
+      int count = deflater.deflate(compressed.array(), compressed.arrayOffset() + writerIndex, compressed.writableBytes());
+      compressed.writerIndex(writerIndex + count);
+    }
+    writeIntLE(compressed, (int) crc.getValue());
+    writeIntLE(compressed, length);
+    return Buffer.buffer(compressed);
+  }
+
+  private static void writeIntLE(ByteBuf buf, int value) {
+    buf.writeByte(value);
+    buf.writeByte(value >>> 8);
+    buf.writeByte(value >>> 16);
+    buf.writeByte(value >>> 24);
+  }
+
+  /**
+   * Releases the native resources held by the {@link Deflater}. The compressor must not be used afterwards.
+   */
+  public void close() {
+    deflater.end();
+  }
+}
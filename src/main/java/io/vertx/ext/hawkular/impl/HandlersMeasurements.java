@@ -22,24 +22,34 @@ import static java.util.concurrent.TimeUnit.*;
 /**
  * Holds measurements for all handlers of an event bus address. An instance is created when the first handler is
  * registered, then handlers are counted with {@link #incrementHandlersCount()} and {@link #decrementHandlersCount()}.
+ * <p>
+ * Processing time and the optional latency histogram are shared by all the instances of an address. Metric ids are
+ * built at the first collection, and passed along to new instances.
  *
  * @author Thomas Segismont
  */
 public class HandlersMeasurements {
   private final LongAdder processingTime;
+  private final LatencyHistogram latencies;
   private final int handlersCount;
+  private volatile String[] ids;
 
   /**
    * Creates a new instance with a handlers reference of 1.
+   *
+   * @param latencies the histogram recording processing times, null if the latency distribution is not recorded
    */
-  public HandlersMeasurements() {
+  public HandlersMeasurements(LatencyHistogram latencies) {
     processingTime = new LongAdder();
+    this.latencies = latencies;
     handlersCount = 1;
   }
 
-  private HandlersMeasurements(LongAdder processingTime, int handlersCount) {
+  private HandlersMeasurements(LongAdder processingTime, LatencyHistogram latencies, int handlersCount, String[] ids) {
     this.processingTime = processingTime;
+    this.latencies = latencies;
     this.handlersCount = handlersCount;
+    this.ids = ids;
   }
 
   /**
@@ -49,6 +59,9 @@ public class HandlersMeasurements {
    */
   public void addProcessingTime(long time) {
     processingTime.add(time);
+    if (latencies != null) {
+      latencies.record(time);
+    }
   }
 
   /**
@@ -58,6 +71,27 @@ public class HandlersMeasurements {
     return MILLISECONDS.convert(processingTime.sum(), NANOSECONDS);
   }
 
+  /**
+   * @return the histogram recording processing times, null if the latency distribution is not recorded
+   */
+  public LatencyHistogram latencies() {
+    return latencies;
+  }
+
+  /**
+   * @return the metric ids of the address, null if not built yet
+   */
+  public String[] ids() {
+    return ids;
+  }
+
+  /**
+   * @param ids the metric ids of the address
+   */
+  public void setIds(String[] ids) {
+    this.ids = ids;
+  }
+
   /**
    * @return number of handlers of a same address
    */
@@ -69,14 +103,14 @@ public class HandlersMeasurements {
    * @return a new instance of this class, with same processing time and a handler count incremented by 1
    */
   public HandlersMeasurements incrementHandlersCount() {
-    return new HandlersMeasurements(processingTime, handlersCount + 1);
+    return new HandlersMeasurements(processingTime, latencies, handlersCount + 1, ids);
   }
 
   /**
    * @return a new instance of this class, with same processing time and a handler count decremented by 1
    */
   public HandlersMeasurements decrementHandlersCount() {
-    return new HandlersMeasurements(processingTime, handlersCount - 1);
+    return new HandlersMeasurements(processingTime, latencies, handlersCount - 1, ids);
   }
 
   @Override
@@ -32,6 +32,7 @@ public class HttpClientConnectionsMeasurements {
   private final LongAdder requestCount = new LongAdder();
   private final LongAdder responseTime = new LongAdder();
   private final LongAdder wsConnections = new LongAdder();
+  private final StatusClassCounters statusClasses = new StatusClassCounters();
 
   /**
    * Increment the number of opened connections.
@@ -80,10 +81,12 @@ public class HttpClientConnectionsMeasurements {
    * Signal a response has been received.
    *
    * @param responseTime time elapsed until the response has been received, in nanoseconds
+   * @param statusCode   the response status code
    */
-  public void responseEnd(long responseTime) {
+  public void responseEnd(long responseTime, int statusCode) {
     requests.decrement();
     this.responseTime.add(responseTime);
+    statusClasses.record(statusCode);
   }
 
   /**
@@ -104,8 +107,10 @@ public class HttpClientConnectionsMeasurements {
    * @return a snaphsot of the current measurements
    */
   public Snapshot getSnapshot() {
+    long[] statusClassCounts = new long[StatusClassCounters.SIZE];
+    statusClasses.sumTo(statusClassCounts);
     return new Snapshot(tcpMeasurements.getSnapshot(), requests.sum(), requestCount.sum(), responseTime.sum(),
-      wsConnections.sum());
+      wsConnections.sum(), statusClassCounts);
   }
 
   /**
@@ -117,14 +122,16 @@ public class HttpClientConnectionsMeasurements {
     private final long requestCount;
     private final long responseTime;
     private final long wsConnections;
+    private final long[] statusClasses;
 
     private Snapshot(NetClientConnectionsMeasurements.Snapshot tcpMeasurementsSnapshot, long requests,
-                     long requestCount, long responseTime, long wsConnections) {
+                     long requestCount, long responseTime, long wsConnections, long[] statusClasses) {
       this.tcpMeasurementsSnapshot = tcpMeasurementsSnapshot;
       this.requests = requests;
       this.requestCount = requestCount;
       this.responseTime = responseTime;
       this.wsConnections = wsConnections;
+      this.statusClasses = statusClasses;
     }
 
     /**
@@ -183,11 +190,23 @@ public class HttpClientConnectionsMeasurements {
       return wsConnections;
     }
 
+    /**
+     * @param statusClass the index of a status class, 0 for 1xx to 4 for 5xx
+     * @return total number of responses of this status class
+     */
+    public long getStatusClassCount(int statusClass) {
+      return statusClasses[statusClass];
+    }
+
     public static Snapshot merge(Snapshot s1, Snapshot s2) {
       NetClientConnectionsMeasurements.Snapshot tcpMeasurementsSnapshot =
         NetClientConnectionsMeasurements.Snapshot.merge(s1.tcpMeasurementsSnapshot, s2.tcpMeasurementsSnapshot);
+      long[] statusClasses = new long[StatusClassCounters.SIZE];
+      for (int i = 0; i < statusClasses.length; i++) {
+        statusClasses[i] = s1.statusClasses[i] + s2.statusClasses[i];
+      }
       return new Snapshot(tcpMeasurementsSnapshot, s1.requests + s2.requests, s1.requestCount + s2.requestCount,
-        s1.responseTime + s2.responseTime, s1.wsConnections + s1.wsConnections);
+        s1.responseTime + s2.responseTime, s1.wsConnections + s1.wsConnections, statusClasses);
     }
   }
 }
@@ -25,6 +25,7 @@ import io.vertx.ext.hawkular.impl.HttpClientConnectionsMeasurements.Snapshot;
 
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -58,7 +59,7 @@ public class HttpClientMetricsImpl implements HttpClientMetrics<HttpClientReques
     long responseTime = requestMetric.elapsed();
     HttpClientConnectionsMeasurements measurements = connectionsMeasurements.get(requestMetric.getAddress());
     if (measurements != null) {
-      measurements.responseEnd(responseTime);
+      measurements.responseEnd(responseTime, response.statusCode());
     }
   }
 
@@ -129,6 +130,13 @@ public class HttpClientMetricsImpl implements HttpClientMetrics<HttpClientReques
     return connectionsMeasurements.entrySet().stream().collect(toMap(Entry::getKey, e -> e.getValue().getSnapshot()));
   }
 
+  /**
+   * @return the remote addresses measured so far
+   */
+  public Set<SocketAddress> getRemoteAddresses() {
+    return connectionsMeasurements.keySet();
+  }
+
   @Override
   public boolean isEnabled() {
     return true;
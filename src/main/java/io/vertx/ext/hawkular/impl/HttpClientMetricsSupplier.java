@@ -18,17 +18,15 @@ package io.vertx.ext.hawkular.impl;
 
 import io.vertx.core.net.SocketAddress;
 import io.vertx.ext.hawkular.impl.HttpClientConnectionsMeasurements.Snapshot;
-import org.hawkular.metrics.client.common.MetricType;
-import org.hawkular.metrics.client.common.SingleMetric;
+import io.vertx.ext.hawkular.spi.MetricSink;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 
-import static org.hawkular.metrics.client.common.MetricType.*;
+import static io.vertx.ext.hawkular.spi.MetricSink.*;
 
 /**
  * Aggregates values from {@link HttpClientMetricsImpl} instances and exposes metrics for collection.
@@ -36,15 +34,31 @@ import static org.hawkular.metrics.client.common.MetricType.*;
  * @author Thomas Segismont
  */
 public class HttpClientMetricsSupplier implements MetricSupplier {
-  private final String baseName;
+  private static final int CONNECTIONS = 0;
+  private static final int BYTES_RECEIVED = 1;
+  private static final int BYTES_SENT = 2;
+  private static final int ERROR_COUNT = 3;
+  private static final int REQUESTS = 4;
+  private static final int REQUEST_COUNT = 5;
+  private static final int RESPONSE_TIME = 6;
+  private static final int WS_CONNECTIONS = 7;
+  private static final int STATUS_CLASSES = 8;
+
+  private final AddressMetricIds ids;
   private final Set<HttpClientMetricsImpl> metricsSet = new CopyOnWriteArraySet<>();
 
   public HttpClientMetricsSupplier(String prefix) {
-    baseName = prefix + (prefix.isEmpty() ? "" : ".") + "vertx.http.client.";
+    String baseName = prefix + (prefix.isEmpty() ? "" : ".") + "vertx.http.client.";
+    String[] names = {"connections", "bytesReceived", "bytesSent", "errorCount", "requests", "requestCount",
+      "responseTime", "wsConnections"};
+    names = Arrays.copyOf(names, STATUS_CLASSES + StatusClassCounters.SIZE);
+    System.arraycopy(StatusClassCounters.NAMES, 0, names, STATUS_CLASSES, StatusClassCounters.SIZE);
+    ids = new AddressMetricIds(baseName, names);
   }
 
   @Override
-  public List<SingleMetric> collect() {
+  public void collect(MetricSink sink) {
+    ids.release(sink);
     long timestamp = System.currentTimeMillis();
 
     Map<SocketAddress, Snapshot> values = new HashMap<>();
@@ -55,26 +69,27 @@ public class HttpClientMetricsSupplier implements MetricSupplier {
       });
     }
 
-    List<SingleMetric> res = new ArrayList<>();
-
-    values.forEach((address, snapshot) -> {
-      String addressId = address.host() + ":" + address.port();
+    for (Map.Entry<SocketAddress, Snapshot> entry : values.entrySet()) {
+      SocketAddress address = entry.getKey();
+      Snapshot snapshot = entry.getValue();
       // TCP metrics
-      res.add(metric(addressId + ".connections", timestamp, snapshot.getConnections(), GAUGE));
-      res.add(metric(addressId + ".bytesReceived", timestamp, snapshot.getBytesReceived(), COUNTER));
-      res.add(metric(addressId + ".bytesSent", timestamp, snapshot.getBytesSent(), COUNTER));
-      res.add(metric(addressId + ".errorCount", timestamp, snapshot.getErrorCount(), COUNTER));
+      write(sink, address, CONNECTIONS, timestamp, snapshot.getConnections(), GAUGE);
+      write(sink, address, BYTES_RECEIVED, timestamp, snapshot.getBytesReceived(), COUNTER);
+      write(sink, address, BYTES_SENT, timestamp, snapshot.getBytesSent(), COUNTER);
+      write(sink, address, ERROR_COUNT, timestamp, snapshot.getErrorCount(), COUNTER);
       // HTTP metrics
-      res.add(metric(addressId + ".requests", timestamp, snapshot.getRequests(), GAUGE));
-      res.add(metric(addressId + ".requestCount", timestamp, snapshot.getRequestCount(), COUNTER));
-      res.add(metric(addressId + ".responseTime", timestamp, snapshot.getResponseTime(), COUNTER));
-      res.add(metric(addressId + ".wsConnections", timestamp, snapshot.getWsConnections(), GAUGE));
-    });
-    return res;
+      write(sink, address, REQUESTS, timestamp, snapshot.getRequests(), GAUGE);
+      write(sink, address, REQUEST_COUNT, timestamp, snapshot.getRequestCount(), COUNTER);
+      write(sink, address, RESPONSE_TIME, timestamp, snapshot.getResponseTime(), COUNTER);
+      write(sink, address, WS_CONNECTIONS, timestamp, snapshot.getWsConnections(), GAUGE);
+      for (int i = 0; i < StatusClassCounters.SIZE; i++) {
+        write(sink, address, STATUS_CLASSES + i, timestamp, snapshot.getStatusClassCount(i), COUNTER);
+      }
+    }
   }
 
-  private SingleMetric metric(String name, long timestamp, Number value, MetricType type) {
-    return new SingleMetric(baseName + name, timestamp, value.doubleValue(), type);
+  private void write(MetricSink sink, SocketAddress address, int kind, long timestamp, double value, byte type) {
+    sink.add(sink.handle(ids.id(address, kind)), timestamp, value, type);
   }
 
   public void register(HttpClientMetricsImpl httpClientMetrics) {
@@ -83,5 +98,6 @@ public class HttpClientMetricsSupplier implements MetricSupplier {
 
   public void unregister(HttpClientMetricsImpl httpClientMetrics) {
     metricsSet.remove(httpClientMetrics);
+    ids.invalidate(httpClientMetrics.getRemoteAddresses());
   }
 }
@@ -15,18 +15,25 @@
  */
 package io.vertx.ext.hawkular.impl;
 
+import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.http.ServerWebSocket;
 import io.vertx.core.net.SocketAddress;
 import io.vertx.core.spi.metrics.HttpServerMetrics;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @author Thomas Segismont
  */
-public class HttpServerMetricsImpl implements HttpServerMetrics<Long, Void, Void> {
+public class HttpServerMetricsImpl implements HttpServerMetrics<HttpServerRequestMetrics, Void, Void> {
+  private static final HttpMethod[] METHODS = HttpMethod.values();
+
   // Request info
   private final LongAdder processingTime = new LongAdder();
   private final LongAdder requestCount = new LongAdder();
@@ -40,6 +47,16 @@ public class HttpServerMetricsImpl implements HttpServerMetrics<Long, Void, Void
   private final LongAdder bytesSent = new LongAdder();
   // Other
   private final LongAdder errorCount = new LongAdder();
+  private final StatusClassCounters statusClasses = new StatusClassCounters();
+  // Null if latency histograms are disabled
+  private final LatencyHistogram latencies;
+  // Route info, null if per route metrics are disabled
+  private final RouteMatcher routeMatcher;
+  // Indexed by route (unmatched requests last) and method
+  private final AtomicReferenceArray<RouteMetrics> routes;
+  private final AtomicInteger routeCount = new AtomicInteger();
+  private final int maxRoutes;
+  private final RouteMetrics overflowRoute;
 
   private final SocketAddress localAddress;
   private final HttpServerMetricsSupplier httpServerMetricsSupplier;
@@ -47,25 +64,73 @@ public class HttpServerMetricsImpl implements HttpServerMetrics<Long, Void, Void
   public HttpServerMetricsImpl(SocketAddress localAddress, HttpServerMetricsSupplier httpServerMetricsSupplier) {
     this.localAddress = localAddress;
     this.httpServerMetricsSupplier = httpServerMetricsSupplier;
+    latencies = httpServerMetricsSupplier.isLatencyHistogramsEnabled() ? new LatencyHistogram() : null;
+    routeMatcher = httpServerMetricsSupplier.getRouteMatcher();
+    if (routeMatcher != null) {
+      routes = new AtomicReferenceArray<>((routeMatcher.size() + 1) * METHODS.length);
+      maxRoutes = httpServerMetricsSupplier.getMaxRoutes();
+      overflowRoute = new RouteMetrics("_overflow", latencies != null);
+    } else {
+      routes = null;
+      maxRoutes = 0;
+      overflowRoute = null;
+    }
     httpServerMetricsSupplier.register(this);
   }
 
   @Override
-  public Long requestBegin(Void socketMetric, HttpServerRequest request) {
+  public HttpServerRequestMetrics requestBegin(Void socketMetric, HttpServerRequest request) {
     requests.increment();
-    return System.nanoTime();
+    return new HttpServerRequestMetrics(routeMatcher != null ? route(request) : null);
+  }
+
+  private RouteMetrics route(HttpServerRequest request) {
+    String uri = request.uri();
+    return route(request.method(), uri.startsWith("/") ? uri : request.path());
+  }
+
+  RouteMetrics route(HttpMethod method, String path) {
+    int route = routeMatcher.match(path);
+    if (route < 0) {
+      route = routeMatcher.size();
+    }
+    int index = route * METHODS.length + method.ordinal();
+    RouteMetrics routeMetrics = routes.get(index);
+    if (routeMetrics != null) {
+      return routeMetrics;
+    }
+    if (routeCount.incrementAndGet() > maxRoutes) {
+      routeCount.decrementAndGet();
+      return overflowRoute;
+    }
+    String template = route < routeMatcher.size() ? routeMatcher.template(route) : "_unmatched";
+    routeMetrics = new RouteMetrics(method.name() + "." + template, latencies != null);
+    if (!routes.compareAndSet(index, null, routeMetrics)) {
+      // Created concurrently
+      routeCount.decrementAndGet();
+      routeMetrics = routes.get(index);
+    }
+    return routeMetrics;
   }
 
   @Override
-  public void responseEnd(Long nanoStart, HttpServerResponse response) {
-    long requestProcessingTime = System.nanoTime() - nanoStart;
+  public void responseEnd(HttpServerRequestMetrics requestMetric, HttpServerResponse response) {
+    long requestProcessingTime = requestMetric.elapsed();
+    RouteMetrics route = requestMetric.getRoute();
+    if (route != null) {
+      route.record(requestProcessingTime, response.getStatusCode());
+    }
     processingTime.add(requestProcessingTime);
+    statusClasses.record(response.getStatusCode());
+    if (latencies != null) {
+      latencies.record(requestProcessingTime);
+    }
     requestCount.increment();
     requests.decrement();
   }
 
   @Override
-  public Void upgrade(Long requestMetric, ServerWebSocket serverWebSocket) {
+  public Void upgrade(HttpServerRequestMetrics requestMetric, ServerWebSocket serverWebSocket) {
     return null;
   }
 
@@ -120,6 +185,32 @@ public class HttpServerMetricsImpl implements HttpServerMetrics<Long, Void, Void
     return processingTime.sum();
   }
 
+  /**
+   * @return the latency histogram of http requests, null if latency histograms are disabled
+   */
+  public LatencyHistogram getLatencies() {
+    return latencies;
+  }
+
+  /**
+   * @return per route measurements, empty if per route metrics are disabled
+   */
+  public List<RouteMetrics> getRoutes() {
+    List<RouteMetrics> res = new ArrayList<>();
+    if (routes != null) {
+      for (int i = 0; i < routes.length(); i++) {
+        RouteMetrics routeMetrics = routes.get(i);
+        if (routeMetrics != null) {
+          res.add(routeMetrics);
+        }
+      }
+      if (overflowRoute.getRequestCount() > 0) {
+        res.add(overflowRoute);
+      }
+    }
+    return res;
+  }
+
   /**
    * @return total number of processed http requests
    */
@@ -169,6 +260,13 @@ public class HttpServerMetricsImpl implements HttpServerMetrics<Long, Void, Void
     return errorCount.sum();
   }
 
+  /**
+   * @return response counters by status class
+   */
+  public StatusClassCounters getStatusClasses() {
+    return statusClasses;
+  }
+
   @Override
   public boolean isEnabled() {
     return true;
@@ -16,33 +16,112 @@
 package io.vertx.ext.hawkular.impl;
 
 import io.vertx.core.net.SocketAddress;
-import org.hawkular.metrics.client.common.MetricType;
-import org.hawkular.metrics.client.common.SingleMetric;
+import io.vertx.ext.hawkular.VertxHawkularOptions;
+import io.vertx.ext.hawkular.spi.MetricSink;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 
-import static org.hawkular.metrics.client.common.MetricType.*;
+import static io.vertx.ext.hawkular.spi.MetricSink.*;
 
 /**
  * Aggregates values from {@link HttpServerMetricsImpl} instances and exposes metrics for collection.
+ * <p>
+ * When latency histograms are enabled, the histograms of servers sharing an address are merged, and the percentiles,
+ * minimum and maximum of the latencies recorded since the previous collection are sent as gauges, in milliseconds.
+ * <p>
+ * When route templates are configured, request count, errors and processing time, as well as latencies if enabled,
+ * are also sent per route, with {@code route.<method>.<template>} ids under the server address. Templates are
+ * {@link #routeIdSegment(String) sanitized}, so that ids stay usable in Hawkular REST paths.
  *
  * @author Thomas Segismont
  */
 public class HttpServerMetricsSupplier implements MetricSupplier {
+  private static final int PROCESSING_TIME = 0;
+  private static final int REQUEST_COUNT = 1;
+  private static final int REQUESTS = 2;
+  private static final int HTTP_CONNECTIONS = 3;
+  private static final int WS_CONNECTIONS = 4;
+  private static final int BYTES_RECEIVED = 5;
+  private static final int BYTES_SENT = 6;
+  private static final int ERROR_COUNT = 7;
+  private static final int STATUS_CLASSES = 8;
+  private static final int LATENCY = STATUS_CLASSES + StatusClassCounters.SIZE;
+  private static final int ROUTE_REQUEST_COUNT = 0;
+  private static final int ROUTE_ERROR_COUNT = 1;
+  private static final int ROUTE_PROCESSING_TIME = 2;
+  private static final int ROUTE_LATENCY = 3;
+
   private final String baseName;
+  private final AddressMetricIds ids;
+  // Null if latency histograms are disabled
+  private final double[] latencyPercentiles;
+  // min, max and percentiles
+  private final String[] latencyNames;
+  // Null if per route metrics are disabled
+  private final RouteMatcher routeMatcher;
+  private final int maxRoutes;
+  // Only accessed on collection
+  private final Map<SocketAddress, LatencyHistogram.Snapshot> latencies = new HashMap<>();
+  private final Map<SocketAddress, Map<String, RouteTotals>> routeTotals = new HashMap<>();
   private final Set<HttpServerMetricsImpl> metricsSet = new CopyOnWriteArraySet<>();
 
-  public HttpServerMetricsSupplier(String prefix) {
+  /**
+   * @param options Vertx Hawkular options
+   */
+  public HttpServerMetricsSupplier(VertxHawkularOptions options) {
+    String prefix = options.getPrefix();
     baseName = prefix + (prefix.isEmpty() ? "" : ".") + "vertx.http.server.";
+    if (options.isLatencyHistogramsEnabled()) {
+      latencyPercentiles = LatencyHistogram.toArray(options.getLatencyPercentiles());
+      latencyNames = LatencyHistogram.metricNames(latencyPercentiles);
+    } else {
+      latencyPercentiles = null;
+      latencyNames = new String[0];
+    }
+    ids = new AddressMetricIds(baseName, concat(concat(new String[]{"processingTime", "requestCount", "requests",
+      "httpConnections", "wsConnections", "bytesReceived", "bytesSent", "errorCount"}, StatusClassCounters.NAMES),
+      latencyNames));
+    List<String> routes = options.getHttpServerRoutes();
+    routeMatcher = routes.isEmpty() ? null : new RouteMatcher(routes);
+    maxRoutes = options.getMaxHttpServerRoutes();
+  }
+
+  private static String[] concat(String[] first, String[] second) {
+    String[] res = Arrays.copyOf(first, first.length + second.length);
+    System.arraycopy(second, 0, res, first.length, second.length);
+    return res;
+  }
+
+  /**
+   * @return true if server metrics must record latency histograms
+   */
+  public boolean isLatencyHistogramsEnabled() {
+    return latencyPercentiles != null;
+  }
+
+  /**
+   * @return the route matcher, null if per route metrics are disabled
+   */
+  public RouteMatcher getRouteMatcher() {
+    return routeMatcher;
+  }
+
+  /**
+   * @return the maximum number of per route series of a server
+   */
+  public int getMaxRoutes() {
+    return maxRoutes;
   }
 
   @Override
-  public List<SingleMetric> collect() {
+  public void collect(MetricSink sink) {
+    ids.release(sink);
     long timestamp = System.currentTimeMillis();
 
     Map<SocketAddress, Long> processingTime = new HashMap<>();
@@ -53,6 +132,7 @@ public class HttpServerMetricsSupplier implements MetricSupplier {
     Map<SocketAddress, Long> bytesReceived = new HashMap<>();
     Map<SocketAddress, Long> bytesSent = new HashMap<>();
     Map<SocketAddress, Long> errorCount = new HashMap<>();
+    Map<SocketAddress, long[]> statusClasses = new HashMap<>();
 
     for (HttpServerMetricsImpl httpServerMetrics : metricsSet) {
       SocketAddress serverAddress = httpServerMetrics.getServerAddress();
@@ -64,35 +144,148 @@ public class HttpServerMetricsSupplier implements MetricSupplier {
       merge(bytesReceived, serverAddress, httpServerMetrics.getBytesReceived());
       merge(bytesSent, serverAddress, httpServerMetrics.getBytesSent());
       merge(errorCount, serverAddress, httpServerMetrics.getErrorCount());
+      long[] totals = statusClasses.get(serverAddress);
+      if (totals == null) {
+        totals = new long[StatusClassCounters.SIZE];
+        statusClasses.put(serverAddress, totals);
+      }
+      httpServerMetrics.getStatusClasses().sumTo(totals);
     }
 
-    List<SingleMetric> res = new ArrayList<>();
-    res.addAll(metrics("processingTime", timestamp, processingTime, COUNTER));
-    res.addAll(metrics("requestCount", timestamp, requestCount, COUNTER));
-    res.addAll(metrics("requests", timestamp, requests, GAUGE));
-    res.addAll(metrics("httpConnections", timestamp, httpConnections, GAUGE));
-    res.addAll(metrics("wsConnections", timestamp, wsConnections, GAUGE));
-    res.addAll(metrics("bytesReceived", timestamp, bytesReceived, COUNTER));
-    res.addAll(metrics("bytesSent", timestamp, bytesSent, COUNTER));
-    res.addAll(metrics("errorCount", timestamp, errorCount, COUNTER));
-    return res;
+    write(sink, PROCESSING_TIME, timestamp, processingTime, COUNTER);
+    write(sink, REQUEST_COUNT, timestamp, requestCount, COUNTER);
+    write(sink, REQUESTS, timestamp, requests, GAUGE);
+    write(sink, HTTP_CONNECTIONS, timestamp, httpConnections, GAUGE);
+    write(sink, WS_CONNECTIONS, timestamp, wsConnections, GAUGE);
+    write(sink, BYTES_RECEIVED, timestamp, bytesReceived, COUNTER);
+    write(sink, BYTES_SENT, timestamp, bytesSent, COUNTER);
+    write(sink, ERROR_COUNT, timestamp, errorCount, COUNTER);
+    for (Map.Entry<SocketAddress, long[]> entry : statusClasses.entrySet()) {
+      String[] addressIds = ids.ids(entry.getKey());
+      long[] totals = entry.getValue();
+      for (int i = 0; i < totals.length; i++) {
+        sink.add(sink.handle(addressIds[STATUS_CLASSES + i]), timestamp, totals[i], COUNTER);
+      }
+    }
+
+    if (latencyPercentiles != null) {
+      writeLatencies(sink, timestamp);
+    }
+    if (routeMatcher != null) {
+      writeRoutes(sink, timestamp);
+    }
   }
 
-  private void merge(Map<SocketAddress, Long> values, SocketAddress serverAddress, Long value) {
-    values.merge(serverAddress, value, Long::sum);
+  private void writeLatencies(MetricSink sink, long timestamp) {
+    for (HttpServerMetricsImpl httpServerMetrics : metricsSet) {
+      SocketAddress serverAddress = httpServerMetrics.getServerAddress();
+      LatencyHistogram.Snapshot snapshot = latencies.get(serverAddress);
+      if (snapshot == null) {
+        snapshot = new LatencyHistogram.Snapshot();
+        latencies.put(serverAddress, snapshot);
+      }
+      httpServerMetrics.getLatencies().drainTo(snapshot);
+    }
+    for (Iterator<Map.Entry<SocketAddress, LatencyHistogram.Snapshot>> iterator = latencies.entrySet().iterator();
+         iterator.hasNext(); ) {
+      Map.Entry<SocketAddress, LatencyHistogram.Snapshot> entry = iterator.next();
+      LatencyHistogram.Snapshot snapshot = entry.getValue();
+      if (snapshot.isEmpty()) {
+        // Nothing recorded during the interval, don't keep memory for idle servers
+        iterator.remove();
+        continue;
+      }
+      snapshot.write(sink, timestamp, ids.ids(entry.getKey()), LATENCY, latencyPercentiles);
+    }
+  }
+
+  private void writeRoutes(MetricSink sink, long timestamp) {
+    for (HttpServerMetricsImpl httpServerMetrics : metricsSet) {
+      SocketAddress serverAddress = httpServerMetrics.getServerAddress();
+      Map<String, RouteTotals> addressTotals = routeTotals.get(serverAddress);
+      if (addressTotals == null) {
+        addressTotals = new HashMap<>();
+        routeTotals.put(serverAddress, addressTotals);
+      }
+      for (RouteMetrics route : httpServerMetrics.getRoutes()) {
+        RouteTotals totals = addressTotals.get(route.getName());
+        if (totals == null) {
+          totals = new RouteTotals(routeIds(serverAddress, route.getName()));
+          addressTotals.put(route.getName(), totals);
+        }
+        totals.add(route);
+      }
+    }
+    for (Iterator<Map<String, RouteTotals>> addresses = routeTotals.values().iterator(); addresses.hasNext(); ) {
+      Map<String, RouteTotals> addressTotals = addresses.next();
+      for (Iterator<RouteTotals> iterator = addressTotals.values().iterator(); iterator.hasNext(); ) {
+        RouteTotals totals = iterator.next();
+        if (!totals.seen) {
+          // The server is closed
+          iterator.remove();
+          continue;
+        }
+        String[] routeIds = totals.ids;
+        sink.add(sink.handle(routeIds[ROUTE_REQUEST_COUNT]), timestamp, totals.requestCount, COUNTER);
+        sink.add(sink.handle(routeIds[ROUTE_ERROR_COUNT]), timestamp, totals.errorCount, COUNTER);
+        sink.add(sink.handle(routeIds[ROUTE_PROCESSING_TIME]), timestamp, totals.processingTime, COUNTER);
+        if (totals.latencies != null && !totals.latencies.isEmpty()) {
+          totals.latencies.write(sink, timestamp, routeIds, ROUTE_LATENCY, latencyPercentiles);
+        }
+        totals.reset();
+      }
+      if (addressTotals.isEmpty()) {
+        addresses.remove();
+      }
+    }
   }
 
-  private List<SingleMetric> metrics(String name, long timestamp, Map<SocketAddress, ? extends Number> values, MetricType type) {
-    List<SingleMetric> res = new ArrayList<>(values.size());
-    values.forEach((address, count) -> {
-      String addressId = address.host() + ":" + address.port();
-      res.add(metric(addressId + "." + name, timestamp, count, type));
-    });
+  private String[] routeIds(SocketAddress address, String route) {
+    String routeId = baseName + address.host() + ":" + address.port() + ".route." + routeIdSegment(route) + ".";
+    String[] names = concat(new String[]{"requestCount", "errorCount", "processingTime"}, latencyNames);
+    String[] res = new String[names.length];
+    for (int i = 0; i < names.length; i++) {
+      res[i] = routeId + names[i];
+    }
     return res;
   }
 
-  private SingleMetric metric(String name, long timestamp, Number value, MetricType type) {
-    return new SingleMetric(baseName + name, timestamp, value.doubleValue(), type);
+  /**
+   * Turns a route name into a metric id segment: path separators become dots, without an empty segment after the
+   * method nor at the end, and parameters are written {@code :name}, whatever the template syntax. For example,
+   * {@code GET./users/{id}/} becomes {@code GET.users.:id}.
+   *
+   * @param route the route name, a method and a template
+   * @return the id segment
+   */
+  static String routeIdSegment(String route) {
+    StringBuilder res = new StringBuilder(route.length());
+    for (int i = 0; i < route.length(); i++) {
+      char c = route.charAt(i);
+      if (c == '/') {
+        if (res.length() > 0 && res.charAt(res.length() - 1) != '.') {
+          res.append('.');
+        }
+      } else if (c == '{') {
+        res.append(':');
+      } else if (c != '}') {
+        res.append(c);
+      }
+    }
+    if (res.length() > 0 && res.charAt(res.length() - 1) == '.') {
+      res.setLength(res.length() - 1);
+    }
+    return res.toString();
+  }
+
+  private void merge(Map<SocketAddress, Long> values, SocketAddress serverAddress, Long value) {
+    values.merge(serverAddress, value, Long::sum);
+  }
+
+  private void write(MetricSink sink, int kind, long timestamp, Map<SocketAddress, Long> values, byte type) {
+    for (Map.Entry<SocketAddress, Long> entry : values.entrySet()) {
+      sink.add(sink.handle(ids.id(entry.getKey(), kind)), timestamp, entry.getValue(), type);
+    }
   }
 
   public void register(HttpServerMetricsImpl httpServerMetrics) {
@@ -101,5 +294,40 @@ public class HttpServerMetricsSupplier implements MetricSupplier {
 
   public void unregister(HttpServerMetricsImpl httpServerMetrics) {
     metricsSet.remove(httpServerMetrics);
+    ids.invalidate(httpServerMetrics.getServerAddress());
+  }
+
+  /**
+   * Route measurements of all the servers sharing an address, for one collection.
+   */
+  private class RouteTotals {
+    final String[] ids;
+    final LatencyHistogram.Snapshot latencies;
+    boolean seen;
+    long requestCount;
+    long errorCount;
+    long processingTime;
+
+    RouteTotals(String[] ids) {
+      this.ids = ids;
+      latencies = latencyPercentiles != null ? new LatencyHistogram.Snapshot() : null;
+    }
+
+    void add(RouteMetrics route) {
+      seen = true;
+      requestCount += route.getRequestCount();
+      errorCount += route.getErrorCount();
+      processingTime += route.getProcessingTime();
+      if (latencies != null) {
+        route.getLatencies().drainTo(latencies);
+      }
+    }
+
+    void reset() {
+      seen = false;
+      requestCount = 0;
+      errorCount = 0;
+      processingTime = 0;
+    }
   }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.core.http.HttpServerRequest;
+
+/**
+ * HTTP server request monitoring class. An instance is created whenever
+ * {@link HttpServerMetricsImpl#requestBegin(Void, HttpServerRequest)} is called. The instance is then associated with
+ * the request, until the response is sent.
+ *
+ * @author Thomas Segismont
+ */
+public class HttpServerRequestMetrics {
+  private final long start;
+  private final RouteMetrics route;
+
+  /**
+   * @param route the route of the request, null if per route metrics are disabled
+   */
+  public HttpServerRequestMetrics(RouteMetrics route) {
+    this.route = route;
+    start = System.nanoTime();
+  }
+
+  /**
+   * @return the route of the request, null if per route metrics are disabled
+   */
+  public RouteMetrics getRoute() {
+    return route;
+  }
+
+  /**
+   * @return the number of nanoseconds elapsed since the request began
+   */
+  public long elapsed() {
+    return System.nanoTime() - start;
+  }
+}
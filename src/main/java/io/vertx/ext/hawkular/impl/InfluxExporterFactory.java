@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.ext.hawkular.VertxHawkularOptions;
+import io.vertx.ext.hawkular.spi.MetricsExporter;
+import io.vertx.ext.hawkular.spi.MetricsExporterFactory;
+
+/**
+ * Creates {@link LineProtocolExporter} instances sending metrics to a InfluxDB server over UDP.
+ *
+ * @author Thomas Segismont
+ */
+public class InfluxExporterFactory implements MetricsExporterFactory {
+  /**
+   * Name of the InfluxDB exporter.
+   */
+  public static final String NAME = "influx";
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public MetricsExporter create(Vertx vertx, VertxHawkularOptions options, Context context) {
+    return new LineProtocolExporter(vertx, options, context, LineProtocolExporter.Format.INFLUX);
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.ext.hawkular.spi.MetricSink;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent, fixed-memory, latency histogram.
+ * <p>
+ * Latencies are recorded in microseconds, in log-linear buckets: with the default layout, values below 32 have their
+ * own bucket, bigger values are grouped by power of two, each power of two being split in 32 linear sub-buckets. The
+ * relative error is below 3.2%, up to about 19 hours. Bigger values are recorded in the last bucket. This takes 1024
+ * counters; histograms created in large numbers can use fewer sub-buckets, e.g. 8 sub-buckets take 272 counters, for a
+ * relative error below 12.5%.
+ * <p>
+ * Recording is lock-free and allocation-free: it increments a bucket counter and updates the minimum and maximum with
+ * compare-and-set, only when they change. The collection side {@link #drainTo(Snapshot) drains} the histogram, so that
+ * each collection describes the latencies recorded during the last interval.
+ *
+ * @author Thomas Segismont
+ */
+public class LatencyHistogram {
+  /**
+   * Default number of bits of the sub-bucket index: 32 sub-buckets per power of two.
+   */
+  public static final int DEFAULT_SUB_BUCKET_BITS = 5;
+
+  private static final int MAX_EXPONENT = 36;
+  static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+
+  private final int subBucketBits;
+  private final AtomicLongArray counts;
+  private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+  private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+  public LatencyHistogram() {
+    this(DEFAULT_SUB_BUCKET_BITS);
+  }
+
+  /**
+   * @param subBucketBits number of bits of the sub-bucket index, between 1 and 10
+   */
+  public LatencyHistogram(int subBucketBits) {
+    if (subBucketBits < 1 || subBucketBits > 10) {
+      throw new IllegalArgumentException("Invalid number of sub-bucket bits: " + subBucketBits);
+    }
+    this.subBucketBits = subBucketBits;
+    counts = new AtomicLongArray(bucketCount(subBucketBits));
+  }
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos the latency, in nanoseconds
+   */
+  public void record(long nanos) {
+    long micros = Math.min(Math.max(0, nanos / 1000), MAX_VALUE);
+    counts.incrementAndGet(bucketOf(micros, subBucketBits));
+    long current;
+    while (micros < (current = min.get()) && !min.compareAndSet(current, micros)) {
+    }
+    while (micros > (current = max.get()) && !max.compareAndSet(current, micros)) {
+    }
+  }
+
+  /**
+   * Moves recorded latencies to a snapshot, which may already contain latencies of other histograms.
+   *
+   * @param snapshot the snapshot to merge latencies into, with the same number of sub-bucket bits
+   */
+  public void drainTo(Snapshot snapshot) {
+    if (snapshot.subBucketBits != subBucketBits) {
+      throw new IllegalArgumentException("Snapshot bucket layout does not match");
+    }
+    for (int i = 0, bucketCount = counts.length(); i < bucketCount; i++) {
+      if (counts.get(i) != 0) {
+        long count = counts.getAndSet(i, 0);
+        snapshot.counts[i] += count;
+        snapshot.total += count;
+      }
+    }
+    snapshot.min = Math.min(snapshot.min, min.getAndSet(Long.MAX_VALUE));
+    snapshot.max = Math.max(snapshot.max, max.getAndSet(Long.MIN_VALUE));
+  }
+
+  /**
+   * @param percentiles the percentiles to send, between 0 and 100
+   * @return the percentiles, as an array
+   */
+  public static double[] toArray(List<Double> percentiles) {
+    double[] res = new double[percentiles.size()];
+    for (int i = 0; i < res.length; i++) {
+      res[i] = percentiles.get(i);
+    }
+    return res;
+  }
+
+  /**
+   * @param percentiles the percentiles to send, between 0 and 100
+   * @return the names of the metrics written by {@link Snapshot#write(MetricSink, long, String[], int, double[])}: min,
+   * max, then the percentiles named after their value without the decimal point, e.g. {@code latency.p999} for 99.9
+   */
+  public static String[] metricNames(double[] percentiles) {
+    String[] res = new String[2 + percentiles.length];
+    res[0] = "latency.min";
+    res[1] = "latency.max";
+    for (int i = 0; i < percentiles.length; i++) {
+      res[2 + i] = "latency.p" + BigDecimal.valueOf(percentiles[i]).stripTrailingZeros().toPlainString().replace(".", "");
+    }
+    return res;
+  }
+
+  static int bucketCount(int subBucketBits) {
+    return (MAX_EXPONENT - subBucketBits + 1) << subBucketBits;
+  }
+
+  static int bucketOf(long micros, int subBucketBits) {
+    int subBucketCount = 1 << subBucketBits;
+    if (micros < subBucketCount) {
+      return (int) micros;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    int subBucket = (int) (micros >>> (exponent - subBucketBits)) - subBucketCount;
+    return ((exponent - subBucketBits + 1) << subBucketBits) + subBucket;
+  }
+
+  static long lowestValueOf(int bucket, int subBucketBits) {
+    int subBucketCount = 1 << subBucketBits;
+    if (bucket < subBucketCount) {
+      return bucket;
+    }
+    int shift = (bucket >> subBucketBits) - 1;
+    return (long) ((bucket & (subBucketCount - 1)) + subBucketCount) << shift;
+  }
+
+  static long widthOf(int bucket, int subBucketBits) {
+    return bucket < 1 << subBucketBits ? 1 : 1L << ((bucket >> subBucketBits) - 1);
+  }
+
+  /**
+   * Latencies drained from one or more histograms. Snapshots are reusable and not thread-safe.
+   */
+  public static class Snapshot {
+    private final int subBucketBits;
+    private final long[] counts;
+    private long total;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    public Snapshot() {
+      this(DEFAULT_SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @param subBucketBits number of bits of the sub-bucket index of the drained histograms
+     */
+    public Snapshot(int subBucketBits) {
+      this.subBucketBits = subBucketBits;
+      counts = new long[bucketCount(subBucketBits)];
+    }
+
+    /**
+     * @return true if no latency was drained since the last reset
+     */
+    public boolean isEmpty() {
+      return total == 0;
+    }
+
+    /**
+     * @return the number of latencies
+     */
+    public long getTotal() {
+      return total;
+    }
+
+    /**
+     * @return the minimum latency, in microseconds
+     */
+    public long getMin() {
+      return min;
+    }
+
+    /**
+     * @return the maximum latency, in microseconds
+     */
+    public long getMax() {
+      return max;
+    }
+
+    /**
+     * @param percentile a percentile, between 0 and 100
+     * @return the latency at this percentile, in microseconds, or zero if the snapshot is empty
+     */
+    public long valueAt(double percentile) {
+      if (total == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+      long cumulated = 0;
+      for (int i = 0; i < counts.length; i++) {
+        cumulated += counts[i];
+        if (cumulated >= rank) {
+          // Middle of the bucket, within the observed bounds
+          long value = lowestValueOf(i, subBucketBits) + widthOf(i, subBucketBits) / 2;
+          return min <= max ? Math.min(Math.max(value, min), max) : value;
+        }
+      }
+      return max;
+    }
+
+    /**
+     * Writes min, max and percentiles as gauges, in milliseconds, then resets the snapshot.
+     *
+     * @param sink        the sink to write to
+     * @param timestamp   the points timestamp
+     * @param ids         metric ids, as named by {@link #metricNames(double[])}, starting at {@code offset}
+     * @param offset      the index of the first id
+     * @param percentiles the percentiles to write
+     */
+    public void write(MetricSink sink, long timestamp, String[] ids, int offset, double[] percentiles) {
+      write(sink, ids[offset], timestamp, min);
+      write(sink, ids[offset + 1], timestamp, max);
+      for (int i = 0; i < percentiles.length; i++) {
+        write(sink, ids[offset + 2 + i], timestamp, valueAt(percentiles[i]));
+      }
+      reset();
+    }
+
+    private static void write(MetricSink sink, String id, long timestamp, long micros) {
+      sink.add(sink.handle(id), timestamp, micros / 1000d, MetricSink.GAUGE);
+    }
+
+    /**
+     * Removes all latencies.
+     */
+    public void reset() {
+      Arrays.fill(counts, 0);
+      total = 0;
+      min = Long.MAX_VALUE;
+      max = Long.MIN_VALUE;
+    }
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.ext.hawkular.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.datagram.DatagramSocket;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.hawkular.MetricsBatch;
+import io.vertx.ext.hawkular.VertxHawkularOptions;
+import io.vertx.ext.hawkular.spi.MetricSink;
+import io.vertx.ext.hawkular.spi.MetricsExporter;
+import org.hawkular.metrics.client.common.SingleMetric;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.vertx.ext.hawkular.impl.AsciiNumbers.*;
+
+/**
+ * Sends collected metrics as StatsD or InfluxDB line protocol datagrams. Delivery is not acknowledged: datagrams which
+ * can't be sent are lost.
+ * <p>
+ * Lines are written straight into a pooled buffer and packed into datagrams up to the configured maximum packet size.
+ * A datagram is sent when the next line would not fit, and at the end of each collection cycle.
+ * <p>
+ * Metric names are the ones built by the suppliers. Characters which have a meaning in the protocol, as well as
+ * non-ASCII characters, are replaced with an underscore (StatsD) or escaped (InfluxDB).
+ * <p>
+ * It also supplies metrics about the sending process itself.
+ *
+ * @author Thomas Segismont
+ */
+public class LineProtocolExporter implements MetricsExporter, MetricSupplier {
+  private static final Logger LOG = LoggerFactory.getLogger(LineProtocolExporter.class);
+
+  private static final byte[] STATSD_GAUGE = {'|', 'g', '\n'};
+  private static final byte[] STATSD_ZERO_GAUGE = {':', '0', '|', 'g', '\n'};
+  private static final byte[] INFLUX_VALUE = {' ', 'v', 'a', 'l', 'u', 'e', '='};
+  private static final byte[] INFLUX_MILLIS_TO_NANOS = {'0', '0', '0', '0', '0', '0', '\n'};
+
+  /**
+   * Supported line protocols.
+   */
+  public enum Format {
+    /**
+     * {@code name:value|g}. Counters are cumulative, so all metrics are sent as gauges.
+     */
+    STATSD,
+    /**
+     * {@code name value=value timestamp}, with a nanosecond timestamp.
+     */
+    INFLUX
+  }
+
+  private final Vertx vertx;
+  private final Format format;
+  private final String host;
+  private final int port;
+  private final int maxPacketSize;
+  private final String sentPacketsId;
+  private final String failedPacketsId;
+  private final ByteBuf packet;
+  private final LongAdder sentPackets = new LongAdder();
+  private final LongAdder failedPackets = new LongAdder();
+
+  // Created on the context, as the Vert.x instance is not fully initialized when metrics are created. Guarded by this,
+  // as stop() may be invoked from another thread before the socket is created
+  private DatagramSocket socket;
+  private volatile boolean stopped;
+
+  /**
+   * @param vertx   the {@link Vertx} managed instance
+   * @param options Vertx Hawkular options
+   * @param context the metric collection and sending execution context
+   * @param format  the line protocol
+   */
+  public LineProtocolExporter(Vertx vertx, VertxHawkularOptions options, Context context, Format format) {
+    this.vertx = vertx;
+    this.format = format;
+    host = options.getUdpHost();
+    port = options.getUdpPort();
+    maxPacketSize = options.getUdpMaxPacketSize();
+    String prefix = options.getPrefix();
+    String baseName = prefix + (prefix.isEmpty() ? "" : ".") + "vertx.monitor.";
+    sentPacketsId = baseName + "sentPackets";
+    failedPacketsId = baseName + "failedPackets";
+    // Room for a full packet and the line which overflowed it
+    packet = PooledByteBufAllocator.DEFAULT.heapBuffer(2 * maxPacketSize);
+    context.runOnContext(aVoid -> open());
+  }
+
+  private synchronized void open() {
+    if (!stopped) {
+      socket = vertx.createDatagramSocket();
+    }
+  }
+
+  @Override
+  public void handle(List<SingleMetric> metrics) {
+    if (stopped) {
+      return;
+    }
+    for (int i = 0; i < metrics.size(); i++) {
+      SingleMetric metric = metrics.get(i);
+      write(metric.getSource(), metric.getTimestamp(), metric.getValue());
+    }
+  }
+
+  @Override
+  public void handle(MetricSink sink) {
+    if (stopped) {
+      return;
+    }
+    // Straight from the columns, no intermediate object
+    for (int i = 0; i < sink.size(); i++) {
+      write(sink.idOf(i), sink.timestampOf(i), sink.valueOf(i));
+    }
+  }
+
+  @Override
+  public void handle(MetricsBatch batch) {
+    if (stopped) {
+      return;
+    }
+    for (int i = 0; i < batch.size(); i++) {
+      write(batch.idOf(i), batch.timestampOf(i), batch.valueOf(i));
+    }
+  }
+
+  private void write(String name, long timestamp, double value) {
+    if (!isFinite(value)) {
+      return;
+    }
+    int mark = packet.writerIndex();
+    if (format == Format.STATSD) {
+      writeStatsd(name, value);
+    } else {
+      writeInflux(name, timestamp, value);
+    }
+    if (packet.writerIndex() > maxPacketSize) {
+      if (mark > 0) {
+        send(mark);
+      }
+      if (packet.writerIndex() > maxPacketSize) {
+        // A single line bigger than a packet, send it anyway and let the network fragment it
+        send(packet.writerIndex());
+      }
+    }
+  }
+
+  private void writeStatsd(String name, double value) {
+    if (value < 0) {
+      // A signed gauge value is a delta: reset the gauge first
+      writeStatsdName(name);
+      packet.writeBytes(STATSD_ZERO_GAUGE);
+    }
+    writeStatsdName(name);
+    packet.writeByte(':');
+    writeDouble(packet, value);
+    packet.writeBytes(STATSD_GAUGE);
+  }
+
+  private void writeStatsdName(String name) {
+    for (int i = 0, length = name.length(); i < length; i++) {
+      char c = name.charAt(i);
+      if (c <= ' ' || c >= 0x7F || c == ':' || c == '|' || c == '@') {
+        packet.writeByte('_');
+      } else {
+        packet.writeByte(c);
+      }
+    }
+  }
+
+  private void writeInflux(String name, long timestamp, double value) {
+    for (int i = 0, length = name.length(); i < length; i++) {
+      char c = name.charAt(i);
+      if (c == ',' || c == ' ') {
+        packet.writeByte('\\');
+        packet.writeByte(c);
+      } else if (c < ' ' || c >= 0x7F) {
+        packet.writeByte('_');
+      } else {
+        packet.writeByte(c);
+      }
+    }
+    packet.writeBytes(INFLUX_VALUE);
+    writeDouble(packet, value);
+    packet.writeByte(' ');
+    writeLong(packet, timestamp);
+    packet.writeBytes(INFLUX_MILLIS_TO_NANOS);
+  }
+
+  private void send(int length) {
+    Buffer datagram = Buffer.buffer(Unpooled.copiedBuffer(packet.slice(0, length)));
+    packet.readerIndex(length);
+    packet.discardReadBytes();
+    sentPackets.increment();
+    socket.send(datagram, port, host, ar -> {
+      if (ar.failed()) {
+        failedPackets.increment();
+        LOG.trace("Could not send metrics", ar.cause());
+      }
+    });
+  }
+
+  @Override
+  public void flush() {
+    if (!stopped && packet.isReadable()) {
+      send(packet.writerIndex());
+    }
+  }
+
+  @Override
+  public void collect(MetricSink sink) {
+    long timestamp = System.currentTimeMillis();
+    sink.counter(sentPacketsId, timestamp, sentPackets.doubleValue());
+    sink.counter(failedPacketsId, timestamp, failedPackets.doubleValue());
+  }
+
+  @Override
+  public void stop() {
+    DatagramSocket closing;
+    synchronized (this) {
+      if (socket != null) {
+        flush();
+      }
+      stopped = true;
+      closing = socket;
+    }
+    // Null if the context task has not run yet: it won't create the socket
+    if (closing != null) {
+      closing.close();
+    }
+    packet.release();
+  }
+}
@@ -16,12 +16,16 @@
 
 package io.vertx.ext.hawkular.impl;
 
+import io.vertx.ext.hawkular.spi.MetricSink;
 import org.hawkular.metrics.client.common.SingleMetric;
 
 import java.util.List;
 
 /**
  * Contract for objects supplying metrics.
+ * <p>
+ * Metrics are collected with {@link #collect(MetricSink)}, which writes points into a reusable columnar sink.
+ * Implementations must override at least one of the two methods: each default implementation adapts the other one.
  *
  * @author Thomas Segismont
  */
@@ -29,5 +33,25 @@ public interface MetricSupplier {
   /**
    * @return a list of metrics to send to the Hawkular server
    */
-  List<SingleMetric> collect();
+  default List<SingleMetric> collect() {
+    MetricSink sink = new MetricSink();
+    collect(sink);
+    return sink.toMetrics();
+  }
+
+  /**
+   * Writes metrics to send to the Hawkular server into {@code sink}.
+   * <p>
+   * The default implementation copies the result of {@link #collect()}: suppliers which care about allocation should
+   * override it.
+   *
+   * @param sink the sink to write points to
+   */
+  default void collect(MetricSink sink) {
+    List<SingleMetric> metrics = collect();
+    for (int i = 0; i < metrics.size(); i++) {
+      SingleMetric metric = metrics.get(i);
+      sink.add(metric.getSource(), metric.getTimestamp(), metric.getValue(), metric.getMetricType());
+    }
+  }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.ext.hawkular.MetricsBatch;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Binary event bus codec for {@link MetricsBatch}.
+ * <p>
+ * Wire layout: the number of distinct ids (int), each id as a length (int) and UTF-8 bytes, then the number of points
+ * (int) and each point as an id index (int), a type (byte, 1 for counters), a timestamp (long) and a value (double).
+ * <p>
+ * Decoded ids are interned, up to a limit, so that the same metric id coming from remote nodes is a single instance.
+ *
+ * @author Thomas Segismont
+ */
+public class MetricsBatchCodec implements MessageCodec<MetricsBatch, MetricsBatch> {
+  /**
+   * Codec name.
+   */
+  public static final String NAME = "vertx-monitor-metrics-batch";
+
+  static final int MAX_INTERNED_IDS = 10000;
+  private static final byte COUNTER = 1;
+
+  private final ConcurrentMap<String, String> internedIds = new ConcurrentHashMap<>();
+
+  @Override
+  public void encodeToWire(Buffer buffer, MetricsBatch batch) {
+    buffer.appendInt(batch.idCount());
+    for (int i = 0; i < batch.idCount(); i++) {
+      byte[] bytes = batch.id(i).getBytes(StandardCharsets.UTF_8);
+      buffer.appendInt(bytes.length).appendBytes(bytes);
+    }
+    buffer.appendInt(batch.size());
+    for (int i = 0; i < batch.size(); i++) {
+      buffer.appendInt(batch.idIndexOf(i))
+        .appendByte(batch.isCounter(i) ? COUNTER : 0)
+        .appendLong(batch.timestampOf(i))
+        .appendDouble(batch.valueOf(i));
+    }
+  }
+
+  @Override
+  public MetricsBatch decodeFromWire(int pos, Buffer buffer) {
+    int idCount = buffer.getInt(pos);
+    pos += 4;
+    String[] ids = new String[idCount];
+    for (int i = 0; i < idCount; i++) {
+      int length = buffer.getInt(pos);
+      pos += 4;
+      ids[i] = intern(buffer.getString(pos, pos + length, "UTF-8"));
+      pos += length;
+    }
+    int size = buffer.getInt(pos);
+    pos += 4;
+    MetricsBatch batch = new MetricsBatch(size);
+    for (int i = 0; i < size; i++) {
+      String id = ids[buffer.getInt(pos)];
+      boolean counter = buffer.getByte(pos + 4) == COUNTER;
+      long timestamp = buffer.getLong(pos + 5);
+      double value = buffer.getDouble(pos + 13);
+      batch.add(id, timestamp, value, counter);
+      pos += 21;
+    }
+    return batch;
+  }
+
+  private String intern(String id) {
+    String interned = internedIds.get(id);
+    if (interned != null) {
+      return interned;
+    }
+    if (internedIds.size() < MAX_INTERNED_IDS) {
+      interned = internedIds.putIfAbsent(id, id);
+      return interned != null ? interned : id;
+    }
+    return id;
+  }
+
+  @Override
+  public MetricsBatch transform(MetricsBatch batch) {
+    // Local delivery, batches must not be modified after they are sent
+    return batch;
+  }
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public byte systemCodecID() {
+    return -1;
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.hawkular.MetricsBatch;
+import io.vertx.ext.hawkular.VertxHawkularOptions;
+import io.vertx.ext.hawkular.spi.MetricSink;
+import io.vertx.ext.hawkular.spi.MetricsExporter;
+import org.hawkular.metrics.client.common.MetricType;
+import org.hawkular.metrics.client.common.SingleMetric;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Relays metrics sent by applications on the event bus to the exporter.
+ * <p>
+ * A message is either a JSON object describing a single metric, a JSON array of such objects, or a
+ * {@link MetricsBatch}. The consumer is registered on the metrics context, so metrics are handed over to the exporter
+ * directly. Batches are handed over as they are, without creating an object per point.
+ * <p>
+ * It also supplies metrics about the bridge itself.
+ *
+ * @author Thomas Segismont
+ */
+public class MetricsBridge implements MetricSupplier {
+  private final MetricsExporter exporter;
+  private final String messagesId;
+  private final String pointsId;
+  private final String parseFailuresId;
+  private final LongAdder messages = new LongAdder();
+  private final LongAdder points = new LongAdder();
+  private final LongAdder parseFailures = new LongAdder();
+
+  /**
+   * @param vertx    the {@link Vertx} managed instance
+   * @param options  Vertx Hawkular options
+   * @param context  the metric collection and sending execution context
+   * @param exporter the object responsible for sending metrics
+   */
+  public MetricsBridge(Vertx vertx, VertxHawkularOptions options, Context context, MetricsExporter exporter) {
+    this.exporter = exporter;
+    String prefix = options.getPrefix();
+    String baseName = prefix + (prefix.isEmpty() ? "" : ".") + "vertx.monitor.bridge.";
+    messagesId = baseName + "messages";
+    pointsId = baseName + "points";
+    parseFailuresId = baseName + "parseFailures";
+    // The event bus is not created yet when metrics are initialized
+    context.runOnContext(aVoid -> vertx.eventBus().consumer(options.getMetricsBridgeAddress(), this::handle));
+  }
+
+  private void handle(Message<Object> message) {
+    messages.increment();
+    Object body = message.body();
+    if (body instanceof MetricsBatch) {
+      MetricsBatch batch = (MetricsBatch) body;
+      if (batch.size() > 0) {
+        points.add(batch.size());
+        exporter.handle(batch);
+      }
+    } else if (body instanceof JsonObject) {
+      SingleMetric metric = toMetric((JsonObject) body);
+      if (metric != null) {
+        points.increment();
+        exporter.handle(Collections.singletonList(metric));
+      }
+    } else if (body instanceof JsonArray) {
+      JsonArray array = (JsonArray) body;
+      List<SingleMetric> metrics = new ArrayList<>(array.size());
+      for (int i = 0; i < array.size(); i++) {
+        Object value = array.getValue(i);
+        SingleMetric metric = value instanceof JsonObject ? toMetric((JsonObject) value) : null;
+        if (metric != null) {
+          metrics.add(metric);
+        } else if (!(value instanceof JsonObject)) {
+          parseFailures.increment();
+        }
+      }
+      if (!metrics.isEmpty()) {
+        points.add(metrics.size());
+        exporter.handle(metrics);
+      }
+    } else {
+      parseFailures.increment();
+    }
+  }
+
+  private SingleMetric toMetric(JsonObject json) {
+    // source and value has to be set.
+    // the timestamp can have been set in the message using the 'timestamp' field. If not use 'now'
+    // the type of metrics can have been set in the message using the 'type' field. It not use 'gauge'. Only
+    // "counter" and "gauge" are supported.
+    try {
+      String source = json.getString("source");
+      Double value = json.getDouble("value");
+      if (source == null || value == null) {
+        parseFailures.increment();
+        return null;
+      }
+      return new SingleMetric(source, json.getLong("timestamp", System.currentTimeMillis()), value,
+        "counter".equals(json.getString("type", "")) ? MetricType.COUNTER : MetricType.GAUGE);
+    } catch (ClassCastException e) {
+      parseFailures.increment();
+      return null;
+    }
+  }
+
+  @Override
+  public void collect(MetricSink sink) {
+    long timestamp = System.currentTimeMillis();
+    sink.counter(messagesId, timestamp, messages.doubleValue());
+    sink.counter(pointsId, timestamp, points.doubleValue());
+    sink.counter(parseFailuresId, timestamp, parseFailures.doubleValue());
+  }
+}
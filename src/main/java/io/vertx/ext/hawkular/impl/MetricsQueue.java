@@ -0,0 +1,316 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.ext.hawkular.OverflowPolicy;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Bounded queue of metrics waiting to be sent.
+ * <p>
+ * Points are stored in a ring of parallel arrays of ids, timestamps, values and types, which only grows when the
+ * capacity is exceeded: enqueuing and draining points does not allocate. The estimated encoded size of each point is
+ * computed once, when it is enqueued.
+ * <p>
+ * Metrics taken from the queue with {@link #drainTo(Points, int, long)} are still accounted for until they are
+ * {@link #release(int, long) released}, so that the capacity also bounds metrics in flight. When the capacity is
+ * exceeded, the {@link OverflowPolicy} decides which of the queued metrics are dropped.
+ * <p>
+ * Instances are not thread-safe and must be confined to the metrics context.
+ *
+ * @author Thomas Segismont
+ */
+public class MetricsQueue {
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final int maxSize;
+  private final long maxBytes;
+  private final OverflowPolicy overflowPolicy;
+  // The capacity of the ring is a power of two
+  private String[] ids = new String[INITIAL_CAPACITY];
+  private long[] timestamps = new long[INITIAL_CAPACITY];
+  private double[] values = new double[INITIAL_CAPACITY];
+  private byte[] types = new byte[INITIAL_CAPACITY];
+  private int[] sizes = new int[INITIAL_CAPACITY];
+  private int head;
+  private int count;
+
+  private long queuedBytes;
+  private int inFlightSize;
+  private long inFlightBytes;
+  private long dropped;
+
+  /**
+   * @param maxSize        maximum number of metrics, queued or in flight
+   * @param maxBytes       maximum estimated encoded size of metrics, queued or in flight, no limit if zero or negative
+   * @param overflowPolicy what to do when the capacity is exceeded
+   */
+  public MetricsQueue(int maxSize, long maxBytes, OverflowPolicy overflowPolicy) {
+    this.maxSize = maxSize;
+    this.maxBytes = maxBytes;
+    this.overflowPolicy = overflowPolicy;
+  }
+
+  /**
+   * Enqueue metrics, dropping some if the capacity is exceeded.
+   * <p>
+   * The overflow policy is applied once, after all the metrics have been enqueued: coalescing, which goes over the
+   * whole queue, is done once per batch instead of once per metric.
+   *
+   * @param points the metrics to enqueue
+   */
+  public void addAll(Points points) {
+    for (int i = 0; i < points.size(); i++) {
+      String id = points.id(i);
+      addLast(id, points.timestamp(i), points.value(i), points.type(i), MixedDataEncoder.maxEncodedSize(id));
+    }
+    if (isFull()) {
+      overflow();
+    }
+  }
+
+  private void addLast(String id, long timestamp, double value, byte type, int size) {
+    if (count == ids.length) {
+      grow();
+    }
+    set(index(count), id, timestamp, value, type, size);
+    count++;
+  }
+
+  private void addFirst(String id, long timestamp, double value, byte type, int size) {
+    if (count == ids.length) {
+      grow();
+    }
+    head = (head - 1) & (ids.length - 1);
+    set(head, id, timestamp, value, type, size);
+    count++;
+  }
+
+  private void set(int index, String id, long timestamp, double value, byte type, int size) {
+    ids[index] = id;
+    timestamps[index] = timestamp;
+    values[index] = value;
+    types[index] = type;
+    sizes[index] = size;
+    queuedBytes += size;
+  }
+
+  private void move(int from, int to) {
+    ids[to] = ids[from];
+    timestamps[to] = timestamps[from];
+    values[to] = values[from];
+    types[to] = types[from];
+    sizes[to] = sizes[from];
+  }
+
+  private void removeFirst() {
+    queuedBytes -= sizes[head];
+    ids[head] = null;
+    head = (head + 1) & (ids.length - 1);
+    count--;
+  }
+
+  private void removeLast() {
+    int index = index(count - 1);
+    queuedBytes -= sizes[index];
+    ids[index] = null;
+    count--;
+  }
+
+  // Index in the ring of the i-th queued point
+  private int index(int i) {
+    return (head + i) & (ids.length - 1);
+  }
+
+  private void grow() {
+    int length = ids.length;
+    int capacity = 2 * length;
+    ids = unwrap(ids, new String[capacity], length);
+    timestamps = unwrap(timestamps, new long[capacity], length);
+    values = unwrap(values, new double[capacity], length);
+    types = unwrap(types, new byte[capacity], length);
+    sizes = unwrap(sizes, new int[capacity], length);
+    head = 0;
+  }
+
+  // Copies the queued points of a ring array to the beginning of a new array
+  private <T> T unwrap(T ring, T array, int length) {
+    int tail = Math.min(count, length - head);
+    System.arraycopy(ring, head, array, 0, tail);
+    System.arraycopy(ring, 0, array, tail, count - tail);
+    return array;
+  }
+
+  private boolean isFull() {
+    return count + inFlightSize > maxSize || (maxBytes > 0 && queuedBytes + inFlightBytes > maxBytes);
+  }
+
+  private void overflow() {
+    switch (overflowPolicy) {
+      case DROP_NEWEST:
+        while (isFull() && count > 0) {
+          removeLast();
+          dropped++;
+        }
+        break;
+      case COALESCE:
+        coalesce();
+        dropOldest();
+        break;
+      default:
+        dropOldest();
+    }
+  }
+
+  private void coalesce() {
+    // Only the latest point of each id is kept, in the order of the latest points
+    Set<String> seen = new HashSet<>(2 * count);
+    boolean[] latest = new boolean[count];
+    for (int i = count - 1; i >= 0; i--) {
+      latest[i] = seen.add(ids[index(i)]);
+    }
+    int kept = 0;
+    queuedBytes = 0;
+    for (int i = 0; i < count; i++) {
+      if (latest[i]) {
+        int index = index(kept);
+        move(index(i), index);
+        queuedBytes += sizes[index];
+        kept++;
+      }
+    }
+    for (int i = kept; i < count; i++) {
+      ids[index(i)] = null;
+    }
+    dropped += count - kept;
+    count = kept;
+  }
+
+  private void dropOldest() {
+    while (isFull() && count > 0) {
+      removeFirst();
+      dropped++;
+    }
+  }
+
+  /**
+   * @param points metrics to add
+   * @return true if the metrics can be added without exceeding the maximum number of metrics nor the maximum estimated
+   * encoded size
+   */
+  public boolean hasRoomFor(Points points) {
+    if (count + inFlightSize + points.size() > maxSize) {
+      return false;
+    }
+    if (maxBytes <= 0) {
+      return true;
+    }
+    long bytes = queuedBytes + inFlightBytes;
+    for (int i = 0; i < points.size() && bytes <= maxBytes; i++) {
+      bytes += MixedDataEncoder.maxEncodedSize(points.id(i));
+    }
+    return bytes <= maxBytes;
+  }
+
+  /**
+   * @return true if metrics queued or in flight use all the capacity: a new metric would cause an overflow
+   */
+  public boolean isAtCapacity() {
+    return count + inFlightSize >= maxSize || (maxBytes > 0 && queuedBytes + inFlightBytes >= maxBytes);
+  }
+
+  /**
+   * Moves queued metrics to a batch. They are accounted for as in flight until released.
+   *
+   * @param batch    the points to fill
+   * @param max      maximum number of metrics to move
+   * @param maxBytes maximum estimated encoded size of the metrics to move, at least one metric is moved anyway
+   * @return the estimated encoded size of the metrics moved
+   */
+  public long drainTo(Points batch, int max, long maxBytes) {
+    long bytes = 0;
+    int moved = 0;
+    for (; moved < max && count > 0; moved++) {
+      int size = sizes[head];
+      if (moved > 0 && bytes + size > maxBytes) {
+        break;
+      }
+      bytes += size;
+      batch.add(ids[head], timestamps[head], values[head], types[head]);
+      removeFirst();
+    }
+    inFlightSize += moved;
+    inFlightBytes += bytes;
+    return bytes;
+  }
+
+  /**
+   * Puts metrics previously drained back at the head of the queue, in the same order. They are not in flight any more.
+   *
+   * @param points the metrics to put back
+   * @param bytes  their estimated encoded size
+   */
+  public void requeue(Points points, long bytes) {
+    for (int i = points.size() - 1; i >= 0; i--) {
+      String id = points.id(i);
+      addFirst(id, points.timestamp(i), points.value(i), points.type(i), MixedDataEncoder.maxEncodedSize(id));
+    }
+    inFlightSize -= points.size();
+    inFlightBytes -= bytes;
+  }
+
+  /**
+   * Signals that metrics previously drained are not in flight any more.
+   *
+   * @param size  number of metrics
+   * @param bytes estimated encoded size, as returned by {@link #drainTo(Points, int, long)}
+   */
+  public void release(int size, long bytes) {
+    inFlightSize -= size;
+    inFlightBytes -= bytes;
+  }
+
+  /**
+   * @return number of queued metrics, not including metrics in flight
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * @return estimated encoded size of queued metrics, not including metrics in flight
+   */
+  public long bytes() {
+    return queuedBytes;
+  }
+
+  /**
+   * @return true if no metric is queued
+   */
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  /**
+   * @return total number of metrics dropped
+   */
+  public long getDropped() {
+    return dropped;
+  }
+}
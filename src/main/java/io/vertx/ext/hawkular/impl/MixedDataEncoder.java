@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.ext.hawkular.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+
+import static io.vertx.ext.hawkular.impl.AsciiNumbers.*;
+import static io.vertx.ext.hawkular.spi.MetricSink.*;
+
+/**
+ * Encodes batches of metrics to the Hawkular mixed data JSON format.
+ * <p>
+ * The payload is streamed into a pooled scratch buffer which is reused from one batch to the next: no JSON tree,
+ * intermediate collection or string is created. Only the final copy handed to the HTTP client, either exactly sized
+ * with {@link #toBuffer(ByteBuf)} or compressed, is allocated per batch.
+ * <p>
+ * Instances are not thread-safe and must be confined to the metrics context.
+ *
+ * @author Thomas Segismont
+ */
+public class MixedDataEncoder {
+  private static final int INITIAL_CAPACITY = 4096;
+
+  private static final byte[] COUNTERS = ascii("\"counters\":[");
+  private static final byte[] GAUGES = ascii("\"gauges\":[");
+  private static final byte[] ID = ascii("{\"id\":");
+  private static final byte[] DATA = ascii(",\"data\":[");
+  private static final byte[] TIMESTAMP = ascii("{\"timestamp\":");
+  private static final byte[] VALUE = ascii(",\"value\":");
+  private static final byte[] SERIES_END = ascii("]}");
+  private static final byte[] HEX = ascii("0123456789abcdef");
+  // Longest outputs of AsciiNumbers: Long.MIN_VALUE, and Double.toString of a negative value with 17 significant
+  // digits and a 3 digits negative exponent, e.g. -2.2250738585072014E-308
+  private static final int MAX_LONG_LENGTH = 20;
+  private static final int MAX_DOUBLE_LENGTH = 24;
+  // Maximum size of a point, besides its id, when it's the only point of its metric: separator, quotes, timestamp and
+  // value of maximum width
+  private static final int POINT_OVERHEAD = 1 + ID.length + 2 + DATA.length + TIMESTAMP.length + MAX_LONG_LENGTH
+    + VALUE.length + MAX_DOUBLE_LENGTH + 1 + SERIES_END.length;
+
+  /**
+   * Size of the payload besides its points: braces, and the counters and gauges arrays.
+   */
+  public static final int ENVELOPE_SIZE = 1 + COUNTERS.length + 1 + 1 + GAUGES.length + 1 + 1;
+
+  private final ByteBuf scratch;
+
+  public MixedDataEncoder() {
+    scratch = PooledByteBufAllocator.DEFAULT.heapBuffer(INITIAL_CAPACITY);
+  }
+
+  /**
+   * Encodes a batch of metrics. Points with a non finite value are skipped as they cannot be represented in JSON.
+   * <p>
+   * The points are sorted so that points of the same metric are contiguous: each metric id is then written once, with
+   * all its points in the {@code data} array.
+   *
+   * @param points the metrics to encode, sorted in place
+   * @return the scratch buffer containing the JSON payload, only valid until the next call to this method
+   */
+  public ByteBuf encode(Points points) {
+    points.sort();
+    scratch.clear();
+    scratch.writeByte('{');
+    int currentType = -1;
+    String currentId = null;
+    for (int i = 0; i < points.size(); i++) {
+      double value = points.value(i);
+      if (!isFinite(value)) {
+        continue;
+      }
+      byte type = points.type(i);
+      if (type != currentType) {
+        if (currentType >= 0) {
+          scratch.writeBytes(SERIES_END);
+          scratch.writeByte(']');
+          scratch.writeByte(',');
+        }
+        scratch.writeBytes(type == COUNTER ? COUNTERS : GAUGES);
+        currentType = type;
+        currentId = null;
+      }
+      String id = points.id(i);
+      if (id.equals(currentId)) {
+        scratch.writeByte(',');
+      } else {
+        if (currentId != null) {
+          scratch.writeBytes(SERIES_END);
+          scratch.writeByte(',');
+        }
+        scratch.writeBytes(ID);
+        writeString(id);
+        scratch.writeBytes(DATA);
+        currentId = id;
+      }
+      writePoint(points.timestamp(i), value);
+    }
+    if (currentType >= 0) {
+      scratch.writeBytes(SERIES_END);
+      scratch.writeByte(']');
+    }
+    scratch.writeByte('}');
+    return scratch;
+  }
+
+  /**
+   * @param payload a payload returned by {@link #encode(Points)}
+   * @return a new buffer containing a copy of the payload
+   */
+  public Buffer toBuffer(ByteBuf payload) {
+    return Buffer.buffer(Unpooled.copiedBuffer(payload));
+  }
+
+  private void writePoint(long timestamp, double value) {
+    scratch.writeBytes(TIMESTAMP);
+    writeLong(scratch, timestamp);
+    scratch.writeBytes(VALUE);
+    writeDouble(scratch, value);
+    scratch.writeByte('}');
+  }
+
+  private void writeString(String value) {
+    scratch.writeByte('"');
+    for (int i = 0, length = value.length(); i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        if (c == '"' || c == '\\') {
+          scratch.writeByte('\\');
+          scratch.writeByte(c);
+        } else if (c < 0x20) {
+          scratch.writeByte('\\');
+          scratch.writeByte('u');
+          scratch.writeByte('0');
+          scratch.writeByte('0');
+          scratch.writeByte(HEX[c >> 4]);
+          scratch.writeByte(HEX[c & 0xF]);
+        } else {
+          scratch.writeByte(c);
+        }
+      } else if (c < 0x800) {
+        scratch.writeByte(0xC0 | (c >> 6));
+        scratch.writeByte(0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        scratch.writeByte(0xF0 | (codePoint >> 18));
+        scratch.writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+        scratch.writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+        scratch.writeByte(0x80 | (codePoint & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        // Malformed input, same replacement as String#getBytes
+        scratch.writeByte('?');
+      } else {
+        scratch.writeByte(0xE0 | (c >> 12));
+        scratch.writeByte(0x80 | ((c >> 6) & 0x3F));
+        scratch.writeByte(0x80 | (c & 0x3F));
+      }
+    }
+    scratch.writeByte('"');
+  }
+
+  /**
+   * Computes an upper bound of the encoded size of a point without encoding it. The id is measured exactly (UTF-8
+   * bytes and escapes), the timestamp and value are assumed to have the maximum width. The payload of a batch is never
+   * larger than {@link #ENVELOPE_SIZE} plus the sum of the sizes of its points.
+   *
+   * @param id the metric id of the point
+   * @return the maximum size, in bytes
+   */
+  public static int maxEncodedSize(String id) {
+    return POINT_OVERHEAD + encodedLength(id);
+  }
+
+  // Must be kept in sync with writeString, quotes excluded
+  private static int encodedLength(String value) {
+    int res = 0;
+    for (int i = 0, length = value.length(); i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        if (c == '"' || c == '\\') {
+          res += 2;
+        } else if (c < 0x20) {
+          res += 6;
+        } else {
+          res++;
+        }
+      } else if (c < 0x800) {
+        res += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        i++;
+        res += 4;
+      } else if (Character.isSurrogate(c)) {
+        res++;
+      } else {
+        res += 3;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Releases the scratch buffer. The encoder must not be used afterwards.
+   */
+  public void close() {
+    scratch.release();
+  }
+
+  private static byte[] ascii(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+}
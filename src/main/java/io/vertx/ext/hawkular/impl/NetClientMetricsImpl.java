@@ -21,6 +21,7 @@ import io.vertx.core.spi.metrics.TCPMetrics;
 import io.vertx.ext.hawkular.impl.NetClientConnectionsMeasurements.Snapshot;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -87,6 +88,13 @@ public class NetClientMetricsImpl implements TCPMetrics<Void> {
     return connectionsMeasurements.entrySet().stream().collect(toMap(Map.Entry::getKey, e -> e.getValue().getSnapshot()));
   }
 
+  /**
+   * @return the remote addresses measured so far
+   */
+  public Set<SocketAddress> getRemoteAddresses() {
+    return connectionsMeasurements.keySet();
+  }
+
   @Override
   public boolean isEnabled() {
     return true;
@@ -18,17 +18,14 @@ package io.vertx.ext.hawkular.impl;
 
 import io.vertx.core.net.SocketAddress;
 import io.vertx.ext.hawkular.impl.NetClientConnectionsMeasurements.Snapshot;
-import org.hawkular.metrics.client.common.MetricType;
-import org.hawkular.metrics.client.common.SingleMetric;
+import io.vertx.ext.hawkular.spi.MetricSink;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 
-import static org.hawkular.metrics.client.common.MetricType.*;
+import static io.vertx.ext.hawkular.spi.MetricSink.*;
 
 /**
  * Aggregates values from {@link NetClientMetricsImpl} instances and exposes metrics for collection.
@@ -36,15 +33,22 @@ import static org.hawkular.metrics.client.common.MetricType.*;
  * @author Thomas Segismont
  */
 public class NetClientMetricsSupplier implements MetricSupplier {
-  private final String baseName;
+  private static final int CONNECTIONS = 0;
+  private static final int BYTES_RECEIVED = 1;
+  private static final int BYTES_SENT = 2;
+  private static final int ERROR_COUNT = 3;
+
+  private final AddressMetricIds ids;
   private final Set<NetClientMetricsImpl> metricsSet = new CopyOnWriteArraySet<>();
 
   public NetClientMetricsSupplier(String prefix) {
-    baseName = prefix + (prefix.isEmpty() ? "" : ".") + "vertx.net.client.";
+    String baseName = prefix + (prefix.isEmpty() ? "" : ".") + "vertx.net.client.";
+    ids = new AddressMetricIds(baseName, "connections", "bytesReceived", "bytesSent", "errorCount");
   }
 
   @Override
-  public List<SingleMetric> collect() {
+  public void collect(MetricSink sink) {
+    ids.release(sink);
     long timestamp = System.currentTimeMillis();
 
     Map<SocketAddress, Snapshot> values = new HashMap<>();
@@ -55,20 +59,18 @@ public class NetClientMetricsSupplier implements MetricSupplier {
       });
     }
 
-    List<SingleMetric> res = new ArrayList<>();
-
-    values.forEach((address, snapshot) -> {
-      String addressId = address.host() + ":" + address.port();
-      res.add(metric(addressId + ".connections", timestamp, snapshot.getConnections(), GAUGE));
-      res.add(metric(addressId + ".bytesReceived", timestamp, snapshot.getBytesReceived(), COUNTER));
-      res.add(metric(addressId + ".bytesSent", timestamp, snapshot.getBytesSent(), COUNTER));
-      res.add(metric(addressId + ".errorCount", timestamp, snapshot.getErrorCount(), COUNTER));
-    });
-    return res;
+    for (Map.Entry<SocketAddress, Snapshot> entry : values.entrySet()) {
+      SocketAddress address = entry.getKey();
+      Snapshot snapshot = entry.getValue();
+      write(sink, address, CONNECTIONS, timestamp, snapshot.getConnections(), GAUGE);
+      write(sink, address, BYTES_RECEIVED, timestamp, snapshot.getBytesReceived(), COUNTER);
+      write(sink, address, BYTES_SENT, timestamp, snapshot.getBytesSent(), COUNTER);
+      write(sink, address, ERROR_COUNT, timestamp, snapshot.getErrorCount(), COUNTER);
+    }
   }
 
-  private SingleMetric metric(String name, long timestamp, Number value, MetricType type) {
-    return new SingleMetric(baseName + name, timestamp, value.doubleValue(), type);
+  private void write(MetricSink sink, SocketAddress address, int kind, long timestamp, double value, byte type) {
+    sink.add(sink.handle(ids.id(address, kind)), timestamp, value, type);
   }
 
   public void register(NetClientMetricsImpl netClientMetrics) {
@@ -77,5 +79,6 @@ public class NetClientMetricsSupplier implements MetricSupplier {
 
   public void unregister(NetClientMetricsImpl netClientMetrics) {
     metricsSet.remove(netClientMetrics);
+    ids.invalidate(netClientMetrics.getRemoteAddresses());
   }
 }
@@ -16,17 +16,14 @@
 package io.vertx.ext.hawkular.impl;
 
 import io.vertx.core.net.SocketAddress;
-import org.hawkular.metrics.client.common.MetricType;
-import org.hawkular.metrics.client.common.SingleMetric;
+import io.vertx.ext.hawkular.spi.MetricSink;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 
-import static org.hawkular.metrics.client.common.MetricType.*;
+import static io.vertx.ext.hawkular.spi.MetricSink.*;
 
 /**
  * Aggregates values from {@link NetServerMetricsImpl} instances and exposes metrics for collection.
@@ -34,15 +31,22 @@ import static org.hawkular.metrics.client.common.MetricType.*;
  * @author Thomas Segismont
  */
 public class NetServerMetricsSupplier implements MetricSupplier {
-  private final String baseName;
+  private static final int CONNECTIONS = 0;
+  private static final int BYTES_RECEIVED = 1;
+  private static final int BYTES_SENT = 2;
+  private static final int ERROR_COUNT = 3;
+
+  private final AddressMetricIds ids;
   private final Set<NetServerMetricsImpl> metricsSet = new CopyOnWriteArraySet<>();
 
   public NetServerMetricsSupplier(String prefix) {
-    baseName = prefix + (prefix.isEmpty() ? "" : ".") + "vertx.net.server.";
+    String baseName = prefix + (prefix.isEmpty() ? "" : ".") + "vertx.net.server.";
+    ids = new AddressMetricIds(baseName, "connections", "bytesReceived", "bytesSent", "errorCount");
   }
 
   @Override
-  public List<SingleMetric> collect() {
+  public void collect(MetricSink sink) {
+    ids.release(sink);
     long timestamp = System.currentTimeMillis();
 
     Map<SocketAddress, Long> connections = new HashMap<>();
@@ -58,29 +62,20 @@ public class NetServerMetricsSupplier implements MetricSupplier {
       merge(errorCount, serverAddress, netServerMetrics.getErrorCount());
     }
 
-    List<SingleMetric> res = new ArrayList<>();
-    res.addAll(metrics("connections", timestamp, connections, GAUGE));
-    res.addAll(metrics("bytesReceived", timestamp, bytesReceived, COUNTER));
-    res.addAll(metrics("bytesSent", timestamp, bytesSent, COUNTER));
-    res.addAll(metrics("errorCount", timestamp, errorCount, COUNTER));
-    return res;
+    write(sink, CONNECTIONS, timestamp, connections, GAUGE);
+    write(sink, BYTES_RECEIVED, timestamp, bytesReceived, COUNTER);
+    write(sink, BYTES_SENT, timestamp, bytesSent, COUNTER);
+    write(sink, ERROR_COUNT, timestamp, errorCount, COUNTER);
   }
 
   private void merge(Map<SocketAddress, Long> values, SocketAddress serverAddress, Long value) {
     values.merge(serverAddress, value, Long::sum);
   }
 
-  private List<SingleMetric> metrics(String name, long timestamp, Map<SocketAddress, ? extends Number> values, MetricType type) {
-    List<SingleMetric> res = new ArrayList<>(values.size());
-    values.forEach((address, count) -> {
-      String addressId = address.host() + ":" + address.port();
-      res.add(metric(addressId + "." + name, timestamp, count, type));
-    });
-    return res;
-  }
-
-  private SingleMetric metric(String name, long timestamp, Number value, MetricType type) {
-    return new SingleMetric(baseName + name, timestamp, value.doubleValue(), type);
+  private void write(MetricSink sink, int kind, long timestamp, Map<SocketAddress, Long> values, byte type) {
+    for (Map.Entry<SocketAddress, Long> entry : values.entrySet()) {
+      sink.add(sink.handle(ids.id(entry.getKey(), kind)), timestamp, entry.getValue(), type);
+    }
   }
 
   public void register(NetServerMetricsImpl netServerMetrics) {
@@ -89,5 +84,6 @@ public class NetServerMetricsSupplier implements MetricSupplier {
 
   public void unregister(NetServerMetricsImpl netServerMetrics) {
     metricsSet.remove(netServerMetrics);
+    ids.invalidate(netServerMetrics.getServerAddress());
   }
 }
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import org.hawkular.metrics.client.common.MetricType;
+import org.hawkular.metrics.client.common.SingleMetric;
+
+import java.util.Arrays;
+
+import static io.vertx.ext.hawkular.spi.MetricSink.*;
+
+/**
+ * Growable, reusable, list of metric points stored in parallel arrays of ids, timestamps, values and types.
+ * <p>
+ * It carries points from the {@link io.vertx.ext.hawkular.spi.MetricSink} to the encoder without creating an object
+ * per point: arrays are only reallocated when the capacity grows.
+ * <p>
+ * Instances are not thread-safe and must be confined to the metrics context.
+ *
+ * @author Thomas Segismont
+ */
+public class Points {
+  private static final int DEFAULT_CAPACITY = 64;
+  // Runs shorter than this are sorted by insertion
+  private static final int INSERTION_SORT_THRESHOLD = 7;
+
+  private String[] ids;
+  private long[] timestamps;
+  private double[] values;
+  private byte[] types;
+  private int size;
+  // Sort buffers, allocated on first use: sorted points are copied to the spare columns, which are then swapped
+  private int[] order;
+  private int[] aux;
+  private String[] spareIds;
+  private long[] spareTimestamps;
+  private double[] spareValues;
+  private byte[] spareTypes;
+
+  public Points() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param initialCapacity expected number of points
+   */
+  public Points(int initialCapacity) {
+    int capacity = Math.max(1, initialCapacity);
+    ids = new String[capacity];
+    timestamps = new long[capacity];
+    values = new double[capacity];
+    types = new byte[capacity];
+  }
+
+  /**
+   * Adds a point.
+   *
+   * @param id        the metric id
+   * @param timestamp the point timestamp, in milliseconds
+   * @param value     the point value
+   * @param type      {@link io.vertx.ext.hawkular.spi.MetricSink#GAUGE} or
+   *                  {@link io.vertx.ext.hawkular.spi.MetricSink#COUNTER}
+   */
+  public void add(String id, long timestamp, double value, byte type) {
+    if (size == ids.length) {
+      int capacity = 2 * size;
+      ids = Arrays.copyOf(ids, capacity);
+      timestamps = Arrays.copyOf(timestamps, capacity);
+      values = Arrays.copyOf(values, capacity);
+      types = Arrays.copyOf(types, capacity);
+    }
+    ids[size] = id;
+    timestamps[size] = timestamp;
+    values[size] = value;
+    types[size] = type;
+    size++;
+  }
+
+  /**
+   * Adds a point copied from a metric. Hawkular only knows counters and gauges: other types are added as gauges.
+   *
+   * @param metric the metric
+   */
+  public void add(SingleMetric metric) {
+    add(metric.getSource(), metric.getTimestamp(), metric.getValue(),
+      metric.getMetricType() == MetricType.COUNTER ? COUNTER : GAUGE);
+  }
+
+  /**
+   * Adds a point copied from another instance.
+   *
+   * @param other the other instance
+   * @param point the index of the point in {@code other}
+   */
+  public void add(Points other, int point) {
+    add(other.ids[point], other.timestamps[point], other.values[point], other.types[point]);
+  }
+
+  /**
+   * Adds all the points of another instance.
+   *
+   * @param other the other instance
+   */
+  public void addAll(Points other) {
+    for (int i = 0; i < other.size; i++) {
+      add(other, i);
+    }
+  }
+
+  /**
+   * Sorts points so that counters come first, then points of a same metric are contiguous and in chronological
+   * order. The sort is stable.
+   */
+  public void sort() {
+    if (size < 2) {
+      return;
+    }
+    if (order == null || order.length < size) {
+      order = new int[ids.length];
+      aux = new int[ids.length];
+    }
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+      aux[i] = i;
+    }
+    mergeSort(aux, order, 0, size);
+    boolean sorted = true;
+    for (int i = 0; i < size && sorted; i++) {
+      sorted = order[i] == i;
+    }
+    if (sorted) {
+      return;
+    }
+    if (spareIds == null || spareIds.length != ids.length) {
+      spareIds = new String[ids.length];
+      spareTimestamps = new long[ids.length];
+      spareValues = new double[ids.length];
+      spareTypes = new byte[ids.length];
+    }
+    for (int i = 0; i < size; i++) {
+      int point = order[i];
+      spareIds[i] = ids[point];
+      spareTimestamps[i] = timestamps[point];
+      spareValues[i] = values[point];
+      spareTypes[i] = types[point];
+    }
+    String[] sortedIds = spareIds;
+    long[] sortedTimestamps = spareTimestamps;
+    double[] sortedValues = spareValues;
+    byte[] sortedTypes = spareTypes;
+    spareIds = ids;
+    spareTimestamps = timestamps;
+    spareValues = values;
+    spareTypes = types;
+    ids = sortedIds;
+    timestamps = sortedTimestamps;
+    values = sortedValues;
+    types = sortedTypes;
+    Arrays.fill(spareIds, 0, size, null);
+  }
+
+  // Sorts point indexes of dest, src must contain the same indexes
+  private void mergeSort(int[] src, int[] dest, int low, int high) {
+    int length = high - low;
+    if (length < INSERTION_SORT_THRESHOLD) {
+      for (int i = low + 1; i < high; i++) {
+        for (int j = i; j > low && compare(dest[j - 1], dest[j]) > 0; j--) {
+          int tmp = dest[j];
+          dest[j] = dest[j - 1];
+          dest[j - 1] = tmp;
+        }
+      }
+      return;
+    }
+    int mid = (low + high) >>> 1;
+    mergeSort(dest, src, low, mid);
+    mergeSort(dest, src, mid, high);
+    if (compare(src[mid - 1], src[mid]) <= 0) {
+      System.arraycopy(src, low, dest, low, length);
+      return;
+    }
+    for (int i = low, p = low, q = mid; i < high; i++) {
+      if (q >= high || p < mid && compare(src[p], src[q]) <= 0) {
+        dest[i] = src[p++];
+      } else {
+        dest[i] = src[q++];
+      }
+    }
+  }
+
+  private int compare(int a, int b) {
+    if (types[a] != types[b]) {
+      return types[a] == COUNTER ? -1 : 1;
+    }
+    int res = ids[a] == ids[b] ? 0 : ids[a].compareTo(ids[b]);
+    return res != 0 ? res : Long.compare(timestamps[a], timestamps[b]);
+  }
+
+  /**
+   * Removes all points.
+   */
+  public void clear() {
+    Arrays.fill(ids, 0, size, null);
+    size = 0;
+  }
+
+  /**
+   * @return the number of points
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return true if there is no point
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @param point the index of a point, between 0 and {@link #size()}
+   * @return the point's metric id
+   */
+  public String id(int point) {
+    return ids[point];
+  }
+
+  /**
+   * @param point the index of a point, between 0 and {@link #size()}
+   * @return the point's timestamp, in milliseconds
+   */
+  public long timestamp(int point) {
+    return timestamps[point];
+  }
+
+  /**
+   * @param point the index of a point, between 0 and {@link #size()}
+   * @return the point's value
+   */
+  public double value(int point) {
+    return values[point];
+  }
+
+  /**
+   * @param point the index of a point, between 0 and {@link #size()}
+   * @return {@link io.vertx.ext.hawkular.spi.MetricSink#GAUGE} or
+   * {@link io.vertx.ext.hawkular.spi.MetricSink#COUNTER}
+   */
+  public byte type(int point) {
+    return types[point];
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.ext.hawkular.spi.MetricSink;
+
+import java.util.Arrays;
+
+/**
+ * Computes per-second rates of counters from consecutive collections, and adds them to the sink as gauges named after
+ * the counter with a {@code .rate} suffix.
+ * <p>
+ * The previous value and timestamp of each counter are kept in primitive arrays indexed by the metric id handle, as
+ * well as the handle of the rate gauge. A counter which decreased is considered reset: no rate is added for this
+ * interval and the new value becomes the baseline. A decrease is not enough to detect that metrics were closed and
+ * registered again, as the new value may already be past the old baseline: suppliers release the ids of such series,
+ * which clears their baseline. A calculator must always be used with the same sink, and be notified when its handles are
+ * {@link #release(MetricSink, int) released}: the rate gauge of a released counter is released too.
+ * <p>
+ * Instances are not thread-safe and must be confined to the metrics context.
+ *
+ * @author Thomas Segismont
+ */
+public class RateCalculator {
+  private static final int INITIAL_CAPACITY = 256;
+  private static final String RATE_SUFFIX = ".rate";
+
+  private double[] previousValues = new double[INITIAL_CAPACITY];
+  // Zero if the counter was not seen yet
+  private long[] previousTimestamps = new long[INITIAL_CAPACITY];
+  // Handle of the rate gauge plus one, zero if not interned yet
+  private int[] rateHandles = new int[INITIAL_CAPACITY];
+  // Handle of the counter plus one, for rate gauge handles
+  private int[] rateOwners = new int[INITIAL_CAPACITY];
+
+  /**
+   * Adds the rates of the counters found in the sink.
+   *
+   * @param sink the sink
+   * @param from the index of the first point to look at
+   */
+  public void addRates(MetricSink sink, int from) {
+    for (int i = from, size = sink.size(); i < size; i++) {
+      if (!sink.isCounter(i)) {
+        continue;
+      }
+      int handle = sink.handleOf(i);
+      ensureCapacity(handle);
+      long timestamp = sink.timestampOf(i);
+      double value = sink.valueOf(i);
+      long previousTimestamp = previousTimestamps[handle];
+      double delta = value - previousValues[handle];
+      if (previousTimestamp != 0 && timestamp > previousTimestamp && delta >= 0) {
+        double rate = delta * 1000 / (timestamp - previousTimestamp);
+        sink.add(rateHandle(sink, handle), timestamp, rate, MetricSink.GAUGE);
+      }
+      previousValues[handle] = value;
+      previousTimestamps[handle] = timestamp;
+    }
+  }
+
+  private int rateHandle(MetricSink sink, int handle) {
+    int rateHandle = rateHandles[handle] - 1;
+    if (rateHandle < 0) {
+      rateHandle = sink.handle(sink.id(handle) + RATE_SUFFIX);
+      ensureCapacity(rateHandle);
+      rateHandles[handle] = rateHandle + 1;
+      rateOwners[rateHandle] = handle + 1;
+    }
+    return rateHandle;
+  }
+
+  /**
+   * Forgets the baseline of a released metric id handle. If the handle belongs to a counter, its rate gauge id is
+   * released as well.
+   *
+   * @param sink   the sink
+   * @param handle the released handle
+   */
+  public void release(MetricSink sink, int handle) {
+    if (handle >= previousTimestamps.length) {
+      return;
+    }
+    previousValues[handle] = 0;
+    previousTimestamps[handle] = 0;
+    int rateHandle = rateHandles[handle] - 1;
+    if (rateHandle >= 0) {
+      rateHandles[handle] = 0;
+      rateOwners[rateHandle] = 0;
+      sink.release(sink.id(rateHandle));
+    }
+    int owner = rateOwners[handle] - 1;
+    if (owner >= 0) {
+      rateOwners[handle] = 0;
+      rateHandles[owner] = 0;
+    }
+  }
+
+  private void ensureCapacity(int handle) {
+    if (handle >= previousTimestamps.length) {
+      int capacity = Math.max(2 * previousTimestamps.length, handle + 1);
+      previousValues = Arrays.copyOf(previousValues, capacity);
+      previousTimestamps = Arrays.copyOf(previousTimestamps, capacity);
+      rateHandles = Arrays.copyOf(rateHandles, capacity);
+      rateOwners = Arrays.copyOf(rateOwners, capacity);
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Matches request paths against route templates, compiled once into a trie of path segments.
+ * <p>
+ * A template segment is either a literal, a named parameter ({@code :id} or {@code {id}}) matching any non empty
+ * segment, or, as the last segment only, {@code *} matching any remainder. Literal segments are tried before
+ * parameters, which are tried before wildcards. Matching does not allocate, and instances are immutable once built.
+ *
+ * @author Thomas Segismont
+ */
+public class RouteMatcher {
+  private final List<String> templates;
+  private final Node root = new Node(null);
+
+  /**
+   * @param templates the route templates
+   * @throws IllegalArgumentException if a template is not valid
+   */
+  public RouteMatcher(List<String> templates) {
+    this.templates = new ArrayList<>(templates);
+    for (int i = 0; i < this.templates.size(); i++) {
+      add(this.templates.get(i), i);
+    }
+  }
+
+  private void add(String template, int route) {
+    Node node = root;
+    String[] segments = template.split("/");
+    for (int i = 0; i < segments.length; i++) {
+      String segment = segments[i];
+      if (segment.isEmpty()) {
+        continue;
+      }
+      if (segment.equals("*")) {
+        if (i != segments.length - 1) {
+          throw new IllegalArgumentException("Wildcard must be the last segment: " + template);
+        }
+        if (node.wildcardRoute < 0) {
+          node.wildcardRoute = route;
+        }
+        return;
+      }
+      if (segment.startsWith(":") || (segment.startsWith("{") && segment.endsWith("}"))) {
+        if (node.param == null) {
+          node.param = new Node(null);
+        }
+        node = node.param;
+      } else {
+        node = node.literal(segment);
+      }
+    }
+    if (node.route < 0) {
+      node.route = route;
+    }
+  }
+
+  /**
+   * @return the number of templates
+   */
+  public int size() {
+    return templates.size();
+  }
+
+  /**
+   * @param route the index of a template
+   * @return the template
+   */
+  public String template(int route) {
+    return templates.get(route);
+  }
+
+  /**
+   * @param uri a request URI, the query string is ignored
+   * @return the index of the matching template, or -1 if none matches
+   */
+  public int match(String uri) {
+    int end = uri.indexOf('?');
+    if (end < 0) {
+      end = uri.length();
+    }
+    int start = uri.startsWith("/") ? 1 : 0;
+    return match(root, uri, start, end);
+  }
+
+  private static int match(Node node, String path, int start, int end) {
+    if (start >= end) {
+      return node.route >= 0 ? node.route : node.wildcardRoute;
+    }
+    int slash = path.indexOf('/', start);
+    if (slash < 0 || slash > end) {
+      slash = end;
+    }
+    int length = slash - start;
+    if (length == 0) {
+      // Empty segment, as in a//b
+      return match(node, path, slash + 1, end);
+    }
+    List<Node> literals = node.literals;
+    for (int i = 0; i < literals.size(); i++) {
+      Node literal = literals.get(i);
+      if (literal.segment.length() == length && path.regionMatches(start, literal.segment, 0, length)) {
+        int route = match(literal, path, slash + 1, end);
+        if (route >= 0) {
+          return route;
+        }
+      }
+    }
+    if (node.param != null) {
+      int route = match(node.param, path, slash + 1, end);
+      if (route >= 0) {
+        return route;
+      }
+    }
+    return node.wildcardRoute;
+  }
+
+  private static class Node {
+    final String segment;
+    final List<Node> literals = new ArrayList<>();
+    Node param;
+    int route = -1;
+    int wildcardRoute = -1;
+
+    Node(String segment) {
+      this.segment = segment;
+    }
+
+    Node literal(String segment) {
+      for (Node literal : literals) {
+        if (literal.segment.equals(segment)) {
+          return literal;
+        }
+      }
+      Node literal = new Node(segment);
+      literals.add(literal);
+      return literal;
+    }
+  }
+}
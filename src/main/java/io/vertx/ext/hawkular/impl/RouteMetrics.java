@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request measurements of an HTTP server route: a method and a route template.
+ *
+ * @author Thomas Segismont
+ */
+public class RouteMetrics {
+  private final String name;
+  private final LongAdder requestCount = new LongAdder();
+  private final LongAdder errorCount = new LongAdder();
+  private final LongAdder processingTime = new LongAdder();
+  // Null if latency histograms are disabled
+  private final LatencyHistogram latencies;
+
+  /**
+   * @param name              the route name, used to build metric ids
+   * @param latencyHistograms whether latencies must be recorded in a histogram
+   */
+  public RouteMetrics(String name, boolean latencyHistograms) {
+    this.name = name;
+    latencies = latencyHistograms ? new LatencyHistogram() : null;
+  }
+
+  /**
+   * Records a processed request.
+   *
+   * @param nanos      the processing time
+   * @param statusCode the response status code
+   */
+  public void record(long nanos, int statusCode) {
+    requestCount.increment();
+    processingTime.add(nanos);
+    if (statusCode >= 500) {
+      errorCount.increment();
+    }
+    if (latencies != null) {
+      latencies.record(nanos);
+    }
+  }
+
+  /**
+   * @return the route name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return total number of processed requests
+   */
+  public long getRequestCount() {
+    return requestCount.sum();
+  }
+
+  /**
+   * @return total number of responses with a 5xx status code
+   */
+  public long getErrorCount() {
+    return errorCount.sum();
+  }
+
+  /**
+   * @return cumulated processing time of requests
+   */
+  public long getProcessingTime() {
+    return processingTime.sum();
+  }
+
+  /**
+   * @return the latency histogram, null if latency histograms are disabled
+   */
+  public LatencyHistogram getLatencies() {
+    return latencies;
+  }
+}
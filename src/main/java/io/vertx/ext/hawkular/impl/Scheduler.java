@@ -16,45 +16,136 @@
 package io.vertx.ext.hawkular.impl;
 
 import io.vertx.core.Context;
-import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.ext.hawkular.VertxHawkularOptions;
-import org.hawkular.metrics.client.common.SingleMetric;
+import io.vertx.ext.hawkular.spi.MetricSink;
+import io.vertx.ext.hawkular.spi.MetricsExporter;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import static java.util.concurrent.TimeUnit.*;
 
 /**
- * Collects metrics and relay them to the sender.
+ * Collects metrics and relay them to the exporter.
+ * <p>
+ * Suppliers write into a single {@link MetricSink}, reused from one cycle to the next, which is handed over to the
+ * exporter once all suppliers have been collected.
+ * <p>
+ * At the end of each cycle, it also relays metrics about the collection itself: the time spent in each supplier, the
+ * number of points collected and the number of cycles skipped because the exporter could not keep up. With change-only
+ * reporting, points which did not change since the last time they were sent are suppressed, and counted. Counter rates,
+ * when enabled, are computed before points are suppressed.
+ * <p>
+ * Ids which were not collected for a while, like those of closed servers or reply addresses, are released from the
+ * sink, so that they do not pile up.
  *
  * @author Thomas Segismont
  */
 public class Scheduler {
+  // Ids which were not collected during this number of cycles are released
+  private static final int IDLE_CYCLES = 10;
+
   private final Vertx vertx;
-  private final Handler<List<SingleMetric>> sender;
+  private final MetricsExporter exporter;
   private final List<MetricSupplier> suppliers;
+  private final MetricSink sink = new MetricSink();
+  private final Map<Class<?>, String> collectionTimeIds = new HashMap<>();
+  private final String collectionTimeId;
+  private final String collectedPointsId;
+  private final String skippedCyclesId;
+  private final String suppressedPointsId;
+  private final RateCalculator rateCalculator;
+  private final ChangeFilter changeFilter;
 
   private long timerId;
+  private long skippedCycles;
+  private int lastCyclePoints;
 
   /**
-   * @param vertx   the {@link Vertx} managed instance
-   * @param options Vertx Hawkular options
-   * @param context the metric collection and sending execution context
-   * @param sender  the object responsible for sending metrics to the Hawkular server
+   * @param vertx    the {@link Vertx} managed instance
+   * @param options  Vertx Hawkular options
+   * @param context  the metric collection and sending execution context
+   * @param exporter the object responsible for sending metrics
    */
-  public Scheduler(Vertx vertx, VertxHawkularOptions options, Context context, Handler<List<SingleMetric>> sender) {
+  public Scheduler(Vertx vertx, VertxHawkularOptions options, Context context, MetricsExporter exporter) {
     this.vertx = vertx;
-    this.sender = sender;
+    this.exporter = exporter;
     suppliers = new CopyOnWriteArrayList<>();
+    String prefix = options.getPrefix();
+    String baseName = prefix + (prefix.isEmpty() ? "" : ".") + "vertx.monitor.";
+    collectionTimeId = baseName + "collectionTime";
+    collectedPointsId = baseName + "collectedPoints";
+    skippedCyclesId = baseName + "skippedCycles";
+    suppressedPointsId = baseName + "suppressedPoints";
+    if (options.isCounterRatesEnabled()) {
+      rateCalculator = new RateCalculator();
+      sink.addReleaseListener(handle -> rateCalculator.release(sink, handle));
+    } else {
+      rateCalculator = null;
+    }
+    if (options.isChangeOnlyReportingEnabled()) {
+      changeFilter = new ChangeFilter(MILLISECONDS.convert(options.getHeartbeatInterval(), SECONDS));
+      sink.addReleaseListener(changeFilter::release);
+    } else {
+      changeFilter = null;
+    }
     context.runOnContext(aVoid -> {
       timerId = vertx.setPeriodic(MILLISECONDS.convert(options.getSchedule(), SECONDS), this::collectAndSend);
     });
   }
 
   private void collectAndSend(Long timerId) {
-    suppliers.forEach(supplier -> sender.handle(supplier.collect()));
+    if (exporter.writeQueueFull()) {
+      // Skip this cycle, counters will catch up at the next one
+      skippedCycles++;
+      exporter.cycleSkipped(lastCyclePoints);
+      return;
+    }
+    sink.clear();
+    sink.releaseIdle(IDLE_CYCLES);
+    long timestamp = System.currentTimeMillis();
+    long points = 0;
+    long cycleStart = System.nanoTime();
+    for (MetricSupplier supplier : suppliers) {
+      int mark = sink.size();
+      long start = System.nanoTime();
+      supplier.collect(sink);
+      long collectionTime = System.nanoTime() - start;
+      points += sink.size() - mark;
+      if (rateCalculator != null) {
+        rateCalculator.addRates(sink, mark);
+      }
+      if (changeFilter != null) {
+        changeFilter.filter(sink, mark);
+      }
+      // Self metrics are added after filtering, so they are always sent
+      sink.gauge(collectionTimeId(supplier), timestamp, toMillis(collectionTime));
+    }
+    sink.gauge(collectionTimeId, timestamp, toMillis(System.nanoTime() - cycleStart));
+    sink.gauge(collectedPointsId, timestamp, points);
+    sink.counter(skippedCyclesId, timestamp, skippedCycles);
+    if (changeFilter != null) {
+      sink.counter(suppressedPointsId, timestamp, changeFilter.getSuppressed());
+    }
+    lastCyclePoints = sink.size();
+    exporter.handle(sink);
+    exporter.flush();
+  }
+
+  private String collectionTimeId(MetricSupplier supplier) {
+    String id = collectionTimeIds.get(supplier.getClass());
+    if (id == null) {
+      id = collectionTimeId + "." + supplier.getClass().getSimpleName();
+      collectionTimeIds.put(supplier.getClass(), id);
+    }
+    return id;
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1e6;
   }
 
   /**
@@ -15,48 +15,103 @@
  */
 package io.vertx.ext.hawkular.impl;
 
+import io.netty.buffer.ByteBuf;
 import io.vertx.core.Context;
-import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.http.HttpClientResponse;
-import io.vertx.core.json.JsonArray;
-import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.hawkular.MetricsBatch;
+import io.vertx.ext.hawkular.OverflowPolicy;
 import io.vertx.ext.hawkular.VertxHawkularOptions;
+import io.vertx.ext.hawkular.impl.Endpoints.Endpoint;
+import io.vertx.ext.hawkular.spi.MetricSink;
+import io.vertx.ext.hawkular.spi.MetricsExporter;
 import org.hawkular.metrics.client.common.MetricType;
 import org.hawkular.metrics.client.common.SingleMetric;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 import static java.util.concurrent.TimeUnit.*;
-import static java.util.stream.Collectors.*;
 import static org.hawkular.metrics.client.common.MetricType.*;
 
 /**
- * Sends collected metrics to the Hawkular server.
+ * Sends collected metrics to the Hawkular servers.
+ * <p>
+ * Points of a collection cycle, or of a {@link MetricsBatch} sent to the metrics bridge, are copied from their columns
+ * to the queue, and from the queue to the encoder, without creating a {@link SingleMetric} per point.
+ * <p>
+ * It also supplies metrics about the sending process itself: queue depth, points dropped, encoded bytes, batches
+ * sent and failed, and cumulated POST time (in milliseconds).
+ *
+ * @see HawkularExporterFactory
  *
  * @author Thomas Segismont
  */
-public class Sender implements Handler<List<SingleMetric>> {
+public class Sender implements MetricsExporter, MetricSupplier {
   private static final Logger LOG = LoggerFactory.getLogger(Sender.class);
+  private static final long MIN_REPLAY_DELAY = MILLISECONDS.convert(1, SECONDS);
+  private static final long MAX_REPLAY_DELAY = MILLISECONDS.convert(1, MINUTES);
 
   private final Vertx vertx;
+  private final String baseName;
   private final String metricsURI;
-  private final String tenant;
+  private final TenantResolver tenantResolver;
   private final int batchSize;
+  private final long batchMaxBytes;
+  private final int maxInFlightRequests;
+  private final long requestTimeout;
   private final long batchDelay;
-  private final List<SingleMetric> queue;
+  private final int maxQueueSize;
+  private final long maxQueueBytes;
+  private final OverflowPolicy overflowPolicy;
+  // Batches never mix tenants, so metrics are queued by tenant
+  private final Map<String, MetricsQueue> queues = new LinkedHashMap<>();
+  private final MetricsQueue defaultQueue;
+  // Points handed over, by tenant, until they are enqueued
+  private final Map<String, Points> arrivals = new LinkedHashMap<>();
+  private final Points defaultArrivals;
+  private final Points batch;
+  // Points of a batch by endpoint, and points which could not be sent, when batches are sharded
+  private final Map<Endpoint, Points> shards = new LinkedHashMap<>();
+  private final Points pending = new Points();
+  private final MixedDataEncoder encoder;
+  private final GzipCompressor compressor;
+  private final int compressionThreshold;
+  private final LongAdder encodedBytes = new LongAdder();
+  private final LongAdder sentBatches = new LongAdder();
+  private final LongAdder failedBatches = new LongAdder();
+  private final LongAdder postTime = new LongAdder();
+  private final LongAdder failovers = new LongAdder();
+  private final LongAdder uncompressedBytes = new LongAdder();
+  private final LongAdder compressedBytes = new LongAdder();
+  private final Spool spool;
+  private final LongAdder spooledBatches = new LongAdder();
+  private final LongAdder replayedBatches = new LongAdder();
+  private final Endpoints endpoints;
+  private final AdaptiveBatching adaptiveBatching;
 
   private HttpClient httpClient;
   private long timerId;
+  private long flushTimerId = -1;
 
   private long sendTime;
+  private int inFlightRequests;
+  private long skippedPoints;
+  private volatile boolean stopped;
+  private long replayDelay = MIN_REPLAY_DELAY;
+  private boolean replaying;
+  private Spool.Record replayed;
 
   /**
    * @param vertx   the {@link Vertx} managed instance
@@ -65,110 +120,286 @@ public class Sender implements Handler<List<SingleMetric>> {
    */
   public Sender(Vertx vertx, VertxHawkularOptions options, Context context) {
     this.vertx = vertx;
+    String prefix = options.getPrefix();
+    baseName = prefix + (prefix.isEmpty() ? "" : ".") + "vertx.monitor.";
     metricsURI = options.getMetricsServiceUri() + "/metrics/data";
-    tenant = options.getTenant();
-    batchSize = options.getBatchSize();
+    tenantResolver = new TenantResolver(options);
+    endpoints = new Endpoints(options);
+    if (options.getBatchMaxBytes() > 0) {
+      // In byte-size-aware mode, only the size limits batches
+      batchSize = Integer.MAX_VALUE;
+      // Budget for the points of a batch, the envelope is written once per payload
+      batchMaxBytes = Math.max(1, options.getBatchMaxBytes() - MixedDataEncoder.ENVELOPE_SIZE);
+    } else {
+      batchSize = options.getBatchSize();
+      batchMaxBytes = Long.MAX_VALUE;
+    }
+    maxInFlightRequests = options.getMaxInFlightRequests();
+    requestTimeout = options.getRequestTimeout();
     batchDelay = NANOSECONDS.convert(options.getBatchDelay(), SECONDS);
-    queue = new ArrayList<>(batchSize);
+    // The queue capacity bounds the memory used by all tenants: it is split evenly between their queues
+    int tenantCount = tenantResolver.getTenantCount();
+    maxQueueSize = Math.max(1, options.getMaxQueueSize() / tenantCount);
+    maxQueueBytes = options.getMaxQueueBytes() > 0 ? Math.max(1, options.getMaxQueueBytes() / tenantCount) : 0;
+    overflowPolicy = options.getOverflowPolicy();
+    defaultQueue = queueOf(tenantResolver.getDefaultTenant());
+    defaultArrivals = new Points();
+    arrivals.put(tenantResolver.getDefaultTenant(), defaultArrivals);
+    batch = new Points(options.getBatchSize());
+    encoder = new MixedDataEncoder();
+    compressor = options.isCompressionEnabled() ? new GzipCompressor() : null;
+    compressionThreshold = options.getCompressionThreshold();
+    spool = options.isSpoolEnabled() ? openSpool(options) : null;
+    if (options.isAdaptiveBatchingEnabled()) {
+      int maxBatchSize = options.getMaxQueueSize() / (2 * maxInFlightRequests);
+      adaptiveBatching = new AdaptiveBatching(options.getBatchSize(), maxBatchSize, maxInFlightRequests, batchDelay);
+    } else {
+      adaptiveBatching = null;
+    }
     context.runOnContext(aVoid -> {
       HttpClientOptions httpClientOptions = options.getHttpOptions()
         .setDefaultHost(options.getHost())
         .setDefaultPort(options.getPort());
       httpClient = vertx.createHttpClient(httpClientOptions);
-      timerId = vertx.setPeriodic(MILLISECONDS.convert(batchDelay, NANOSECONDS), this::flushIfIdle);
-
-      // Configure the metrics bridge. It just transforms the received metrics (json) to a Single Metric to enqueue it.
-      if (options.isMetricsBridgeEnabled() && options.getMetricsBridgeAddress() != null) {
-        vertx.eventBus().consumer(options.getMetricsBridgeAddress(), message -> {
-          // By spec, it is a json object.
-          JsonObject json = (JsonObject) message.body();
-
-          // source and value has to be set.
-          // the timestamp can have been set in the message using the 'timestamp' field. If not use 'now'
-          // the type of metrics can have been set in the message using the 'type' field. It not use 'gauge'. Only
-          // "counter" and "gauge" are supported.
-          SingleMetric metric = new SingleMetric(json.getString("source"),
-              json.getLong("timestamp", System.currentTimeMillis()),
-              json.getDouble("value"),
-              "counter".equals(json.getString("type", "")) ? MetricType.COUNTER : MetricType.GAUGE);
-
-          context.runOnContext(v -> handle(Collections.singletonList(metric)));
-        });
+      if (adaptiveBatching == null) {
+        timerId = vertx.setPeriodic(MILLISECONDS.convert(batchDelay, NANOSECONDS), this::flushIfIdle);
+      }
+      if (spool != null && !spool.isEmpty()) {
+        // Metrics left by a previous run
+        scheduleReplay();
       }
     });
     sendTime = System.nanoTime();
   }
 
+  private static Spool openSpool(VertxHawkularOptions options) {
+    try {
+      return new Spool(new File(options.getSpoolDirectory()), options.getSpoolSegmentSize(), options.getSpoolMaxSize());
+    } catch (IOException e) {
+      LOG.error("Could not open spool, metrics which can't be sent will be lost", e);
+      return null;
+    }
+  }
+
   @Override
   public void handle(List<SingleMetric> metrics) {
-    if (queue.size() + metrics.size() < batchSize) {
-      queue.addAll(metrics);
+    if (metrics.isEmpty()) {
       return;
     }
-    List<SingleMetric> temp = new ArrayList<>(queue.size() + metrics.size());
-    temp.addAll(queue);
-    temp.addAll(metrics);
-    queue.clear();
-    do {
-      List<SingleMetric> subList = temp.subList(0, batchSize);
-      send(subList);
-      subList.clear();
-    } while (temp.size() >= batchSize);
-    queue.addAll(temp);
-  }
-
-  private void send(List<SingleMetric> metrics) {
-    JsonObject mixedData = toHawkularMixedData(metrics);
-    httpClient.post(metricsURI, this::onResponse)
-      .putHeader("Content-Type", "application/json")
-      .putHeader("Hawkular-Tenant", tenant)
-      .exceptionHandler(err -> LOG.trace("Could not send metrics", err))
-      .end(mixedData.encode(), "UTF-8");
+    for (int i = 0; i < metrics.size(); i++) {
+      SingleMetric metric = metrics.get(i);
+      arrivalsOf(metric.getSource()).add(metric);
+    }
+    enqueueArrivals(metrics.size());
+  }
+
+  @Override
+  public void handle(MetricSink sink) {
+    int size = sink.size();
+    if (size == 0) {
+      return;
+    }
+    for (int i = 0; i < size; i++) {
+      String id = sink.idOf(i);
+      byte type = sink.isCounter(i) ? MetricSink.COUNTER : MetricSink.GAUGE;
+      arrivalsOf(id).add(id, sink.timestampOf(i), sink.valueOf(i), type);
+    }
+    enqueueArrivals(size);
+  }
+
+  @Override
+  public void handle(MetricsBatch batch) {
+    int size = batch.size();
+    if (size == 0) {
+      return;
+    }
+    for (int i = 0; i < size; i++) {
+      String id = batch.idOf(i);
+      byte type = batch.isCounter(i) ? MetricSink.COUNTER : MetricSink.GAUGE;
+      arrivalsOf(id).add(id, batch.timestampOf(i), batch.valueOf(i), type);
+    }
+    enqueueArrivals(size);
+  }
+
+  private Points arrivalsOf(String id) {
+    if (tenantResolver.isSingleTenant()) {
+      return defaultArrivals;
+    }
+    return arrivals.computeIfAbsent(tenantResolver.resolve(id), tenant -> new Points());
+  }
+
+  private void enqueueArrivals(int size) {
+    if (adaptiveBatching != null) {
+      adaptiveBatching.onArrival(size);
+    }
+    for (Map.Entry<String, Points> entry : arrivals.entrySet()) {
+      Points points = entry.getValue();
+      if (!points.isEmpty()) {
+        enqueue(queueOf(entry.getKey()), entry.getKey(), points);
+        points.clear();
+      }
+    }
+    sendFullBatches();
+    scheduleFlush();
+  }
+
+  private MetricsQueue queueOf(String tenant) {
+    return queues.computeIfAbsent(tenant, t -> new MetricsQueue(maxQueueSize, maxQueueBytes, overflowPolicy));
+  }
+
+  private void enqueue(MetricsQueue queue, String tenant, Points points) {
+    if (canSpool()) {
+      // Rather than dropping metrics, move the oldest to disk
+      while (!queue.hasRoomFor(points) && !queue.isEmpty()) {
+        spoolBatch(queue, tenant);
+      }
+    }
+    queue.addAll(points);
+  }
+
+  private void sendFullBatches() {
+    for (Map.Entry<String, MetricsQueue> entry : queues.entrySet()) {
+      MetricsQueue queue = entry.getValue();
+      while (isBatchFull(queue) && canSend()) {
+        send(queue, entry.getKey());
+      }
+    }
+  }
+
+  private void sendQueued() {
+    for (Map.Entry<String, MetricsQueue> entry : queues.entrySet()) {
+      MetricsQueue queue = entry.getValue();
+      while (!queue.isEmpty() && canSend()) {
+        send(queue, entry.getKey());
+      }
+    }
+  }
+
+  private boolean isBatchFull(MetricsQueue queue) {
+    return queue.size() >= currentBatchSize() || queue.bytes() >= batchMaxBytes;
+  }
+
+  private int queuedPoints() {
+    int size = 0;
+    for (MetricsQueue queue : queues.values()) {
+      size += queue.size();
+    }
+    return size;
+  }
+
+  private int currentBatchSize() {
+    return adaptiveBatching == null ? batchSize : adaptiveBatching.batchSize();
+  }
+
+  private boolean canSend() {
+    return inFlightRequests < maxInFlightRequests && !stopped;
+  }
+
+  private void send(MetricsQueue queue, String tenant) {
+    long estimatedBytes = queue.drainTo(batch, currentBatchSize(), batchMaxBytes);
+    if (endpoints.isHashSharded()) {
+      sendShards(queue, tenant);
+    } else {
+      sendBatch(batch, estimatedBytes, endpoints.next(), queue, tenant);
+    }
     sendTime = System.nanoTime();
   }
 
-  private JsonObject toHawkularMixedData(List<SingleMetric> metrics) {
-    JsonObject mixedData = new JsonObject();
-    Map<MetricType, List<SingleMetric>> map = metrics.stream().collect(groupingBy(singleMetric -> {
-      // Hawkular only knows counters and gauges for now
-      if (singleMetric.getMetricType() == COUNTER) {
-        return COUNTER;
+  private void sendShards(MetricsQueue queue, String tenant) {
+    for (int i = 0; i < batch.size(); i++) {
+      shards.computeIfAbsent(endpoints.forId(batch.id(i)), endpoint -> new Points()).add(batch, i);
+    }
+    batch.clear();
+    long pendingBytes = 0;
+    for (Map.Entry<Endpoint, Points> entry : shards.entrySet()) {
+      Points shard = entry.getValue();
+      if (shard.isEmpty()) {
+        continue;
+      }
+      long estimatedBytes = 0;
+      for (int i = 0; i < shard.size(); i++) {
+        estimatedBytes += MixedDataEncoder.maxEncodedSize(shard.id(i));
+      }
+      if (canSend()) {
+        sendBatch(shard, estimatedBytes, entry.getKey(), queue, tenant);
+      } else {
+        // Each shard is a request, shards over the in flight limit wait for the next send
+        pending.addAll(shard);
+        pendingBytes += estimatedBytes;
+        shard.clear();
       }
-      return GAUGE;
-    }));
-    List<SingleMetric> counterMetrics = map.get(COUNTER);
-    if (counterMetrics != null) {
-      // For now, gauges and counters are handled the same on the Vert.x side (Double value).
-      // But this is going to change
-      JsonArray counters = toHawkularGauges(counterMetrics);
-      mixedData.put("counters", counters);
     }
-    List<SingleMetric> gaugeMetrics = map.get(GAUGE);
-    if (gaugeMetrics != null) {
-      JsonArray gauges = toHawkularGauges(gaugeMetrics);
-      mixedData.put("gauges", gauges);
+    if (!pending.isEmpty()) {
+      queue.requeue(pending, pendingBytes);
+      pending.clear();
     }
-    return mixedData;
   }
 
-  private JsonArray toHawkularGauges(List<SingleMetric> metrics) {
-    JsonArray gauges = new JsonArray();
-    metrics.forEach(singleMetric -> {
+  private void sendBatch(Points points, long estimatedBytes, Endpoint endpoint, MetricsQueue queue, String tenant) {
+    int size = points.size();
+    ByteBuf mixedData = encodeBatch(points);
+    boolean gzip = isCompressed(mixedData);
+    Buffer body = toBody(mixedData, gzip);
+    // Keep the body if it can be sent again
+    boolean keepBody = spool != null || endpoints.isMultiple();
+    post(body, gzip, new InFlight(size, estimatedBytes, keepBody ? body : null, gzip, false, endpoint, queue, tenant));
+  }
 
-      JsonObject point = new JsonObject();
-      point.put("timestamp", singleMetric.getTimestamp());
-      point.put("value", singleMetric.getValue());
+  private void spoolBatch(MetricsQueue queue, String tenant) {
+    long estimatedBytes = queue.drainTo(batch, currentBatchSize(), batchMaxBytes);
+    // Spooled metrics are not in flight
+    queue.release(batch.size(), estimatedBytes);
+    ByteBuf mixedData = encodeBatch(batch);
+    boolean gzip = isCompressed(mixedData);
+    spool(toBody(mixedData, gzip), gzip, tenant);
+  }
 
-      JsonObject counter = new JsonObject();
-      counter.put("id", singleMetric.getSource());
-      counter.put("data", new JsonArray(Collections.singletonList(point)));
+  private ByteBuf encodeBatch(Points points) {
+    ByteBuf mixedData = encoder.encode(points);
+    points.clear();
+    encodedBytes.add(mixedData.readableBytes());
+    return mixedData;
+  }
 
-      gauges.add(counter);
-    });
-    return gauges;
+  private boolean isCompressed(ByteBuf mixedData) {
+    return compressor != null && mixedData.readableBytes() >= compressionThreshold;
+  }
+
+  private Buffer toBody(ByteBuf mixedData, boolean gzip) {
+    if (!gzip) {
+      return encoder.toBuffer(mixedData);
+    }
+    int length = mixedData.readableBytes();
+    Buffer body = compressor.compress(mixedData);
+    uncompressedBytes.add(length);
+    compressedBytes.add(body.length());
+    return body;
+  }
+
+  private void post(Buffer body, boolean gzip, InFlight inFlight) {
+    inFlightRequests++;
+    Endpoint endpoint = inFlight.endpoint;
+    HttpClientRequest request = httpClient.post(endpoint.getPort(), endpoint.getHost(), metricsURI,
+      response -> onResponse(inFlight, response))
+      .putHeader("Content-Type", "application/json")
+      .putHeader("Hawkular-Tenant", inFlight.tenant)
+      .exceptionHandler(err -> {
+        inFlight.complete(false, false);
+        LOG.trace("Could not send metrics", err);
+      });
+    if (gzip) {
+      request.putHeader("Content-Encoding", "gzip");
+    }
+    if (requestTimeout > 0) {
+      // Otherwise a hung request would hold its slot in the window forever
+      request.setTimeout(requestTimeout);
+    }
+    request.end(body);
   }
 
-  private void onResponse(HttpClientResponse response) {
+  private void onResponse(InFlight inFlight, HttpClientResponse response) {
+    // Server errors are transient, client errors are not: don't retry the latter
+    inFlight.complete(response.statusCode() < 500, response.statusCode() < 300);
     if (response.statusCode() != 200 && LOG.isTraceEnabled()) {
       response.bodyHandler(msg -> {
         LOG.trace("Could not send metrics: " + response.statusCode() + " : " + msg.toString());
@@ -176,15 +407,257 @@ public class Sender implements Handler<List<SingleMetric>> {
     }
   }
 
+  private boolean canSpool() {
+    // Once stopped, the spool is closed
+    return spool != null && !stopped;
+  }
+
+  private void spool(Buffer body, boolean gzip, String tenant) {
+    if (!canSpool()) {
+      // Closing the HTTP client fails the requests in flight: their metrics are lost, like the queued ones
+      return;
+    }
+    // Records of the default tenant don't store it
+    String spooledTenant = tenant.equals(tenantResolver.getDefaultTenant()) ? null : tenant;
+    try {
+      if (spool.append(body, gzip, spooledTenant)) {
+        spooledBatches.increment();
+        if (!replaying) {
+          scheduleReplay();
+        }
+      }
+    } catch (IOException e) {
+      LOG.error("Could not spool metrics", e);
+    }
+  }
+
+  private void scheduleReplay() {
+    if (stopped) {
+      replaying = false;
+      return;
+    }
+    replaying = true;
+    vertx.setTimer(replayDelay, id -> replay());
+  }
+
+  private void replay() {
+    Spool.Record record = stopped ? null : spool.peek();
+    if (record == null) {
+      replaying = false;
+    } else if (!canSend()) {
+      scheduleReplay();
+    } else {
+      replaying = true;
+      replayed = record;
+      post(record.getBody(), record.isGzip(), new InFlight(0, 0, null, record.isGzip(), true, endpoints.next(), defaultQueue,
+        record.getTenant() != null ? record.getTenant() : tenantResolver.getDefaultTenant()));
+    }
+  }
+
+  private void onReplayed(boolean delivered) {
+    Spool.Record record = replayed;
+    replayed = null;
+    if (stopped) {
+      // The spool is closed
+      replaying = false;
+      return;
+    }
+    if (delivered) {
+      // Its segment may have been discarded to make room for newer records, then there is nothing to remove
+      spool.remove(record);
+      replayedBatches.increment();
+      replayDelay = MIN_REPLAY_DELAY;
+      replay();
+    } else {
+      replayDelay = Math.min(2 * replayDelay, MAX_REPLAY_DELAY);
+      scheduleReplay();
+    }
+  }
+
+  @Override
+  public boolean writeQueueFull() {
+    // The spool, or a policy which makes room for new metrics, can always take a cycle. Otherwise, only skip it when
+    // all its metrics would be dropped
+    if (spool != null || overflowPolicy != OverflowPolicy.DROP_NEWEST) {
+      return false;
+    }
+    for (MetricsQueue queue : queues.values()) {
+      if (!queue.isAtCapacity()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void cycleSkipped(int points) {
+    skippedPoints += points;
+  }
+
+  private void scheduleFlush() {
+    // In adaptive mode, a timer is only armed while metrics are queued
+    if (adaptiveBatching == null || flushTimerId >= 0 || stopped) {
+      return;
+    }
+    int queued = queuedPoints();
+    if (queued > 0) {
+      flushTimerId = vertx.setTimer(adaptiveBatching.flushDelay(queued), id -> {
+        flushTimerId = -1;
+        sendQueued();
+        // Otherwise the window is full, the flush will be scheduled again when a response is received
+      });
+    }
+  }
+
   private void flushIfIdle(Long timerId) {
-    if (System.nanoTime() - sendTime > batchDelay && !queue.isEmpty()) {
-      send(queue);
-      queue.clear();
+    if (System.nanoTime() - sendTime > batchDelay) {
+      sendQueued();
+    }
+  }
+
+  @Override
+  public List<SingleMetric> collect() {
+    long timestamp = System.currentTimeMillis();
+    List<SingleMetric> res = new ArrayList<>(13);
+    long droppedPoints = skippedPoints;
+    for (MetricsQueue queue : queues.values()) {
+      droppedPoints += queue.getDropped();
+    }
+    res.add(metric("droppedPoints", timestamp, droppedPoints, COUNTER));
+    res.add(metric("queuedPoints", timestamp, queuedPoints(), GAUGE));
+    res.add(metric("inFlightRequests", timestamp, inFlightRequests, GAUGE));
+    res.add(metric("encodedBytes", timestamp, encodedBytes.sum(), COUNTER));
+    res.add(metric("sentBatches", timestamp, sentBatches.sum(), COUNTER));
+    res.add(metric("failedBatches", timestamp, failedBatches.sum(), COUNTER));
+    res.add(metric("postTime", timestamp, MILLISECONDS.convert(postTime.sum(), NANOSECONDS), COUNTER));
+    if (endpoints.isMultiple()) {
+      res.add(metric("failovers", timestamp, failovers.sum(), COUNTER));
+      for (Endpoint endpoint : endpoints.all()) {
+        res.add(metric("endpoint." + endpoint.getName() + ".healthy", timestamp, endpoint.isHealthy() ? 1 : 0, GAUGE));
+      }
     }
+    if (compressor != null) {
+      res.add(metric("uncompressedBytes", timestamp, uncompressedBytes.sum(), COUNTER));
+      res.add(metric("compressedBytes", timestamp, compressedBytes.sum(), COUNTER));
+    }
+    if (spool != null) {
+      res.add(metric("spooledBatches", timestamp, spooledBatches.sum(), COUNTER));
+      res.add(metric("replayedBatches", timestamp, replayedBatches.sum(), COUNTER));
+      res.add(metric("spoolDroppedBatches", timestamp, spool.getDropped(), COUNTER));
+    }
+    return res;
   }
 
+  private SingleMetric metric(String name, long timestamp, Number value, MetricType type) {
+    return new SingleMetric(baseName + name, timestamp, value.doubleValue(), type);
+  }
+
+  /**
+   * Stops sending. Metrics still queued or in flight are not spooled: the spool is closed, and requests failed by the
+   * HTTP client shutdown are discarded.
+   */
+  @Override
   public void stop() {
-    vertx.cancelTimer(timerId);
+    stopped = true;
+    if (adaptiveBatching == null) {
+      vertx.cancelTimer(timerId);
+    } else if (flushTimerId >= 0) {
+      vertx.cancelTimer(flushTimerId);
+    }
     httpClient.close();
+    encoder.close();
+    if (compressor != null) {
+      compressor.close();
+    }
+    if (spool != null) {
+      spool.close();
+    }
+  }
+
+  /**
+   * A request waiting for a response. Its metrics are accounted for in the queue capacity and in the in-flight window.
+   */
+  private class InFlight {
+    final int size;
+    final long estimatedBytes;
+    final Buffer body;
+    final boolean gzip;
+    final boolean replay;
+    final Endpoint endpoint;
+    final MetricsQueue queue;
+    final String tenant;
+    final long startTime = System.nanoTime();
+    boolean completed;
+    boolean failover;
+
+    /**
+     * @param body     the request body, if it must be sent again when it can't be delivered
+     * @param endpoint where the request is sent
+     * @param queue    where the metrics come from
+     * @param tenant   the tenant the metrics belong to
+     */
+    InFlight(int size, long estimatedBytes, Buffer body, boolean gzip, boolean replay, Endpoint endpoint,
+             MetricsQueue queue, String tenant) {
+      this.size = size;
+      this.estimatedBytes = estimatedBytes;
+      this.body = body;
+      this.gzip = gzip;
+      this.replay = replay;
+      this.endpoint = endpoint;
+      this.queue = queue;
+      this.tenant = tenant;
+    }
+
+    /**
+     * @param delivered false if the request failed and may succeed if sent again
+     * @param accepted  true if the server stored the metrics
+     */
+    void complete(boolean delivered, boolean accepted) {
+      // The exception handler may be invoked after the response handler
+      if (completed) {
+        return;
+      }
+      completed = true;
+      long responseTime = System.nanoTime() - startTime;
+      postTime.add(responseTime);
+      if (adaptiveBatching != null) {
+        adaptiveBatching.onResponse(responseTime);
+      }
+      endpoint.onResponse(delivered);
+      if (accepted) {
+        sentBatches.increment();
+      } else {
+        failedBatches.increment();
+      }
+      inFlightRequests--;
+      if (!delivered && !replay && !failover && body != null && failover()) {
+        // The metrics are still in flight
+        return;
+      }
+      queue.release(size, estimatedBytes);
+      if (replay) {
+        onReplayed(delivered);
+      } else if (!delivered && body != null && canSpool()) {
+        spool(body, gzip, tenant);
+      } else if (delivered && spool != null && !replaying) {
+        // The server is reachable again
+        replay();
+      }
+      // Batches may have been queued while the window was full
+      sendFullBatches();
+      scheduleFlush();
+    }
+
+    private boolean failover() {
+      Endpoint other = endpoints.failover(endpoint);
+      if (other == null || stopped) {
+        return false;
+      }
+      failovers.increment();
+      InFlight retry = new InFlight(size, estimatedBytes, body, gzip, false, other, queue, tenant);
+      retry.failover = true;
+      post(body, gzip, retry);
+      return true;
+    }
   }
 }
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.ext.hawkular.impl;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Append-only, disk-backed, queue of request bodies which could not be sent to the Hawkular server.
+ * <p>
+ * Bodies are appended to memory-mapped segment files of a fixed size. Each record is made of the payload length (int),
+ * a flags byte and the payload: the tenant, if any, as a length (short) and UTF-8 bytes, followed by the body. A zero
+ * length marks the end of the records in a segment. Segments are removed
+ * once all their records have been read; when the total size cap is reached, the oldest segment is discarded.
+ * <p>
+ * Segments left by a previous run are recovered when the spool is opened. As the read position is not persisted,
+ * some bodies may be sent twice, which is harmless: Hawkular overwrites points with the same timestamp.
+ * <p>
+ * Segment mappings are released explicitly when a segment is deleted or the spool is closed, instead of waiting for
+ * the garbage collector, so that neither the mapping nor the file outlive the segment.
+ * <p>
+ * Instances are not thread-safe and must be confined to the metrics context.
+ *
+ * @author Thomas Segismont
+ */
+public class Spool {
+  private static final Logger LOG = LoggerFactory.getLogger(Spool.class);
+  private static final String SEGMENT_PREFIX = "spool-";
+  private static final String SEGMENT_SUFFIX = ".dat";
+  private static final int HEADER_SIZE = 5;
+  private static final byte GZIP = 1;
+  private static final byte TENANT = 2;
+
+  private final File directory;
+  private final int segmentSize;
+  private final int maxSegments;
+  private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+
+  private long nextSequence;
+  private long dropped;
+
+  /**
+   * @param directory   where segment files are stored, created if needed
+   * @param segmentSize size of a segment file, in bytes
+   * @param maxSize     maximum total size of segment files, in bytes
+   * @throws IOException if the directory cannot be created or existing segments cannot be recovered
+   */
+  public Spool(File directory, int segmentSize, long maxSize) throws IOException {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    maxSegments = (int) Math.max(1, maxSize / segmentSize);
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create spool directory " + directory);
+    }
+    recover();
+  }
+
+  private void recover() throws IOException {
+    File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+    if (files == null) {
+      return;
+    }
+    long[] sequences = new long[files.length];
+    int count = 0;
+    for (File file : files) {
+      String name = file.getName();
+      try {
+        sequences[count] = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        count++;
+      } catch (NumberFormatException ignore) {
+      }
+    }
+    Arrays.sort(sequences, 0, count);
+    for (int i = 0; i < count; i++) {
+      Segment segment = new Segment(sequences[i]);
+      segment.recover();
+      if (segment.records > 0) {
+        segments.addLast(segment);
+      } else {
+        segment.delete();
+      }
+      nextSequence = sequences[i] + 1;
+    }
+  }
+
+  /**
+   * Appends a request body to the spool.
+   *
+   * @param body   the request body
+   * @param gzip   whether the body is gzip compressed
+   * @param tenant the tenant the body must be sent to, null for the default tenant
+   * @return false if the body is too big to fit in a segment
+   */
+  public boolean append(Buffer body, boolean gzip, String tenant) throws IOException {
+    byte[] tenantBytes = tenant == null ? null : tenant.getBytes(StandardCharsets.UTF_8);
+    int length = body.length() + (tenantBytes == null ? 0 : 2 + tenantBytes.length);
+    if (HEADER_SIZE + length > segmentSize) {
+      dropped++;
+      return false;
+    }
+    Segment segment = segments.peekLast();
+    if (segment == null || segment.sealed || segment.writePosition + HEADER_SIZE + length > segmentSize) {
+      if (segment != null) {
+        segment.sealed = true;
+      }
+      if (segments.size() >= maxSegments) {
+        Segment oldest = segments.removeFirst();
+        dropped += oldest.records;
+        oldest.delete();
+      }
+      segment = new Segment(nextSequence++);
+      segments.addLast(segment);
+    }
+    byte flags = (byte) ((gzip ? GZIP : 0) | (tenantBytes == null ? 0 : TENANT));
+    segment.append(tenantBytes, body.getBytes(), flags);
+    return true;
+  }
+
+  /**
+   * @return the oldest record, or null if the spool is empty
+   */
+  public Record peek() {
+    Segment segment = segments.peekFirst();
+    return segment == null || segment.records == 0 ? null : segment.read();
+  }
+
+  /**
+   * Removes a record returned by {@link #peek()}. Appending may have discarded its segment in the meantime, in which
+   * case the spool is left unchanged.
+   *
+   * @param record the record to remove
+   * @return false if the record is no longer the oldest one
+   */
+  public boolean remove(Record record) {
+    Segment segment = segments.peekFirst();
+    if (segment == null || segment.sequence != record.sequence || segment.readPosition != record.position) {
+      return false;
+    }
+    segment.skip();
+    if (segment.records == 0 && (segment.sealed || segments.size() > 1)) {
+      segments.removeFirst();
+      segment.delete();
+    }
+    return true;
+  }
+
+  /**
+   * @return true if there is no record to read
+   */
+  public boolean isEmpty() {
+    Segment segment = segments.peekFirst();
+    return segment == null || segment.records == 0;
+  }
+
+  /**
+   * @return total number of records discarded because the spool was full or a body was too big
+   */
+  public long getDropped() {
+    return dropped;
+  }
+
+  /**
+   * Releases segments. Unread records stay on disk and will be recovered when a spool is opened in the same directory.
+   * The spool must not be used afterwards.
+   */
+  public void close() {
+    for (Iterator<Segment> iterator = segments.iterator(); iterator.hasNext(); ) {
+      Segment segment = iterator.next();
+      if (segment.records == 0) {
+        segment.delete();
+      } else {
+        segment.release();
+      }
+      iterator.remove();
+    }
+  }
+
+  // Java 8 exposes the cleaner of direct buffers, newer versions only allow to invoke it through Unsafe
+  private static void unmap(MappedByteBuffer buffer) {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      invokeCleaner.invoke(theUnsafe.get(null), buffer);
+      return;
+    } catch (NoSuchMethodException ignore) {
+      // Java 8
+    } catch (Exception e) {
+      LOG.debug("Could not unmap spool segment, it will be released by the garbage collector", e);
+      return;
+    }
+    try {
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null) {
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+    } catch (Exception e) {
+      LOG.debug("Could not unmap spool segment, it will be released by the garbage collector", e);
+    }
+  }
+
+  /**
+   * A spooled request body.
+   */
+  public static class Record {
+    private final long sequence;
+    private final int position;
+    private final Buffer body;
+    private final boolean gzip;
+    private final String tenant;
+
+    private Record(long sequence, int position, Buffer body, boolean gzip, String tenant) {
+      this.sequence = sequence;
+      this.position = position;
+      this.body = body;
+      this.gzip = gzip;
+      this.tenant = tenant;
+    }
+
+    /**
+     * @return the request body
+     */
+    public Buffer getBody() {
+      return body;
+    }
+
+    /**
+     * @return whether the body is gzip compressed
+     */
+    public boolean isGzip() {
+      return gzip;
+    }
+
+    /**
+     * @return the tenant the body must be sent to, null for the default tenant
+     */
+    public String getTenant() {
+      return tenant;
+    }
+  }
+
+  private class Segment {
+    final long sequence;
+    final File file;
+    final MappedByteBuffer buffer;
+    int readPosition;
+    int writePosition;
+    int records;
+    boolean sealed;
+
+    Segment(long sequence) throws IOException {
+      this.sequence = sequence;
+      file = new File(directory, SEGMENT_PREFIX + sequence + SEGMENT_SUFFIX);
+      try (FileChannel channel = FileChannel.open(file.toPath(), CREATE, READ, WRITE)) {
+        // The mapping stays valid after the channel is closed
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+      }
+    }
+
+    void recover() {
+      sealed = true;
+      int position = 0;
+      while (position + HEADER_SIZE <= segmentSize) {
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + HEADER_SIZE + length > segmentSize) {
+          break;
+        }
+        position += HEADER_SIZE + length;
+        records++;
+      }
+      writePosition = position;
+    }
+
+    void append(byte[] tenant, byte[] body, byte flags) {
+      ByteBuffer view = buffer.duplicate();
+      view.position(writePosition + 4);
+      view.put(flags);
+      if (tenant != null) {
+        view.putShort((short) tenant.length);
+        view.put(tenant);
+      }
+      view.put(body);
+      int length = view.position() - writePosition - HEADER_SIZE;
+      // Write the length last: until then, the record is not visible to recovery
+      buffer.putInt(writePosition, length);
+      writePosition += HEADER_SIZE + length;
+      records++;
+    }
+
+    Record read() {
+      int length = buffer.getInt(readPosition);
+      byte flags = buffer.get(readPosition + 4);
+      ByteBuffer view = buffer.duplicate();
+      view.position(readPosition + HEADER_SIZE);
+      String tenant = null;
+      if ((flags & TENANT) != 0) {
+        byte[] tenantBytes = new byte[view.getShort()];
+        view.get(tenantBytes);
+        tenant = new String(tenantBytes, StandardCharsets.UTF_8);
+        length -= 2 + tenantBytes.length;
+      }
+      byte[] bytes = new byte[length];
+      view.get(bytes);
+      return new Record(sequence, readPosition, Buffer.buffer(Unpooled.wrappedBuffer(bytes)), (flags & GZIP) != 0, tenant);
+    }
+
+    void skip() {
+      readPosition += HEADER_SIZE + buffer.getInt(readPosition);
+      records--;
+    }
+
+    void release() {
+      unmap(buffer);
+    }
+
+    void delete() {
+      release();
+      file.delete();
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts HTTP responses by status class, 1xx to 5xx. Counters are striped, so that event loops recording responses
+ * concurrently do not contend.
+ *
+ * @author Thomas Segismont
+ */
+public class StatusClassCounters {
+  /**
+   * Number of status classes.
+   */
+  public static final int SIZE = 5;
+  /**
+   * Metric names of the status classes, in order.
+   */
+  public static final String[] NAMES = {"status.1xx", "status.2xx", "status.3xx", "status.4xx", "status.5xx"};
+
+  private final LongAdder[] counters = new LongAdder[SIZE];
+
+  public StatusClassCounters() {
+    for (int i = 0; i < SIZE; i++) {
+      counters[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Counts a response. Status codes out of the 100-599 range are ignored.
+   *
+   * @param statusCode the response status code
+   */
+  public void record(int statusCode) {
+    int statusClass = statusCode / 100 - 1;
+    if (statusClass >= 0 && statusClass < SIZE) {
+      counters[statusClass].increment();
+    }
+  }
+
+  /**
+   * Adds the current counts to {@code totals}.
+   *
+   * @param totals an array of {@link #SIZE} totals, by status class
+   */
+  public void sumTo(long[] totals) {
+    for (int i = 0; i < SIZE; i++) {
+      totals[i] += counters[i].sum();
+    }
+  }
+}
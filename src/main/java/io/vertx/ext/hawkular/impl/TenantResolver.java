@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.hawkular.VertxHawkularOptions;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Resolves the Hawkular tenant of a metric from its name, using the longest matching configured prefix.
+ *
+ * @author Thomas Segismont
+ */
+public class TenantResolver {
+  private final String defaultTenant;
+  // Sorted by decreasing length, so that the first match is the longest
+  private final String[] prefixes;
+  private final String[] tenants;
+  private final int tenantCount;
+
+  /**
+   * @param options Vertx Hawkular options
+   */
+  public TenantResolver(VertxHawkularOptions options) {
+    defaultTenant = options.getTenant();
+    JsonObject tenantPrefixes = options.getTenantPrefixes();
+    prefixes = tenantPrefixes.fieldNames().toArray(new String[tenantPrefixes.size()]);
+    Arrays.sort(prefixes, Comparator.comparingInt(String::length).reversed());
+    tenants = new String[prefixes.length];
+    for (int i = 0; i < prefixes.length; i++) {
+      tenants[i] = tenantPrefixes.getString(prefixes[i]);
+    }
+    Set<String> distinct = new HashSet<>(Arrays.asList(tenants));
+    distinct.add(defaultTenant);
+    tenantCount = distinct.size();
+  }
+
+  /**
+   * @return true if all metrics are sent to the default tenant
+   */
+  public boolean isSingleTenant() {
+    return prefixes.length == 0;
+  }
+
+  /**
+   * @return the number of distinct tenants metrics may be sent to, including the default tenant
+   */
+  public int getTenantCount() {
+    return tenantCount;
+  }
+
+  /**
+   * @return the default tenant
+   */
+  public String getDefaultTenant() {
+    return defaultTenant;
+  }
+
+  /**
+   * @param id a metric id
+   * @return the tenant this metric must be sent to
+   */
+  public String resolve(String id) {
+    for (int i = 0; i < prefixes.length; i++) {
+      if (id.startsWith(prefixes[i])) {
+        return tenants[i];
+      }
+    }
+    return defaultTenant;
+  }
+}
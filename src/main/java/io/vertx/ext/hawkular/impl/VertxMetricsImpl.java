@@ -25,6 +25,7 @@ import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientOptions;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.impl.VertxInternal;
 import io.vertx.core.metrics.impl.DummyVertxMetrics;
 import io.vertx.core.net.NetClient;
 import io.vertx.core.net.NetClientOptions;
@@ -36,7 +37,12 @@ import io.vertx.core.spi.metrics.EventBusMetrics;
 import io.vertx.core.spi.metrics.HttpClientMetrics;
 import io.vertx.core.spi.metrics.HttpServerMetrics;
 import io.vertx.core.spi.metrics.TCPMetrics;
+import io.vertx.ext.hawkular.MetricsBatch;
 import io.vertx.ext.hawkular.VertxHawkularOptions;
+import io.vertx.ext.hawkular.spi.MetricsExporter;
+import io.vertx.ext.hawkular.spi.MetricsExporterFactory;
+
+import java.util.ServiceLoader;
 
 /**
  * Metrcis SPI implementation.
@@ -44,14 +50,15 @@ import io.vertx.ext.hawkular.VertxHawkularOptions;
  * @author Thomas Segismont
  */
 public class VertxMetricsImpl extends DummyVertxMetrics {
-  private final String prefix;
+  private final VertxHawkularOptions options;
   private final HttpServerMetricsSupplier httpServerMetricsSupplier;
   private final HttpClientMetricsSupplier httpClientMetricsSupplier;
   private final NetServerMetricsSupplier netServerMetricsSupplier;
   private final NetClientMetricsSupplier netClientMetricsSupplier;
   private final DatagramSocketMetricsSupplier datagramSocketMetricsSupplier;
 
-  private Sender sender;
+  private MetricsExporter exporter;
+  private MetricsBridge metricsBridge;
   private Scheduler scheduler;
 
   /**
@@ -59,15 +66,23 @@ public class VertxMetricsImpl extends DummyVertxMetrics {
    * @param options Vertx Hawkular options
    */
   public VertxMetricsImpl(Vertx vertx, VertxHawkularOptions options) {
-    prefix = options.getPrefix();
-    httpServerMetricsSupplier = new HttpServerMetricsSupplier(prefix);
+    this.options = options;
+    String prefix = options.getPrefix();
+    httpServerMetricsSupplier = new HttpServerMetricsSupplier(options);
     httpClientMetricsSupplier = new HttpClientMetricsSupplier(prefix);
     netServerMetricsSupplier = new NetServerMetricsSupplier(prefix);
     netClientMetricsSupplier = new NetClientMetricsSupplier(prefix);
     datagramSocketMetricsSupplier = new DatagramSocketMetricsSupplier(prefix);
-    Context context = vertx.getOrCreateContext();
-    sender = new Sender(vertx, options, context);
-    scheduler = new Scheduler(vertx, options, context, sender);
+    Context context = createContext(vertx, options);
+    exporter = createExporter(vertx, options, context);
+    scheduler = new Scheduler(vertx, options, context, exporter);
+    if (exporter instanceof MetricSupplier) {
+      scheduler.register((MetricSupplier) exporter);
+    }
+    if (options.isMetricsBridgeEnabled() && options.getMetricsBridgeAddress() != null) {
+      metricsBridge = new MetricsBridge(vertx, options, context, exporter);
+      scheduler.register(metricsBridge);
+    }
     scheduler.register(httpServerMetricsSupplier);
     scheduler.register(httpClientMetricsSupplier);
     scheduler.register(netServerMetricsSupplier);
@@ -75,9 +90,30 @@ public class VertxMetricsImpl extends DummyVertxMetrics {
     scheduler.register(datagramSocketMetricsSupplier);
   }
 
+  private static Context createContext(Vertx vertx, VertxHawkularOptions options) {
+    if (options.isDedicatedContextEnabled()) {
+      // Timers, HTTP responses and event bus messages of this context are handled on worker threads, never on an event
+      // loop shared with application verticles. The worker pool itself is shared, as documented on the option: Vert.x
+      // has no API to give a context its own thread, and timers and HTTP clients only work with contexts it creates
+      return ((VertxInternal) vertx).createWorkerContext(false, null, null, VertxMetricsImpl.class.getClassLoader());
+    }
+    // When invoked from a non Vert.x thread (e.g. during startup), creates an event loop context
+    return vertx.getOrCreateContext();
+  }
+
+  private static MetricsExporter createExporter(Vertx vertx, VertxHawkularOptions options, Context context) {
+    for (MetricsExporterFactory factory : ServiceLoader.load(MetricsExporterFactory.class)) {
+      if (factory.name().equals(options.getExporter())) {
+        return factory.create(vertx, options, context);
+      }
+    }
+    throw new IllegalArgumentException("Unknown metrics exporter: " + options.getExporter());
+  }
+
   @Override
-  public HttpServerMetrics<Long, Void, Void> createMetrics(HttpServer server, SocketAddress localAddress,
-                                                           HttpServerOptions options) {
+  public HttpServerMetrics<HttpServerRequestMetrics, Void, Void> createMetrics(HttpServer server,
+                                                                               SocketAddress localAddress,
+                                                                               HttpServerOptions options) {
     return new HttpServerMetricsImpl(localAddress, httpServerMetricsSupplier);
   }
 
@@ -103,7 +139,9 @@ public class VertxMetricsImpl extends DummyVertxMetrics {
 
   @Override
   public EventBusMetrics createMetrics(EventBus eventBus) {
-    return new EventBusMetricsImpl(prefix, scheduler);
+    // Registered on every node, so that batches can be sent from a node where the bridge is not enabled
+    eventBus.registerDefaultCodec(MetricsBatch.class, new MetricsBatchCodec());
+    return new EventBusMetricsImpl(options, scheduler);
   }
 
   @Override
@@ -123,11 +161,17 @@ public class VertxMetricsImpl extends DummyVertxMetrics {
     scheduler.unregister(netServerMetricsSupplier);
     scheduler.unregister(netClientMetricsSupplier);
     scheduler.unregister(datagramSocketMetricsSupplier);
+    if (exporter instanceof MetricSupplier) {
+      scheduler.unregister((MetricSupplier) exporter);
+    }
+    if (metricsBridge != null) {
+      scheduler.unregister(metricsBridge);
+    }
     if (scheduler != null) {
       scheduler.stop();
     }
-    if (sender != null) {
-      sender.stop();
+    if (exporter != null) {
+      exporter.stop();
     }
   }
 }
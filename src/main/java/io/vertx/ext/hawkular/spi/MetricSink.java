@@ -0,0 +1,327 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.ext.hawkular.spi;
+
+import org.hawkular.metrics.client.common.MetricType;
+import org.hawkular.metrics.client.common.SingleMetric;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Columnar, reusable, buffer of collected metric points.
+ * <p>
+ * Metric ids are interned: each distinct id is given a handle, which stays valid until the id is released. Points are
+ * stored in parallel arrays of id handles, timestamps, values and types, which are only reallocated when the capacity
+ * grows. Once warmed up, collecting metrics with constant ids into a sink does not allocate.
+ * <p>
+ * Ids of metrics which are no longer collected, like those of closed servers or of reply addresses, can be released
+ * explicitly, or when they were not used for a number of cycles. Released handles are recycled by
+ * {@link #handle(String)}, and release listeners are notified so that state indexed by handle can be reset.
+ * <p>
+ * Instances are not thread-safe and must be confined to the metrics context.
+ *
+ * @author Thomas Segismont
+ */
+public class MetricSink {
+  /**
+   * Type of a gauge point.
+   */
+  public static final byte GAUGE = 0;
+  /**
+   * Type of a counter point.
+   */
+  public static final byte COUNTER = 1;
+
+  private static final int DEFAULT_CAPACITY = 256;
+
+  private final Map<String, Integer> handles = new HashMap<>();
+  private String[] ids;
+  private int idCount;
+  // Cycle in which each handle was last used
+  private int[] lastCycles;
+  private int[] freeHandles = new int[0];
+  private int freeCount;
+  private int cycle;
+  private final List<IntConsumer> releaseListeners = new ArrayList<>();
+  private int[] idRefs;
+  private long[] timestamps;
+  private double[] values;
+  private byte[] types;
+  private int size;
+
+  public MetricSink() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param initialCapacity expected number of points
+   */
+  public MetricSink(int initialCapacity) {
+    int capacity = Math.max(1, initialCapacity);
+    ids = new String[capacity];
+    lastCycles = new int[capacity];
+    idRefs = new int[capacity];
+    timestamps = new long[capacity];
+    values = new double[capacity];
+    types = new byte[capacity];
+  }
+
+  /**
+   * @param id a metric id
+   * @return the handle of this metric id, to be used with {@link #add(int, long, double, byte)}
+   */
+  public int handle(String id) {
+    Integer handle = handles.get(id);
+    if (handle == null) {
+      if (freeCount > 0) {
+        handle = freeHandles[--freeCount];
+      } else {
+        if (idCount == ids.length) {
+          ids = Arrays.copyOf(ids, 2 * idCount);
+          lastCycles = Arrays.copyOf(lastCycles, 2 * idCount);
+        }
+        handle = idCount++;
+      }
+      ids[handle] = id;
+      handles.put(id, handle);
+    }
+    lastCycles[handle] = cycle;
+    return handle;
+  }
+
+  /**
+   * Releases a metric id. Its handle must not be used any more, and may be given to another id.
+   *
+   * @param id a metric id
+   * @return true if the id was interned
+   */
+  public boolean release(String id) {
+    Integer handle = handles.get(id);
+    if (handle == null) {
+      return false;
+    }
+    release(handle.intValue());
+    return true;
+  }
+
+  /**
+   * Releases the metric ids which were not used, either to add a point or to get a handle, during the last
+   * {@code idleCycles} cycles. A cycle ends when the sink is {@link #clear() cleared}.
+   *
+   * @param idleCycles the number of cycles after which an unused id is released, must be positive
+   * @return the number of ids released
+   */
+  public int releaseIdle(int idleCycles) {
+    int released = 0;
+    for (int handle = 0; handle < idCount; handle++) {
+      if (ids[handle] != null && cycle - lastCycles[handle] >= idleCycles) {
+        release(handle);
+        released++;
+      }
+    }
+    return released;
+  }
+
+  private void release(int handle) {
+    handles.remove(ids[handle]);
+    for (int i = 0; i < releaseListeners.size(); i++) {
+      releaseListeners.get(i).accept(handle);
+    }
+    ids[handle] = null;
+    if (freeCount == freeHandles.length) {
+      freeHandles = Arrays.copyOf(freeHandles, Math.max(16, 2 * freeCount));
+    }
+    freeHandles[freeCount++] = handle;
+  }
+
+  /**
+   * Registers a listener notified with the handle of each released id, before the handle can be given to another id.
+   *
+   * @param listener the listener
+   */
+  public void addReleaseListener(IntConsumer listener) {
+    releaseListeners.add(listener);
+  }
+
+  /**
+   * @return the number of interned ids
+   */
+  public int idCount() {
+    return handles.size();
+  }
+
+  /**
+   * Adds a gauge point.
+   */
+  public MetricSink gauge(String id, long timestamp, double value) {
+    return add(handle(id), timestamp, value, GAUGE);
+  }
+
+  /**
+   * Adds a counter point.
+   */
+  public MetricSink counter(String id, long timestamp, double value) {
+    return add(handle(id), timestamp, value, COUNTER);
+  }
+
+  /**
+   * Adds a point.
+   *
+   * @param id        the metric id
+   * @param timestamp the point timestamp, in milliseconds
+   * @param value     the point value
+   * @param type      the metric type, only counters and gauges are supported
+   * @return the current {@link MetricSink} instance
+   */
+  public MetricSink add(String id, long timestamp, double value, MetricType type) {
+    return add(handle(id), timestamp, value, type == MetricType.COUNTER ? COUNTER : GAUGE);
+  }
+
+  /**
+   * Adds a point.
+   *
+   * @param handle    the metric id handle, as returned by {@link #handle(String)}
+   * @param timestamp the point timestamp, in milliseconds
+   * @param value     the point value
+   * @param type      {@link #GAUGE} or {@link #COUNTER}
+   * @return the current {@link MetricSink} instance
+   */
+  public MetricSink add(int handle, long timestamp, double value, byte type) {
+    if (size == timestamps.length) {
+      int capacity = 2 * size;
+      idRefs = Arrays.copyOf(idRefs, capacity);
+      timestamps = Arrays.copyOf(timestamps, capacity);
+      values = Arrays.copyOf(values, capacity);
+      types = Arrays.copyOf(types, capacity);
+    }
+    lastCycles[handle] = cycle;
+    idRefs[size] = handle;
+    timestamps[size] = timestamp;
+    values[size] = value;
+    types[size] = type;
+    size++;
+    return this;
+  }
+
+  /**
+   * Removes the points which do not match {@code filter}, keeping the others in order.
+   *
+   * @param from   the index of the first point to test, points before it are kept
+   * @param filter tests the index of a point
+   * @return the number of points removed
+   */
+  public int retain(int from, IntPredicate filter) {
+    int kept = from;
+    for (int i = from; i < size; i++) {
+      if (filter.test(i)) {
+        if (kept != i) {
+          idRefs[kept] = idRefs[i];
+          timestamps[kept] = timestamps[i];
+          values[kept] = values[i];
+          types[kept] = types[i];
+        }
+        kept++;
+      }
+    }
+    int removed = size - kept;
+    size = kept;
+    return removed;
+  }
+
+  /**
+   * Removes all points and ends the current cycle. Id handles stay valid.
+   */
+  public void clear() {
+    size = 0;
+    cycle++;
+  }
+
+  /**
+   * @return the number of points
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param handle a metric id handle
+   * @return the metric id
+   */
+  public String id(int handle) {
+    return ids[handle];
+  }
+
+  /**
+   * @param point the index of a point, between 0 and {@link #size()}
+   * @return the point's metric id handle
+   */
+  public int handleOf(int point) {
+    return idRefs[point];
+  }
+
+  /**
+   * @param point the index of a point, between 0 and {@link #size()}
+   * @return the point's metric id
+   */
+  public String idOf(int point) {
+    return ids[idRefs[point]];
+  }
+
+  /**
+   * @param point the index of a point, between 0 and {@link #size()}
+   * @return the point's timestamp, in milliseconds
+   */
+  public long timestampOf(int point) {
+    return timestamps[point];
+  }
+
+  /**
+   * @param point the index of a point, between 0 and {@link #size()}
+   * @return the point's value
+   */
+  public double valueOf(int point) {
+    return values[point];
+  }
+
+  /**
+   * @param point the index of a point, between 0 and {@link #size()}
+   * @return true if the point belongs to a counter, false for a gauge
+   */
+  public boolean isCounter(int point) {
+    return types[point] == COUNTER;
+  }
+
+  /**
+   * Copies points to {@link SingleMetric} instances, for consumers which need objects. Metric ids are shared, not
+   * copied.
+   *
+   * @return a new list of metrics
+   */
+  public List<SingleMetric> toMetrics() {
+    List<SingleMetric> res = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      res.add(new SingleMetric(idOf(i), timestamps[i], values[i], isCounter(i) ? MetricType.COUNTER : MetricType.GAUGE));
+    }
+    return res;
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.ext.hawkular.spi;
+
+import io.vertx.core.Handler;
+import io.vertx.ext.hawkular.MetricsBatch;
+import org.hawkular.metrics.client.common.SingleMetric;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hawkular.metrics.client.common.MetricType.*;
+
+/**
+ * Contract for objects sending collected metrics to a monitoring backend.
+ * <p>
+ * Collected metrics are handed over with {@link #handle(MetricSink)}, metrics sent to the metrics bridge with
+ * {@link #handle(MetricsBatch)} or {@link #handle(List)}. All methods are invoked on the metrics context.
+ *
+ * @author Thomas Segismont
+ */
+public interface MetricsExporter extends Handler<List<SingleMetric>> {
+  /**
+   * Hands over metrics to the exporter. The exporter decides when to actually send them.
+   *
+   * @param metrics the metrics to send, the list must not be modified
+   */
+  @Override
+  void handle(List<SingleMetric> metrics);
+
+  /**
+   * Hands over the metrics of a collection cycle to the exporter.
+   * <p>
+   * The sink is reused by the next cycle, so points must be consumed or copied before this method returns. The default
+   * implementation copies them to {@link SingleMetric} instances and invokes {@link #handle(List)}: exporters which
+   * encode points as they come should override it.
+   *
+   * @param sink the collected metrics
+   */
+  default void handle(MetricSink sink) {
+    if (sink.size() > 0) {
+      handle(sink.toMetrics());
+    }
+  }
+
+  /**
+   * Hands over a batch of metrics sent to the metrics bridge.
+   * <p>
+   * The batch may be the instance sent by the application, so it must not be modified. The default implementation
+   * copies points to {@link SingleMetric} instances and invokes {@link #handle(List)}: exporters which encode points as
+   * they come should override it.
+   *
+   * @param batch the metrics to send
+   */
+  default void handle(MetricsBatch batch) {
+    if (batch.size() > 0) {
+      List<SingleMetric> metrics = new ArrayList<>(batch.size());
+      for (int i = 0; i < batch.size(); i++) {
+        metrics.add(new SingleMetric(batch.idOf(i), batch.timestampOf(i), batch.valueOf(i),
+          batch.isCounter(i) ? COUNTER : GAUGE));
+      }
+      handle(metrics);
+    }
+  }
+
+  /**
+   * Batching hint: invoked at the end of each collection cycle, after all metrics of the cycle have been handed over.
+   * Exporters may use it to send pending metrics without waiting for a batch to fill up.
+   */
+  default void flush() {
+  }
+
+  /**
+   * Backpressure signal: while this method returns true, collection cycles are skipped. Exporters should only return
+   * true when the metrics of a cycle would be dropped anyway.
+   *
+   * @return true if the exporter can't keep up with the collected metrics
+   */
+  default boolean writeQueueFull() {
+    return false;
+  }
+
+  /**
+   * Invoked instead of {@link #handle(MetricSink)} when a collection cycle is skipped because of
+   * {@link #writeQueueFull() backpressure}, so that the exporter can account for the lost points.
+   *
+   * @param points the number of points of the last collected cycle, an estimate of the points lost
+   */
+  default void cycleSkipped(int points) {
+  }
+
+  /**
+   * Stop sending metrics and release resources.
+   */
+  void stop();
+}
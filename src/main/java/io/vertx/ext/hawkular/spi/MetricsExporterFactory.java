@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.vertx.ext.hawkular.spi;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.ext.hawkular.VertxHawkularOptions;
+
+/**
+ * Creates {@link MetricsExporter} instances. Implementations are discovered with {@link java.util.ServiceLoader}: they
+ * must be listed in a {@code META-INF/services/io.vertx.ext.hawkular.spi.MetricsExporterFactory} file.
+ *
+ * @author Thomas Segismont
+ */
+public interface MetricsExporterFactory {
+  /**
+   * @return the name of the exporter, used to select it with {@link VertxHawkularOptions#setExporter(String)}
+   */
+  String name();
+
+  /**
+   * @param vertx   the {@link Vertx} managed instance
+   * @param options Vertx Hawkular options
+   * @param context the metric collection and sending execution context
+   * @return a new exporter, ready to send metrics
+   */
+  MetricsExporter create(Vertx vertx, VertxHawkularOptions options, Context context);
+}
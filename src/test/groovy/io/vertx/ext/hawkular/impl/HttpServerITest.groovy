@@ -26,7 +26,8 @@ import org.junit.Test
 class HttpServerITest extends BaseITest {
   static final RESPONSE_CONTENT = 'some text'
   static final HTTP_SERVER_METRICS = ['bytesReceived', 'bytesSent', 'errorCount', 'httpConnections', 'processingTime',
-                                      'requestCount', 'requests', 'wsConnections']
+                                      'requestCount', 'requests', 'wsConnections', 'status.1xx', 'status.2xx',
+                                      'status.3xx', 'status.4xx', 'status.5xx']
 
   def testHost = '127.0.0.1'
   def testPort = getPort(9191)
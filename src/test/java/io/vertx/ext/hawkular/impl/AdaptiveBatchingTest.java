@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class AdaptiveBatchingTest {
+  // Longer than the rate window (100ms): 256 points during a window is a rate of 2^-19 points per nanosecond
+  private static final long WINDOW = 1L << 27;
+  // With the rate above and 2 requests in flight, batches of 50.5 points
+  private static final long LATENCY = 101L << 19;
+  private static final long SECOND = NANOSECONDS.convert(1, SECONDS);
+
+  @Test
+  public void testMinBatchSizeWithoutObservations() {
+    AdaptiveBatching batching = new AdaptiveBatching(10, 1000, 2, SECOND, 0);
+    assertEquals(10, batching.batchSize());
+    batching.onResponse(LATENCY);
+    assertEquals(10, batching.batchSize());
+    batching = new AdaptiveBatching(10, 1000, 2, SECOND, 0);
+    batching.onArrival(256, WINDOW);
+    assertEquals(10, batching.batchSize());
+  }
+
+  @Test
+  public void testRateIsUpdatedOncePerWindow() {
+    AdaptiveBatching batching = new AdaptiveBatching(10, 1000, 2, SECOND, 0);
+    batching.onResponse(LATENCY);
+    batching.onArrival(128, WINDOW / 2);
+    assertEquals(10, batching.batchSize());
+    // Points of the whole window are accounted for
+    batching.onArrival(128, WINDOW);
+    assertEquals(51, batching.batchSize());
+  }
+
+  @Test
+  public void testMovingAverages() {
+    AdaptiveBatching batching = new AdaptiveBatching(10, 1000, 2, SECOND, 0);
+    // The first observations are used as is
+    batching.onArrival(256, WINDOW);
+    batching.onResponse(LATENCY);
+    assertEquals(51, batching.batchSize());
+    // Rate: 0.2 * 6 + 0.8 * 1 = twice the first one, latency: 0.2 * 2 + 0.8 * 1 = 1.2 times the first one
+    batching.onArrival(6 * 256, 2 * WINDOW);
+    batching.onResponse(2 * LATENCY);
+    assertEquals(122, batching.batchSize());
+  }
+
+  @Test
+  public void testBatchSizeIsClamped() {
+    AdaptiveBatching batching = new AdaptiveBatching(10, 1000, 2, SECOND, 0);
+    batching.onArrival(256, WINDOW);
+    batching.onResponse(LATENCY / 100);
+    assertEquals(10, batching.batchSize());
+    batching = new AdaptiveBatching(10, 1000, 2, SECOND, 0);
+    batching.onArrival(256, WINDOW);
+    batching.onResponse(100 * LATENCY);
+    assertEquals(1000, batching.batchSize());
+    // The maximum never goes below the minimum
+    batching = new AdaptiveBatching(10, 5, 2, SECOND, 0);
+    batching.onArrival(256, WINDOW);
+    batching.onResponse(100 * LATENCY);
+    assertEquals(10, batching.batchSize());
+  }
+
+  @Test
+  public void testFlushDelay() {
+    AdaptiveBatching batching = new AdaptiveBatching(10, 1000, 2, SECOND, 0);
+    // Without arrival rate, queued metrics are flushed promptly
+    assertEquals(10, batching.flushDelay(1));
+    batching.onArrival(256, WINDOW);
+    batching.onResponse(LATENCY);
+    // 40 points are missing, they arrive in 40 * 2^19 nanoseconds
+    assertEquals(20, batching.flushDelay(11));
+    // The batch fills up sooner than the minimum delay
+    assertEquals(10, batching.flushDelay(46));
+    // The batch is full
+    assertEquals(10, batching.flushDelay(51));
+    assertEquals(10, batching.flushDelay(100));
+  }
+
+  @Test
+  public void testNoWaitWhenBatchFillsUpAfterMaxFlushDelay() {
+    AdaptiveBatching batching = new AdaptiveBatching(10, 1000, 2, NANOSECONDS.convert(15, MILLISECONDS), 0);
+    batching.onArrival(256, WINDOW);
+    batching.onResponse(LATENCY);
+    assertEquals(10, batching.flushDelay(11));
+    assertEquals(14, batching.flushDelay(24));
+  }
+}
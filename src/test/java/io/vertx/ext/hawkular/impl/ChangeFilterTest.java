@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.ext.hawkular.spi.MetricSink;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class ChangeFilterTest {
+
+  @Test
+  public void testUnchangedValuesAreSuppressed() {
+    MetricSink sink = new MetricSink();
+    ChangeFilter changeFilter = new ChangeFilter(60000);
+    sink.gauge("a", 1000, 5).gauge("b", 1000, 7);
+    changeFilter.filter(sink, 0);
+    assertEquals(Arrays.asList("a", "b"), ids(sink));
+    sink.clear();
+    sink.gauge("a", 2000, 5).gauge("b", 2000, 8);
+    changeFilter.filter(sink, 0);
+    assertEquals(Arrays.asList("b"), ids(sink));
+    assertEquals(8, sink.valueOf(0), 0);
+    sink.clear();
+    // Compared with the last point sent
+    sink.gauge("a", 3000, 6).gauge("b", 3000, 8);
+    changeFilter.filter(sink, 0);
+    assertEquals(Arrays.asList("a"), ids(sink));
+    assertEquals(2, changeFilter.getSuppressed());
+  }
+
+  @Test
+  public void testValuesAreComparedBitwise() {
+    MetricSink sink = new MetricSink();
+    ChangeFilter changeFilter = new ChangeFilter(60000);
+    sink.gauge("nan", 1000, Double.NaN).gauge("zero", 1000, 0d);
+    changeFilter.filter(sink, 0);
+    sink.clear();
+    sink.gauge("nan", 2000, Double.NaN).gauge("zero", 2000, -0d);
+    changeFilter.filter(sink, 0);
+    assertEquals(Arrays.asList("zero"), ids(sink));
+  }
+
+  @Test
+  public void testHeartbeat() {
+    MetricSink sink = new MetricSink();
+    ChangeFilter changeFilter = new ChangeFilter(10000);
+    for (long timestamp = 1000; timestamp <= 25000; timestamp += 1000) {
+      sink.clear();
+      sink.gauge("a", timestamp, 5);
+      changeFilter.filter(sink, 0);
+      // The heartbeat interval is measured from the last point sent
+      boolean sent = timestamp == 1000 || timestamp == 11000 || timestamp == 21000;
+      assertEquals("at " + timestamp, sent ? 1 : 0, sink.size());
+    }
+    assertEquals(22, changeFilter.getSuppressed());
+  }
+
+  @Test
+  public void testChangeRestartsHeartbeatInterval() {
+    MetricSink sink = new MetricSink();
+    ChangeFilter changeFilter = new ChangeFilter(10000);
+    sink.gauge("a", 1000, 5);
+    changeFilter.filter(sink, 0);
+    sink.clear();
+    sink.gauge("a", 8000, 6);
+    changeFilter.filter(sink, 0);
+    assertEquals(1, sink.size());
+    sink.clear();
+    sink.gauge("a", 11000, 6);
+    changeFilter.filter(sink, 0);
+    assertEquals(0, sink.size());
+    sink.clear();
+    sink.gauge("a", 18000, 6);
+    changeFilter.filter(sink, 0);
+    assertEquals(1, sink.size());
+  }
+
+  @Test
+  public void testCountersAndGauges() {
+    MetricSink sink = new MetricSink();
+    ChangeFilter changeFilter = new ChangeFilter(60000);
+    sink.counter("requests", 1000, 10).gauge("connections", 1000, 10);
+    changeFilter.filter(sink, 0);
+    sink.clear();
+    // An idle counter is suppressed like an unchanged gauge
+    sink.counter("requests", 2000, 10).gauge("connections", 2000, 10);
+    changeFilter.filter(sink, 0);
+    assertEquals(0, sink.size());
+    sink.clear();
+    // Each series is tracked on its own, whatever its type
+    sink.counter("requests", 3000, 12).gauge("connections", 3000, 10);
+    changeFilter.filter(sink, 0);
+    assertEquals(Arrays.asList("requests"), ids(sink));
+    assertTrue(sink.isCounter(0));
+    assertEquals(12, sink.valueOf(0), 0);
+    assertEquals(3, changeFilter.getSuppressed());
+  }
+
+  @Test
+  public void testPointsBeforeFromAreKept() {
+    MetricSink sink = new MetricSink();
+    ChangeFilter changeFilter = new ChangeFilter(60000);
+    sink.gauge("a", 1000, 5);
+    changeFilter.filter(sink, 0);
+    sink.clear();
+    sink.gauge("a", 2000, 5);
+    int mark = sink.size();
+    sink.gauge("a", 2000, 5).gauge("b", 2000, 1);
+    changeFilter.filter(sink, mark);
+    assertEquals(Arrays.asList("a", "b"), ids(sink));
+    assertEquals(1, changeFilter.getSuppressed());
+  }
+
+  private static List<String> ids(MetricSink sink) {
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < sink.size(); i++) {
+      ids.add(sink.idOf(i));
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.ext.hawkular.ShardingPolicy;
+import io.vertx.ext.hawkular.VertxHawkularOptions;
+import io.vertx.ext.hawkular.impl.Endpoints.Endpoint;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class EndpointsTest {
+  private static final long T = NANOSECONDS.convert(1, HOURS);
+  private static final long SECOND = NANOSECONDS.convert(1, SECONDS);
+
+  @Test
+  public void testHostAndPortParsing() {
+    Endpoints endpoints = new Endpoints(new VertxHawkularOptions()
+      .addEndpoint("hawkular1:8081")
+      .addEndpoint("hawkular2"));
+    List<Endpoint> all = endpoints.all();
+    assertEquals(2, all.size());
+    assertEquals("hawkular1", all.get(0).getHost());
+    assertEquals(8081, all.get(0).getPort());
+    assertEquals("hawkular2", all.get(1).getHost());
+    assertEquals(VertxHawkularOptions.DEFAULT_PORT, all.get(1).getPort());
+    assertEquals("hawkular2:" + VertxHawkularOptions.DEFAULT_PORT, all.get(1).getName());
+    assertTrue(endpoints.isMultiple());
+  }
+
+  @Test
+  public void testHostAndPortOptionsWithoutEndpoints() {
+    Endpoints endpoints = new Endpoints(new VertxHawkularOptions().setHost("hawkular").setPort(9090)
+      .setShardingPolicy(ShardingPolicy.METRIC_ID_HASH));
+    assertEquals(1, endpoints.all().size());
+    assertEquals("hawkular:9090", endpoints.all().get(0).getName());
+    assertFalse(endpoints.isMultiple());
+    assertFalse(endpoints.isHashSharded());
+  }
+
+  @Test
+  public void testRoundRobin() {
+    Endpoints endpoints = endpoints(ShardingPolicy.ROUND_ROBIN);
+    assertFalse(endpoints.isHashSharded());
+    List<Endpoint> all = endpoints.all();
+    assertEquals(all, Arrays.asList(endpoints.next(T), endpoints.next(T), endpoints.next(T)));
+    assertSame(all.get(0), endpoints.next(T));
+  }
+
+  @Test
+  public void testHashSharding() {
+    Endpoints endpoints = endpoints(ShardingPolicy.METRIC_ID_HASH);
+    assertTrue(endpoints.isHashSharded());
+    List<Endpoint> all = endpoints.all();
+    for (int i = 0; i < 100; i++) {
+      String id = "vertx.metric." + i;
+      Endpoint endpoint = endpoints.forId(id, T);
+      assertSame(all.get(Math.floorMod(id.hashCode(), all.size())), endpoint);
+      assertSame(endpoint, endpoints.forId(id, T));
+    }
+  }
+
+  @Test
+  public void testHashShardingAvoidsUnhealthyEndpoint() {
+    Endpoints endpoints = endpoints(ShardingPolicy.METRIC_ID_HASH);
+    List<Endpoint> all = endpoints.all();
+    String id = idSentTo(all.get(0), endpoints);
+    all.get(0).onResponse(false, T);
+    assertSame(all.get(1), endpoints.forId(id, T));
+    all.get(0).onResponse(true, T);
+    assertSame(all.get(0), endpoints.forId(id, T));
+  }
+
+  @Test
+  public void testExponentialBackoff() {
+    Endpoints endpoints = endpoints(ShardingPolicy.ROUND_ROBIN, "hawkular1:8080", "hawkular2:8080");
+    Endpoint failing = endpoints.all().get(0);
+    Endpoint other = endpoints.all().get(1);
+    long now = T;
+    for (long backoff = SECOND; backoff <= 32 * SECOND; backoff *= 2) {
+      failing.onResponse(false, now);
+      assertFalse(failing.isHealthy());
+      assertNull(endpoints.failover(other, now + backoff - 1));
+      assertSame(failing, endpoints.failover(other, now + backoff));
+      now += backoff;
+    }
+    // The backoff is capped at a minute
+    for (int i = 0; i < 20; i++) {
+      failing.onResponse(false, now);
+    }
+    assertNull(endpoints.failover(other, now + 60 * SECOND - 1));
+    assertSame(failing, endpoints.failover(other, now + 60 * SECOND));
+  }
+
+  @Test
+  public void testRecoveringEndpointIsProbedByASingleBatch() {
+    Endpoints endpoints = endpoints(ShardingPolicy.ROUND_ROBIN, "hawkular1:8080", "hawkular2:8080");
+    Endpoint recovering = endpoints.all().get(0);
+    Endpoint other = endpoints.all().get(1);
+    recovering.onResponse(false, T);
+    assertNull(endpoints.failover(other, T + SECOND / 2));
+    assertSame(recovering, endpoints.failover(other, T + SECOND));
+    // Other batches keep avoiding it until the probe response is received
+    assertNull(endpoints.failover(other, T + SECOND));
+    assertNotSame(recovering, endpoints.next(T + SECOND));
+    recovering.onResponse(true, T + SECOND);
+    assertTrue(recovering.isHealthy());
+    assertSame(recovering, endpoints.failover(other, T + SECOND));
+  }
+
+  @Test
+  public void testFailover() {
+    Endpoints endpoints = endpoints(ShardingPolicy.ROUND_ROBIN);
+    List<Endpoint> all = endpoints.all();
+    all.get(0).onResponse(false, T);
+    assertSame(all.get(1), endpoints.failover(all.get(0), T));
+    all.get(1).onResponse(false, T);
+    assertSame(all.get(2), endpoints.failover(all.get(0), T));
+    all.get(2).onResponse(false, T);
+    assertNull(endpoints.failover(all.get(0), T));
+  }
+
+  @Test
+  public void testEndpointRecoveringFirstIsUsedWhenNoneIsHealthy() {
+    Endpoints endpoints = endpoints(ShardingPolicy.ROUND_ROBIN);
+    List<Endpoint> all = endpoints.all();
+    all.get(1).onResponse(false, T);
+    all.get(2).onResponse(false, T + 1);
+    all.get(0).onResponse(false, T + 2);
+    for (int i = 0; i < all.size(); i++) {
+      assertSame(all.get(1), endpoints.next(T + 3));
+    }
+  }
+
+  private static Endpoints endpoints(ShardingPolicy shardingPolicy) {
+    return endpoints(shardingPolicy, "hawkular1:8080", "hawkular2:8080", "hawkular3:8080");
+  }
+
+  private static Endpoints endpoints(ShardingPolicy shardingPolicy, String... endpoints) {
+    return new Endpoints(new VertxHawkularOptions()
+      .setEndpoints(Arrays.asList(endpoints))
+      .setShardingPolicy(shardingPolicy));
+  }
+
+  private static String idSentTo(Endpoint endpoint, Endpoints endpoints) {
+    for (int i = 0; ; i++) {
+      String id = "vertx.metric." + i;
+      if (endpoints.forId(id, T) == endpoint) {
+        return id;
+      }
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.ext.hawkular.spi.MetricSink;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class EventBusAddressMetricsTest {
+
+  @Test
+  public void testExactAndPrefixEntries() {
+    EventBusAddressMetrics metrics = new EventBusAddressMetrics("eb.", Arrays.asList("orders", "news.*"), 10);
+    metrics.messageSent("orders", false);
+    metrics.messageSent("orders.created", false);
+    metrics.messageSent("news.sport", true);
+    metrics.messageReceived("news.sport");
+    metrics.messageWritten("news.sport", 12);
+    metrics.messageRead("news.sport", 5);
+    metrics.messageSent("other", false);
+    Map<String, Double> values = collect(metrics);
+    assertEquals(1, values.get("eb.orders.sentMessages"), 0);
+    assertEquals(0, values.get("eb.orders.publishedMessages"), 0);
+    assertEquals(1, values.get("eb.news.sport.publishedMessages"), 0);
+    assertEquals(1, values.get("eb.news.sport.receivedMessages"), 0);
+    assertEquals(12, values.get("eb.news.sport.bytesWritten"), 0);
+    assertEquals(5, values.get("eb.news.sport.bytesRead"), 0);
+    assertFalse(values.containsKey("eb.orders.created.sentMessages"));
+    assertFalse(values.containsKey("eb.other.sentMessages"));
+    assertFalse(values.containsKey("eb." + EventBusAddressMetrics.OVERFLOW + ".sentMessages"));
+  }
+
+  @Test
+  public void testReplyAddressesAreNotMatchedByPrefix() {
+    EventBusAddressMetrics metrics = new EventBusAddressMetrics("eb.", Collections.singletonList("*"), 10);
+    metrics.messageSent("12", false);
+    metrics.messageSent("1234567890", false);
+    metrics.messageSent(UUID.randomUUID().toString(), false);
+    metrics.messageSent("12a", false);
+    Map<String, Double> values = collect(metrics);
+    // Only the series of "12a"
+    assertEquals(seriesCount(), values.size());
+    assertEquals(1, values.get("eb.12a.sentMessages"), 0);
+  }
+
+  @Test
+  public void testExactEntryTracksNumericAddress() {
+    EventBusAddressMetrics metrics = new EventBusAddressMetrics("eb.", Arrays.asList("42", "ids.*"), 10);
+    metrics.messageSent("42", false);
+    metrics.messageSent("ids.7", false);
+    Map<String, Double> values = collect(metrics);
+    assertEquals(1, values.get("eb.42.sentMessages"), 0);
+    assertEquals(1, values.get("eb.ids.7.sentMessages"), 0);
+  }
+
+  @Test
+  public void testCardinalityCapCountsNewAddressesInOverflow() {
+    EventBusAddressMetrics metrics = new EventBusAddressMetrics("eb.", Collections.singletonList("a.*"), 2);
+    metrics.messageSent("a.1", false);
+    metrics.messageSent("a.2", false);
+    metrics.messageSent("a.3", false);
+    metrics.messageSent("a.4", false);
+    // Addresses seen before the cap was reached keep their series
+    metrics.messageSent("a.1", false);
+    Map<String, Double> values = collect(metrics);
+    assertEquals(3 * seriesCount(), values.size());
+    assertEquals(2, values.get("eb.a.1.sentMessages"), 0);
+    assertEquals(1, values.get("eb.a.2.sentMessages"), 0);
+    assertEquals(2, values.get("eb." + EventBusAddressMetrics.OVERFLOW + ".sentMessages"), 0);
+    assertFalse(values.containsKey("eb.a.3.sentMessages"));
+  }
+
+  @Test
+  public void testReplyFailuresAreCountedByType() {
+    EventBusAddressMetrics metrics = new EventBusAddressMetrics("eb.", Collections.singletonList("svc"), 10);
+    metrics.replyFailure("svc", ReplyFailure.TIMEOUT);
+    metrics.replyFailure("svc", ReplyFailure.TIMEOUT);
+    metrics.replyFailure("svc", ReplyFailure.NO_HANDLERS);
+    Map<String, Double> values = collect(metrics);
+    assertEquals(2, values.get("eb.svc.replyFailures.TIMEOUT"), 0);
+    assertEquals(1, values.get("eb.svc.replyFailures.NO_HANDLERS"), 0);
+    assertEquals(0, values.get("eb.svc.replyFailures.RECIPIENT_FAILURE"), 0);
+  }
+
+  private static int seriesCount() {
+    return 5 + ReplyFailure.values().length;
+  }
+
+  private static Map<String, Double> collect(EventBusAddressMetrics metrics) {
+    MetricSink sink = new MetricSink();
+    metrics.collect(sink, 1000);
+    Map<String, Double> values = new HashMap<>();
+    for (int i = 0; i < sink.size(); i++) {
+      assertTrue(sink.isCounter(i));
+      values.put(sink.idOf(i), sink.valueOf(i));
+    }
+    return values;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.core.Vertx;
+import io.vertx.ext.hawkular.VertxHawkularOptions;
+import io.vertx.ext.hawkular.spi.MetricSink;
+import io.vertx.ext.hawkular.spi.MetricsExporter;
+import org.hawkular.metrics.client.common.SingleMetric;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class EventBusMetricsImplTest {
+  private static final String BASE_NAME = "vertx.eventbus.";
+
+  private Vertx vertx;
+  private EventBusMetricsImpl metrics;
+
+  @Before
+  public void setUp() {
+    vertx = Vertx.vertx();
+    // Collections are triggered by the test only
+    VertxHawkularOptions options = new VertxHawkularOptions()
+      .setSchedule(3600)
+      .setEventBusLatencyHistogramsEnabled(true)
+      .setLatencyPercentiles(Arrays.asList(50.0, 99.0));
+    Scheduler scheduler = new Scheduler(vertx, options, vertx.getOrCreateContext(), new MetricsExporter() {
+      @Override
+      public void handle(List<SingleMetric> metrics) {
+      }
+
+      @Override
+      public void stop() {
+      }
+    });
+    metrics = new EventBusMetricsImpl(options, scheduler);
+  }
+
+  @After
+  public void tearDown() {
+    vertx.close();
+  }
+
+  @Test
+  public void testHandlersOfAnAddressShareTheirHistogram() {
+    EventBusHandlerMetrics first = metrics.handlerRegistered("orders", false);
+    EventBusHandlerMetrics second = metrics.handlerRegistered("orders", false);
+    handle(first);
+    handle(second);
+    handle(second);
+    Map<String, Double> values = collect(new MetricSink());
+    assertEquals(2, values.get(BASE_NAME + "handlers"), 0);
+    assertEquals(3, values.get(BASE_NAME + "orders.handledMessages"), 0);
+    assertTrue(values.containsKey(BASE_NAME + "orders.processingTime"));
+    assertTrue(values.containsKey(BASE_NAME + "orders.latency.min"));
+    assertTrue(values.containsKey(BASE_NAME + "orders.latency.max"));
+    assertTrue(values.containsKey(BASE_NAME + "orders.latency.p50"));
+    assertTrue(values.containsKey(BASE_NAME + "orders.latency.p99"));
+    // The histogram is drained at each collection: nothing handled, no distribution
+    values = collect(new MetricSink());
+    assertTrue(values.containsKey(BASE_NAME + "orders.processingTime"));
+    assertFalse(values.containsKey(BASE_NAME + "orders.handledMessages"));
+    assertFalse(values.containsKey(BASE_NAME + "orders.latency.p50"));
+  }
+
+  @Test
+  public void testReplyHandlersHaveNoHistogram() {
+    EventBusHandlerMetrics reply = metrics.handlerRegistered("42", true);
+    handle(reply);
+    Map<String, Double> values = collect(new MetricSink());
+    assertTrue(values.containsKey(BASE_NAME + "42.processingTime"));
+    assertFalse(values.containsKey(BASE_NAME + "42.handledMessages"));
+    assertFalse(values.containsKey(BASE_NAME + "42.latency.p50"));
+  }
+
+  @Test
+  public void testIdsAreReleasedAfterLastHandlerIsUnregistered() {
+    MetricSink sink = new MetricSink();
+    List<String> released = new ArrayList<>();
+    sink.addReleaseListener(handle -> released.add(sink.id(handle)));
+    EventBusHandlerMetrics first = metrics.handlerRegistered("orders", false);
+    handle(first);
+    collect(sink);
+    // Ids are built at the first collection, and carried over when handlers are added or removed
+    EventBusHandlerMetrics second = metrics.handlerRegistered("orders", false);
+    metrics.handlerUnregistered(first);
+    collect(sink);
+    assertTrue(released.isEmpty());
+    metrics.handlerUnregistered(second);
+    Map<String, Double> values = collect(sink);
+    assertFalse(values.containsKey(BASE_NAME + "orders.processingTime"));
+    assertTrue(released.contains(BASE_NAME + "orders.processingTime"));
+    assertTrue(released.contains(BASE_NAME + "orders.handledMessages"));
+    assertTrue(released.contains(BASE_NAME + "orders.latency.min"));
+    assertTrue(released.contains(BASE_NAME + "orders.latency.max"));
+    assertTrue(released.contains(BASE_NAME + "orders.latency.p50"));
+    assertTrue(released.contains(BASE_NAME + "orders.latency.p99"));
+    assertEquals(0, values.get(BASE_NAME + "handlers"), 0);
+  }
+
+  private void handle(EventBusHandlerMetrics handlerMetrics) {
+    metrics.beginHandleMessage(handlerMetrics, true);
+    metrics.endHandleMessage(handlerMetrics, null);
+  }
+
+  private Map<String, Double> collect(MetricSink sink) {
+    sink.clear();
+    metrics.collect(sink);
+    Map<String, Double> values = new HashMap<>();
+    for (int i = 0; i < sink.size(); i++) {
+      values.put(sink.idOf(i), sink.valueOf(i));
+    }
+    return values;
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class GzipCompressorTest {
+
+  private final GzipCompressor compressor = new GzipCompressor();
+
+  @After
+  public void tearDown() {
+    compressor.close();
+  }
+
+  @Test
+  public void testConsecutiveCompressionsRoundTrip() throws Exception {
+    Random random = new Random(42);
+    // The deflater is reused: empty, small, repetitive and incompressible payloads, bigger than the initial buffer
+    byte[][] payloads = {
+      new byte[0],
+      bytes("{\"gauges\":[]}"),
+      bytes(repeat("{\"id\":\"vertx.http.server.requests\",\"data\":[{\"timestamp\":1000,\"value\":1.0}]},", 2000)),
+      randomBytes(random, 100000),
+      bytes("{\"counters\":[]}")
+    };
+    for (byte[] payload : payloads) {
+      ByteBuf buf = Unpooled.wrappedBuffer(payload);
+      Buffer compressed = compressor.compress(buf);
+      assertEquals(0, buf.readerIndex());
+      assertEquals(payload.length, buf.writerIndex());
+      assertArrayEquals(payload, gunzip(compressed));
+    }
+  }
+
+  @Test
+  public void testReadableBytesOnlyAreCompressed() throws Exception {
+    byte[] payload = bytes("{\"gauges\":[]}");
+    ByteBuf heap = Unpooled.buffer().writeBytes(bytes("skip")).writeBytes(payload);
+    heap.readerIndex(4);
+    assertArrayEquals(payload, gunzip(compressor.compress(heap)));
+    assertEquals(4, heap.readerIndex());
+    // A slice has an array offset
+    ByteBuf slice = Unpooled.wrappedBuffer(bytes("skip" + "{\"gauges\":[]}" + "tail")).slice(4, payload.length);
+    assertArrayEquals(payload, gunzip(compressor.compress(slice)));
+    ByteBuf direct = Unpooled.directBuffer().writeBytes(payload);
+    try {
+      assertArrayEquals(payload, gunzip(compressor.compress(direct)));
+    } finally {
+      direct.release();
+    }
+  }
+
+  @Test
+  public void testHeaderAndTrailer() throws Exception {
+    byte[] payload = bytes(repeat("vertx", 100));
+    byte[] compressed = compressor.compress(Unpooled.wrappedBuffer(payload)).getBytes();
+    assertEquals(0x1f, compressed[0] & 0xff);
+    assertEquals(0x8b, compressed[1] & 0xff);
+    // Uncompressed length, little endian
+    int length = (compressed[compressed.length - 4] & 0xff)
+      | (compressed[compressed.length - 3] & 0xff) << 8
+      | (compressed[compressed.length - 2] & 0xff) << 16
+      | (compressed[compressed.length - 1] & 0xff) << 24;
+    assertEquals(payload.length, length);
+    assertTrue(compressed.length < payload.length);
+  }
+
+  // GZIPInputStream checks the CRC and length of the trailer
+  private static byte[] gunzip(Buffer compressed) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.getBytes()))) {
+      byte[] chunk = new byte[4096];
+      for (int read; (read = in.read(chunk)) >= 0; ) {
+        out.write(chunk, 0, read);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String repeat(String s, int count) {
+    StringBuilder sb = new StringBuilder(s.length() * count);
+    for (int i = 0; i < count; i++) {
+      sb.append(s);
+    }
+    return sb.toString();
+  }
+
+  private static byte[] randomBytes(Random random, int length) {
+    byte[] bytes = new byte[length];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+}
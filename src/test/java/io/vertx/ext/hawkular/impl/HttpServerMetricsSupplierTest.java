@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import org.junit.Test;
+
+import static io.vertx.ext.hawkular.impl.HttpServerMetricsSupplier.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class HttpServerMetricsSupplierTest {
+
+  @Test
+  public void testRouteIdSegmentHasNoPathSeparatorNorBrace() {
+    assertEquals("GET.users.:id", routeIdSegment("GET./users/:id"));
+    assertEquals("GET.users.:id", routeIdSegment("GET./users/{id}"));
+    assertEquals("POST.users.:id.orders", routeIdSegment("POST./users/{id}/orders/"));
+    assertEquals("GET.files.*", routeIdSegment("GET./files/*"));
+    assertEquals("GET", routeIdSegment("GET./"));
+  }
+
+  @Test
+  public void testSpecialRouteNamesAreKept() {
+    assertEquals("GET._unmatched", routeIdSegment("GET._unmatched"));
+    assertEquals("_overflow", routeIdSegment("_overflow"));
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.ext.hawkular.spi.MetricSink;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static io.vertx.ext.hawkular.impl.LatencyHistogram.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class LatencyHistogramTest {
+
+  private static final int[] LAYOUTS = {DEFAULT_SUB_BUCKET_BITS, 3};
+
+  @Test
+  public void testBucketCount() {
+    assertEquals(1024, bucketCount(DEFAULT_SUB_BUCKET_BITS));
+    assertEquals(272, bucketCount(3));
+  }
+
+  @Test
+  public void testSmallValuesHaveTheirOwnBucket() {
+    for (int bits : LAYOUTS) {
+      for (int micros = 0; micros < 1 << bits; micros++) {
+        assertEquals(micros, bucketOf(micros, bits));
+        assertEquals(micros, lowestValueOf(micros, bits));
+        assertEquals(1, widthOf(micros, bits));
+      }
+    }
+  }
+
+  @Test
+  public void testBucketsAreContiguous() {
+    for (int bits : LAYOUTS) {
+      int bucketCount = bucketCount(bits);
+      for (int bucket = 0; bucket < bucketCount - 1; bucket++) {
+        assertEquals(bucket, bucketOf(lowestValueOf(bucket, bits), bits));
+        long next = lowestValueOf(bucket, bits) + widthOf(bucket, bits);
+        assertEquals(bucket, bucketOf(next - 1, bits));
+        assertEquals(bucket + 1, bucketOf(next, bits));
+      }
+      assertEquals(bucketCount - 1, bucketOf(MAX_VALUE, bits));
+    }
+  }
+
+  @Test
+  public void testRelativeError() {
+    Random random = new Random(42);
+    for (int bits : LAYOUTS) {
+      long subBucketCount = 1 << bits;
+      for (int i = 0; i < 100000; i++) {
+        long micros = subBucketCount + (random.nextLong() >>> 1) % (MAX_VALUE - subBucketCount);
+        int bucket = bucketOf(micros, bits);
+        long lowest = lowestValueOf(bucket, bits);
+        assertTrue(micros >= lowest);
+        assertTrue(micros < lowest + widthOf(bucket, bits));
+        assertTrue((double) widthOf(bucket, bits) / lowest <= 1d / subBucketCount);
+      }
+    }
+  }
+
+  @Test
+  public void testCompactLayoutPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram(3);
+    for (int micros = 1; micros <= 1000; micros++) {
+      histogram.record(micros * 1000L);
+    }
+    Snapshot snapshot = new Snapshot(3);
+    histogram.drainTo(snapshot);
+    assertEquals(500, snapshot.valueAt(50), 500 / 8d);
+    assertEquals(990, snapshot.valueAt(99), 990 / 8d);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSnapshotLayoutMustMatch() {
+    new LatencyHistogram(3).drainTo(new Snapshot());
+  }
+
+  @Test
+  public void testMinMaxAndPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int micros = 1000; micros >= 1; micros--) {
+      histogram.record(micros * 1000L);
+    }
+    Snapshot snapshot = new Snapshot();
+    histogram.drainTo(snapshot);
+    assertEquals(1000, snapshot.getTotal());
+    assertEquals(1, snapshot.getMin());
+    assertEquals(1000, snapshot.getMax());
+    assertEquals(500, snapshot.valueAt(50), 500 / 32d);
+    assertEquals(990, snapshot.valueAt(99), 990 / 32d);
+    assertEquals(1000, snapshot.valueAt(100));
+    assertEquals(1, snapshot.valueAt(0));
+  }
+
+  @Test
+  public void testPercentilesAreWithinObservedBounds() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(100_000_000);
+    Snapshot snapshot = new Snapshot();
+    histogram.drainTo(snapshot);
+    assertEquals(100_000, snapshot.valueAt(50));
+    assertEquals(100_000, snapshot.valueAt(99.9));
+  }
+
+  @Test
+  public void testOutOfRangeValuesAreClamped() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+    Snapshot snapshot = new Snapshot();
+    histogram.drainTo(snapshot);
+    assertEquals(2, snapshot.getTotal());
+    assertEquals(0, snapshot.getMin());
+    assertEquals(MAX_VALUE, snapshot.getMax());
+  }
+
+  @Test
+  public void testEmptySnapshot() {
+    Snapshot snapshot = new Snapshot();
+    new LatencyHistogram().drainTo(snapshot);
+    assertTrue(snapshot.isEmpty());
+    assertEquals(0, snapshot.valueAt(99));
+  }
+
+  @Test
+  public void testDrainEmptiesHistogram() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(5000);
+    Snapshot snapshot = new Snapshot();
+    histogram.drainTo(snapshot);
+    assertEquals(1, snapshot.getTotal());
+    snapshot.reset();
+    histogram.drainTo(snapshot);
+    assertTrue(snapshot.isEmpty());
+    assertEquals(Long.MAX_VALUE, snapshot.getMin());
+    assertEquals(Long.MIN_VALUE, snapshot.getMax());
+    histogram.record(7000);
+    histogram.drainTo(snapshot);
+    assertEquals(7, snapshot.getMin());
+    assertEquals(7, snapshot.getMax());
+  }
+
+  @Test
+  public void testDrainMergesHistograms() {
+    LatencyHistogram first = new LatencyHistogram();
+    LatencyHistogram second = new LatencyHistogram();
+    first.record(10_000);
+    second.record(20_000);
+    second.record(30_000);
+    Snapshot snapshot = new Snapshot();
+    first.drainTo(snapshot);
+    second.drainTo(snapshot);
+    assertEquals(3, snapshot.getTotal());
+    assertEquals(10, snapshot.getMin());
+    assertEquals(30, snapshot.getMax());
+    assertEquals(20, snapshot.valueAt(50), 1);
+  }
+
+  @Test
+  public void testWriteSendsMillisecondsAndResets() {
+    double[] percentiles = {50, 99.9};
+    String[] names = metricNames(percentiles);
+    assertArrayEquals(new String[]{"latency.min", "latency.max", "latency.p50", "latency.p999"}, names);
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(2_000_000);
+    histogram.record(4_000_000);
+    Snapshot snapshot = new Snapshot();
+    histogram.drainTo(snapshot);
+    MetricSink sink = new MetricSink();
+    snapshot.write(sink, 1000, names, 0, percentiles);
+    assertEquals(4, sink.size());
+    assertEquals("latency.min", sink.idOf(0));
+    assertEquals(2, sink.valueOf(0), 0);
+    assertEquals("latency.max", sink.idOf(1));
+    assertEquals(4, sink.valueOf(1), 0);
+    assertEquals(2, sink.valueOf(2), 2 / 32d);
+    assertEquals(4, sink.valueOf(3), 4 / 32d);
+    assertFalse(sink.isCounter(3));
+    assertTrue(snapshot.isEmpty());
+  }
+}
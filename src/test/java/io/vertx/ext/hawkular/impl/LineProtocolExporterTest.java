@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.ext.hawkular.VertxHawkularOptions;
+import io.vertx.ext.hawkular.impl.LineProtocolExporter.Format;
+import org.hawkular.metrics.client.common.SingleMetric;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.*;
+import static org.hawkular.metrics.client.common.MetricType.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class LineProtocolExporterTest {
+
+  private Vertx vertx;
+  private Context context;
+  private DatagramSocket receiver;
+  private LineProtocolExporter exporter;
+
+  @Before
+  public void setUp() throws Exception {
+    vertx = Vertx.vertx();
+    context = vertx.getOrCreateContext();
+    receiver = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+    receiver.setSoTimeout((int) MILLISECONDS.convert(10, SECONDS));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (exporter != null) {
+      exporter.stop();
+    }
+    receiver.close();
+    vertx.close();
+  }
+
+  @Test
+  public void testStatsdLines() throws Exception {
+    createExporter(Format.STATSD, 1432);
+    send(
+      new SingleMetric("vertx.pool.size", 1000, 12d, GAUGE),
+      new SingleMetric("http requests:a|b@c", 1000, 3.5, COUNTER),
+      new SingleMetric("nan", 1000, Double.NaN, GAUGE),
+      new SingleMetric("caf\u00e9", 1000, 1d, GAUGE)
+    );
+    assertEquals("vertx.pool.size:12|g\nhttp_requests_a_b_c:3.5|g\ncaf_:1|g\n", receive());
+  }
+
+  @Test
+  public void testStatsdNegativeGaugeIsResetFirst() throws Exception {
+    createExporter(Format.STATSD, 1432);
+    send(new SingleMetric("delta", 1000, -2d, GAUGE));
+    // A signed value would otherwise be applied as a delta to the current value
+    assertEquals("delta:0|g\ndelta:-2|g\n", receive());
+  }
+
+  @Test
+  public void testInfluxLines() throws Exception {
+    createExporter(Format.INFLUX, 1432);
+    send(
+      new SingleMetric("vertx.pool.size", 1234, 12d, GAUGE),
+      new SingleMetric("a b,c=d", 1, 0.5, COUNTER),
+      new SingleMetric("caf\u00e9\n", 2, -1d, GAUGE)
+    );
+    // Timestamps are sent in nanoseconds
+    assertEquals("vertx.pool.size value=12 1234000000\n"
+      + "a\\ b\\,c=d value=0.5 1000000\n"
+      + "caf__ value=-1 2000000\n", receive());
+  }
+
+  @Test
+  public void testLinesArePackedIntoDatagrams() throws Exception {
+    // Each line is 13 bytes long: 3 lines per datagram
+    createExporter(Format.STATSD, 40);
+    List<SingleMetric> metrics = new ArrayList<>();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 10; i++) {
+      metrics.add(new SingleMetric("metric." + i, 1000, (double) i, GAUGE));
+      expected.append("metric.").append(i).append(':').append(i).append("|g\n");
+    }
+    send(metrics.toArray(new SingleMetric[metrics.size()]));
+    StringBuilder received = new StringBuilder();
+    for (int i = 0; i < 3; i++) {
+      String datagram = receive();
+      assertEquals(39, datagram.length());
+      received.append(datagram);
+    }
+    // The last one is sent at the end of the cycle
+    received.append(receive());
+    assertEquals(expected.toString(), received.toString());
+  }
+
+  @Test
+  public void testLineBiggerThanPacketIsSentAlone() throws Exception {
+    createExporter(Format.STATSD, 10);
+    send(new SingleMetric("a", 1000, 1d, GAUGE), new SingleMetric("a.longer.name", 1000, 2d, GAUGE));
+    assertEquals("a:1|g\n", receive());
+    assertEquals("a.longer.name:2|g\n", receive());
+  }
+
+  @Test
+  public void testStopBeforeSocketIsCreated() throws Exception {
+    // Hold the context, so that the exporter is stopped before its socket is created
+    CountDownLatch latch = new CountDownLatch(1);
+    context.runOnContext(v -> {
+      try {
+        latch.await(10, SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    LineProtocolExporter stopped = new LineProtocolExporter(vertx, options(1432), context, Format.STATSD);
+    stopped.stop();
+    latch.countDown();
+    // Metrics handed over after stop are ignored
+    onContext(() -> {
+      stopped.handle(Arrays.asList(new SingleMetric("a", 1000, 1d, GAUGE)));
+      stopped.flush();
+      return null;
+    });
+  }
+
+  private VertxHawkularOptions options(int maxPacketSize) {
+    return new VertxHawkularOptions()
+      .setUdpHost("127.0.0.1")
+      .setUdpPort(receiver.getLocalPort())
+      .setUdpMaxPacketSize(maxPacketSize);
+  }
+
+  private void createExporter(Format format, int maxPacketSize) {
+    exporter = new LineProtocolExporter(vertx, options(maxPacketSize), context, format);
+  }
+
+  private void send(SingleMetric... metrics) throws Exception {
+    onContext(() -> {
+      exporter.handle(Arrays.asList(metrics));
+      exporter.flush();
+      return null;
+    });
+  }
+
+  private String receive() throws Exception {
+    byte[] bytes = new byte[2048];
+    DatagramPacket packet = new DatagramPacket(bytes, bytes.length);
+    receiver.receive(packet);
+    return new String(bytes, 0, packet.getLength(), StandardCharsets.US_ASCII);
+  }
+
+  private <T> T onContext(Supplier<T> action) throws Exception {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    context.runOnContext(v -> {
+      try {
+        future.complete(action.get());
+      } catch (Throwable t) {
+        future.completeExceptionally(t);
+      }
+    });
+    return future.get(10, SECONDS);
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.core.net.SocketAddress;
+import io.vertx.core.net.impl.SocketAddressImpl;
+import io.vertx.ext.hawkular.spi.MetricSink;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class MetricSinkTest {
+
+  @Test
+  public void testIdleIdsAreReleasedAndHandlesRecycled() {
+    MetricSink sink = new MetricSink();
+    int live = sink.handle("live");
+    int idle = sink.handle("idle");
+    for (int cycle = 0; cycle < 2; cycle++) {
+      sink.clear();
+      sink.gauge("live", cycle, cycle);
+      assertEquals(0, sink.releaseIdle(3));
+    }
+    sink.clear();
+    assertEquals(1, sink.releaseIdle(3));
+    assertEquals(1, sink.idCount());
+    assertEquals(live, sink.handle("live"));
+    assertEquals(idle, sink.handle("other"));
+    assertEquals("other", sink.id(idle));
+  }
+
+  @Test
+  public void testIdCountIsBoundedWithTransientIds() {
+    MetricSink sink = new MetricSink(1);
+    for (int cycle = 0; cycle < 1000; cycle++) {
+      sink.clear();
+      sink.releaseIdle(2);
+      sink.gauge("reply." + cycle + ".processingTime", cycle, 1);
+    }
+    assertEquals(2, sink.idCount());
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(sink.handle("check" + i) < 1000 + 3);
+    }
+  }
+
+  @Test
+  public void testExplicitRelease() {
+    MetricSink sink = new MetricSink();
+    int[] released = {-1};
+    sink.addReleaseListener(handle -> released[0] = handle);
+    int handle = sink.handle("a");
+    assertFalse(sink.release("b"));
+    assertTrue(sink.release("a"));
+    assertEquals(handle, released[0]);
+    assertEquals(0, sink.idCount());
+    assertNull(sink.id(handle));
+  }
+
+  @Test
+  public void testChangeFilterSlotIsResetOnRelease() {
+    MetricSink sink = new MetricSink();
+    ChangeFilter changeFilter = new ChangeFilter(60000);
+    sink.addReleaseListener(changeFilter::release);
+    sink.gauge("a", 1000, 5);
+    changeFilter.filter(sink, 0);
+    assertEquals(1, sink.size());
+    sink.release("a");
+    sink.clear();
+    // Recycled handle, same value: must not be suppressed
+    sink.gauge("b", 2000, 5);
+    changeFilter.filter(sink, 0);
+    assertEquals(1, sink.size());
+    assertEquals(0, changeFilter.getSuppressed());
+  }
+
+  @Test
+  public void testRateCalculatorSlotIsResetOnRelease() {
+    MetricSink sink = new MetricSink();
+    RateCalculator rateCalculator = new RateCalculator();
+    sink.addReleaseListener(handle -> rateCalculator.release(sink, handle));
+    sink.counter("a", 1000, 10);
+    rateCalculator.addRates(sink, 0);
+    sink.clear();
+    sink.counter("a", 2000, 20);
+    rateCalculator.addRates(sink, 0);
+    assertEquals(2, sink.size());
+    assertEquals("a.rate", sink.idOf(1));
+    assertEquals(10, sink.valueOf(1), 0);
+    assertTrue(sink.release("a"));
+    // The rate gauge is released with its counter
+    assertEquals(0, sink.idCount());
+    sink.clear();
+    // Recycled handle: the previous baseline must not be used
+    sink.counter("b", 3000, 100);
+    rateCalculator.addRates(sink, 0);
+    assertEquals(1, sink.size());
+    sink.clear();
+    sink.counter("b", 4000, 110);
+    rateCalculator.addRates(sink, 0);
+    assertEquals(2, sink.size());
+    assertEquals("b.rate", sink.idOf(1));
+    assertEquals(10, sink.valueOf(1), 0);
+  }
+
+  @Test
+  public void testIdleRateGaugeIsReinterned() {
+    MetricSink sink = new MetricSink();
+    RateCalculator rateCalculator = new RateCalculator();
+    sink.addReleaseListener(handle -> rateCalculator.release(sink, handle));
+    double[] values = {10, 20, 5, 4, 3, 13};
+    for (int cycle = 0; cycle < values.length; cycle++) {
+      sink.clear();
+      sink.releaseIdle(2);
+      sink.counter("a", 1000 * (cycle + 1), values[cycle]);
+      rateCalculator.addRates(sink, 0);
+    }
+    // The rate gauge was idle while the counter decreased, it was released and interned again
+    assertEquals(2, sink.size());
+    assertEquals("a.rate", sink.idOf(1));
+    assertEquals(10, sink.valueOf(1), 0);
+  }
+
+  @Test
+  public void testInvalidatedAddressIdsClearRateBaseline() {
+    MetricSink sink = new MetricSink();
+    RateCalculator rateCalculator = new RateCalculator();
+    sink.addReleaseListener(handle -> rateCalculator.release(sink, handle));
+    AddressMetricIds ids = new AddressMetricIds("base.", "bytesSent");
+    SocketAddress address = new SocketAddressImpl(8080, "localhost");
+    sink.counter(ids.id(address, 0), 1000, 100);
+    rateCalculator.addRates(sink, 0);
+    // Metrics closed and registered again, the new value is already past the old baseline
+    ids.invalidate(address);
+    sink.clear();
+    ids.release(sink);
+    sink.counter(ids.id(address, 0), 2000, 150);
+    rateCalculator.addRates(sink, 0);
+    assertEquals(1, sink.size());
+    sink.clear();
+    ids.release(sink);
+    sink.counter(ids.id(address, 0), 3000, 160);
+    rateCalculator.addRates(sink, 0);
+    assertEquals(2, sink.size());
+    assertEquals("base.localhost:8080.bytesSent.rate", sink.idOf(1));
+    assertEquals(10, sink.valueOf(1), 0);
+  }
+
+  @Test
+  public void testInvalidationKeepsOtherAddressIds() {
+    MetricSink sink = new MetricSink();
+    RateCalculator rateCalculator = new RateCalculator();
+    sink.addReleaseListener(handle -> rateCalculator.release(sink, handle));
+    AddressMetricIds ids = new AddressMetricIds("base.", "bytesSent");
+    SocketAddress closed = new SocketAddressImpl(8080, "localhost");
+    SocketAddress other = new SocketAddressImpl(8081, "localhost");
+    sink.counter(ids.id(closed, 0), 1000, 100);
+    sink.counter(ids.id(other, 0), 1000, 100);
+    rateCalculator.addRates(sink, 0);
+    String otherId = ids.id(other, 0);
+    ids.invalidate(closed);
+    sink.clear();
+    ids.release(sink);
+    assertEquals(1, sink.idCount());
+    // The id of the other address is still cached and its rate baseline kept
+    assertSame(otherId, ids.id(other, 0));
+    sink.counter(ids.id(other, 0), 2000, 110);
+    rateCalculator.addRates(sink, 0);
+    assertEquals(2, sink.size());
+    assertEquals("base.localhost:8081.bytesSent.rate", sink.idOf(1));
+    assertEquals(10, sink.valueOf(1), 0);
+  }
+}
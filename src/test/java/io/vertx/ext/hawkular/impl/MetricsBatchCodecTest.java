@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.hawkular.MetricsBatch;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class MetricsBatchCodecTest {
+
+  private final MetricsBatchCodec codec = new MetricsBatchCodec();
+
+  @Test
+  public void testRoundTrip() {
+    MetricsBatch batch = new MetricsBatch()
+      .counter("orders", 1000, 12)
+      .gauge("cache.size", 1001, -3.5)
+      .gauge("caf\u00e9", Long.MAX_VALUE, Double.MAX_VALUE);
+    MetricsBatch decoded = roundTrip(batch);
+    assertEquals(3, decoded.size());
+    assertEquals(3, decoded.idCount());
+    assertPoint(decoded, 0, "orders", 1000, 12, true);
+    assertPoint(decoded, 1, "cache.size", 1001, -3.5, false);
+    assertPoint(decoded, 2, "caf\u00e9", Long.MAX_VALUE, Double.MAX_VALUE, false);
+  }
+
+  @Test
+  public void testRepeatedIdsAreWrittenOnce() {
+    MetricsBatch batch = new MetricsBatch(1);
+    for (int i = 0; i < 10; i++) {
+      batch.counter("orders", i, i).gauge("queue", i, -i);
+    }
+    Buffer buffer = Buffer.buffer();
+    codec.encodeToWire(buffer, batch);
+    // Id count, two ids, point count, and the points
+    assertEquals(4 + (4 + 6) + (4 + 5) + 4 + 20 * 21, buffer.length());
+    MetricsBatch decoded = codec.decodeFromWire(0, buffer);
+    assertEquals(20, decoded.size());
+    assertEquals(2, decoded.idCount());
+    for (int i = 0; i < 10; i++) {
+      assertPoint(decoded, 2 * i, "orders", i, i, true);
+      assertPoint(decoded, 2 * i + 1, "queue", i, -i, false);
+    }
+    assertSame(decoded.idOf(0), decoded.idOf(18));
+  }
+
+  @Test
+  public void testEmptyBatch() {
+    MetricsBatch decoded = roundTrip(new MetricsBatch());
+    assertEquals(0, decoded.size());
+    assertEquals(0, decoded.idCount());
+  }
+
+  @Test
+  public void testDecodedIdsAreInterned() {
+    MetricsBatch first = roundTrip(new MetricsBatch().gauge("cache.size", 1, 1));
+    MetricsBatch second = roundTrip(new MetricsBatch().gauge("cache.size", 2, 2));
+    assertSame(first.idOf(0), second.idOf(0));
+  }
+
+  @Test
+  public void testInternedIdsAreBounded() {
+    MetricsBatch batch = new MetricsBatch(MetricsBatchCodec.MAX_INTERNED_IDS);
+    for (int i = 0; i < MetricsBatchCodec.MAX_INTERNED_IDS; i++) {
+      batch.gauge("metric." + i, i, i);
+    }
+    MetricsBatch decoded = roundTrip(batch);
+    // Ids seen before the limit was reached are still interned, new ones are not
+    assertSame(decoded.idOf(0), roundTrip(new MetricsBatch().gauge("metric.0", 1, 1)).idOf(0));
+    String late = roundTrip(new MetricsBatch().gauge("late", 1, 1)).idOf(0);
+    String again = roundTrip(new MetricsBatch().gauge("late", 2, 2)).idOf(0);
+    assertEquals(late, again);
+    assertNotSame(late, again);
+  }
+
+  private MetricsBatch roundTrip(MetricsBatch batch) {
+    Buffer buffer = Buffer.buffer().appendString("header");
+    codec.encodeToWire(buffer, batch);
+    return codec.decodeFromWire("header".length(), buffer);
+  }
+
+  private static void assertPoint(MetricsBatch batch, int point, String id, long timestamp, double value,
+                                  boolean counter) {
+    assertEquals(id, batch.idOf(point));
+    assertEquals(timestamp, batch.timestampOf(point));
+    assertEquals(value, batch.valueOf(point), 0);
+    assertEquals(counter, batch.isCounter(point));
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.ext.hawkular.OverflowPolicy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static io.vertx.ext.hawkular.spi.MetricSink.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class MetricsQueueTest {
+
+  @Test
+  public void testDropOldest() {
+    MetricsQueue queue = new MetricsQueue(3, 0, OverflowPolicy.DROP_OLDEST);
+    queue.addAll(points("a", 1, "b", 1));
+    queue.addAll(points("c", 1, "d", 1, "e", 1));
+    assertEquals(2, queue.getDropped());
+    assertIds(queue, "c", "d", "e");
+  }
+
+  @Test
+  public void testDropNewest() {
+    MetricsQueue queue = new MetricsQueue(3, 0, OverflowPolicy.DROP_NEWEST);
+    queue.addAll(points("a", 1, "b", 1));
+    queue.addAll(points("c", 1, "d", 1, "e", 1));
+    assertEquals(2, queue.getDropped());
+    assertIds(queue, "a", "b", "c");
+  }
+
+  @Test
+  public void testCoalesceKeepsLatestValues() {
+    MetricsQueue queue = new MetricsQueue(3, 0, OverflowPolicy.COALESCE);
+    queue.addAll(points("a", 1, "b", 1, "a", 2));
+    queue.addAll(points("b", 2, "a", 3));
+    assertEquals(3, queue.getDropped());
+    Points batch = drain(queue);
+    assertEquals(2, batch.size());
+    assertEquals("b", batch.id(0));
+    assertEquals(2, batch.value(0), 0);
+    assertEquals("a", batch.id(1));
+    assertEquals(3, batch.value(1), 0);
+  }
+
+  @Test
+  public void testCoalesceDropsOldestWhenIdsAreDistinct() {
+    MetricsQueue queue = new MetricsQueue(1000, 0, OverflowPolicy.COALESCE);
+    for (int cycle = 0; cycle < 100; cycle++) {
+      Points points = new Points();
+      for (int i = 0; i < 1000; i++) {
+        points.add("cycle" + cycle + ".metric" + i, cycle, i, GAUGE);
+      }
+      queue.addAll(points);
+      assertEquals(1000, queue.size());
+    }
+    assertEquals(99 * 1000, queue.getDropped());
+    assertEquals("cycle99.metric0", drain(queue).id(0));
+  }
+
+  @Test
+  public void testInFlightMetricsCountTowardsCapacity() {
+    MetricsQueue queue = new MetricsQueue(3, 0, OverflowPolicy.DROP_OLDEST);
+    queue.addAll(points("a", 1, "b", 1));
+    Points batch = new Points();
+    long bytes = queue.drainTo(batch, 2, Long.MAX_VALUE);
+    queue.addAll(points("c", 1, "d", 1));
+    assertEquals(1, queue.getDropped());
+    assertIds(queue, "d");
+    queue.release(batch.size(), bytes);
+    queue.addAll(points("e", 1, "f", 1));
+    assertEquals(1, queue.getDropped());
+  }
+
+  @Test
+  public void testHasRoomForChecksSizeAndBytes() {
+    long pointBytes = MixedDataEncoder.maxEncodedSize("a");
+    MetricsQueue queue = new MetricsQueue(1000, 3 * pointBytes, OverflowPolicy.DROP_OLDEST);
+    queue.addAll(points("a", 1, "b", 1));
+    assertTrue(queue.hasRoomFor(points("c", 1)));
+    assertFalse(queue.hasRoomFor(points("c", 1, "d", 1)));
+    Points batch = new Points();
+    long bytes = queue.drainTo(batch, 2, Long.MAX_VALUE);
+    // Metrics in flight still use their share of the capacity
+    assertFalse(queue.hasRoomFor(points("c", 1, "d", 1)));
+    queue.release(batch.size(), bytes);
+    assertTrue(queue.hasRoomFor(points("c", 1, "d", 1)));
+    assertFalse(new MetricsQueue(1, 0, OverflowPolicy.DROP_OLDEST).hasRoomFor(points("a", 1, "b", 1)));
+  }
+
+  private static Points points(Object... idsAndValues) {
+    Points res = new Points();
+    for (int i = 0; i < idsAndValues.length; i += 2) {
+      res.add((String) idsAndValues[i], i, ((Number) idsAndValues[i + 1]).doubleValue(), GAUGE);
+    }
+    return res;
+  }
+
+  private static Points drain(MetricsQueue queue) {
+    Points batch = new Points();
+    queue.drainTo(batch, Integer.MAX_VALUE, Long.MAX_VALUE);
+    return batch;
+  }
+
+  private static void assertIds(MetricsQueue queue, String... ids) {
+    List<String> actual = new ArrayList<>();
+    Points batch = drain(queue);
+    for (int i = 0; i < batch.size(); i++) {
+      actual.add(batch.id(i));
+    }
+    assertEquals(Arrays.asList(ids), actual);
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.hawkular.spi.MetricSink;
+import org.hawkular.metrics.client.common.SingleMetric;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hawkular.metrics.client.common.MetricType.*;
+
+/**
+ * Compares the bytes allocated to encode a batch with the JSON tree encoding the sender used to do, and with
+ * {@link MixedDataEncoder}.
+ * <p>
+ * It is not a test: surefire does not run it. Run the {@link #main(String[])} method from the IDE, or with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.mainClass=io.vertx.ext.hawkular.impl.MixedDataEncoderBenchmark \
+ *   -Dexec.classpathScope=test
+ * </pre>
+ * Optional arguments are the number of points per batch (defaults to 500) and the number of measured iterations
+ * (defaults to 1000).
+ *
+ * @author Thomas Segismont
+ */
+public class MixedDataEncoderBenchmark {
+
+  public static void main(String[] args) {
+    int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      System.err.println("Thread allocation counters are not supported by this JVM");
+      return;
+    }
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+
+    List<SingleMetric> metrics = new ArrayList<>(batchSize);
+    Points points = new Points(batchSize);
+    for (int i = 0; i < batchSize; i++) {
+      String id = "vertx.http.server.0.0.0.0:8080.metric" + (i % 50);
+      boolean counter = i % 2 == 0;
+      metrics.add(new SingleMetric(id, 1000 + i, (double) i, counter ? COUNTER : GAUGE));
+      points.add(id, 1000 + i, i, counter ? MetricSink.COUNTER : MetricSink.GAUGE);
+    }
+    MixedDataEncoder encoder = new MixedDataEncoder();
+    try {
+      // Warm up both encodings, so that the JIT and the buffer pool are settled
+      long payloadBytes = 0;
+      for (int i = 0; i < iterations; i++) {
+        payloadBytes = jsonTreeEncode(metrics).length();
+        encoder.toBuffer(encoder.encode(points));
+      }
+
+      long threadId = Thread.currentThread().getId();
+      long start = threadBean.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < iterations; i++) {
+        jsonTreeEncode(metrics);
+      }
+      long jsonTree = threadBean.getThreadAllocatedBytes(threadId) - start;
+
+      start = threadBean.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < iterations; i++) {
+        encoder.toBuffer(encoder.encode(points));
+      }
+      long streaming = threadBean.getThreadAllocatedBytes(threadId) - start;
+
+      System.out.printf("Batch of %d points, JSON tree payload of %d bytes%n", batchSize, payloadBytes);
+      System.out.printf("Bytes allocated per batch: JSON tree (before) %d, MixedDataEncoder (after) %d%n",
+        jsonTree / iterations, streaming / iterations);
+    } finally {
+      encoder.close();
+    }
+  }
+
+  // The encoding previously done by Sender, one JSON object per point and per series
+  private static Buffer jsonTreeEncode(List<SingleMetric> metrics) {
+    JsonObject mixedData = new JsonObject();
+    JsonArray counters = new JsonArray();
+    JsonArray gauges = new JsonArray();
+    for (SingleMetric metric : metrics) {
+      JsonObject point = new JsonObject().put("timestamp", metric.getTimestamp()).put("value", metric.getValue());
+      JsonObject series = new JsonObject().put("id", metric.getSource())
+        .put("data", new JsonArray(Collections.singletonList(point)));
+      (metric.getMetricType() == COUNTER ? counters : gauges).add(series);
+    }
+    mixedData.put("counters", counters).put("gauges", gauges);
+    return Buffer.buffer(mixedData.encode(), "UTF-8");
+  }
+}
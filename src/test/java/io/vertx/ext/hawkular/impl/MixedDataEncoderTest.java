@@ -0,0 +1,198 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.hawkular.spi.MetricSink;
+import org.hawkular.metrics.client.common.SingleMetric;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.hawkular.metrics.client.common.MetricType.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class MixedDataEncoderTest {
+
+  private final MixedDataEncoder encoder = new MixedDataEncoder();
+
+  @After
+  public void tearDown() {
+    encoder.close();
+  }
+
+  @Test
+  public void testEmptyBatch() {
+    assertEquals(new JsonObject(), encode(new Points()));
+  }
+
+  @Test
+  public void testPointsAreGroupedById() {
+    JsonObject json = encode(metrics(
+      new SingleMetric("b", 2, 20d, GAUGE),
+      new SingleMetric("a", 3, 3d, COUNTER),
+      new SingleMetric("b", 1, 10d, GAUGE),
+      new SingleMetric("a", 1, 1d, COUNTER),
+      new SingleMetric("c", 1, 1.5, GAUGE)
+    ));
+    JsonArray counters = json.getJsonArray("counters");
+    assertEquals(1, counters.size());
+    assertSeries(counters.getJsonObject(0), "a", 1, 1d, 3, 3d);
+    JsonArray gauges = json.getJsonArray("gauges");
+    assertEquals(2, gauges.size());
+    assertSeries(gauges.getJsonObject(0), "b", 1, 10d, 2, 20d);
+    assertSeries(gauges.getJsonObject(1), "c", 1, 1.5);
+  }
+
+  @Test
+  public void testIdsAreEscaped() {
+    String id = "quote\" backslash\\ newline\n tab\t control\u0001 slash/";
+    JsonObject json = encode(metrics(new SingleMetric(id, 1, 1d, GAUGE)));
+    assertEquals(id, json.getJsonArray("gauges").getJsonObject(0).getString("id"));
+  }
+
+  @Test
+  public void testNonAsciiIds() {
+    String id = "caf\u00e9.\u65e5\u672c.\ud83d\ude00";
+    ByteBuf payload = encoder.encode(metrics(new SingleMetric(id, 1, 1d, GAUGE)));
+    String text = payload.toString(StandardCharsets.UTF_8);
+    assertTrue(text, text.contains("\"" + id + "\""));
+    assertEquals(id, new JsonObject(text).getJsonArray("gauges").getJsonObject(0).getString("id"));
+  }
+
+  @Test
+  public void testLoneSurrogateIsReplaced() {
+    JsonObject json = encode(metrics(new SingleMetric("a\ud83db", 1, 1d, GAUGE)));
+    assertEquals("a?b", json.getJsonArray("gauges").getJsonObject(0).getString("id"));
+  }
+
+  @Test
+  public void testNonFiniteValuesAreSkipped() {
+    JsonObject json = encode(metrics(
+      new SingleMetric("nan", 1, Double.NaN, GAUGE),
+      new SingleMetric("inf", 1, Double.POSITIVE_INFINITY, COUNTER),
+      new SingleMetric("ninf", 1, Double.NEGATIVE_INFINITY, GAUGE),
+      new SingleMetric("mixed", 1, Double.NaN, GAUGE),
+      new SingleMetric("mixed", 2, 2d, GAUGE)
+    ));
+    assertNull(json.getJsonArray("counters"));
+    JsonArray gauges = json.getJsonArray("gauges");
+    assertEquals(1, gauges.size());
+    assertSeries(gauges.getJsonObject(0), "mixed", 2, 2d);
+  }
+
+  @Test
+  public void testValues() {
+    JsonObject json = encode(metrics(
+      new SingleMetric("a", 1, 0d, GAUGE),
+      new SingleMetric("a", 2, -42d, GAUGE),
+      new SingleMetric("a", 3, 0.1, GAUGE),
+      new SingleMetric("a", 4, 1e20, GAUGE),
+      new SingleMetric("a", 5, -Double.MIN_VALUE, GAUGE),
+      new SingleMetric("a", Long.MAX_VALUE, 9007199254740991d, GAUGE)
+    ));
+    assertSeries(json.getJsonArray("gauges").getJsonObject(0), "a", 1, 0d, 2, -42d, 3, 0.1, 4, 1e20, 5,
+      -Double.MIN_VALUE, Long.MAX_VALUE, 9007199254740991d);
+  }
+
+  @Test
+  public void testMaxEncodedSizeIsTightForWidestPoints() {
+    Points metrics = metrics(
+      new SingleMetric("c\"\u0001\u00e9\u65e5\ud83d\ude00\ud83d", Long.MIN_VALUE, -2.2250738585072014E-308, COUNTER),
+      new SingleMetric("g", Long.MIN_VALUE, -1.0000000000000002E-300, GAUGE)
+    );
+    long bound = MixedDataEncoder.ENVELOPE_SIZE + maxEncodedSize(metrics);
+    int size = encoder.encode(metrics).readableBytes();
+    // The first series of each array has no separator
+    assertEquals(bound - 2, size);
+  }
+
+  @Test
+  public void testMaxEncodedSizeIsAnUpperBound() {
+    Random random = new Random(0);
+    for (int i = 0; i < 1000; i++) {
+      Points metrics = new Points();
+      for (int j = random.nextInt(20); j >= 0; j--) {
+        StringBuilder id = new StringBuilder();
+        for (int k = random.nextInt(30); k >= 0; k--) {
+          id.append((char) random.nextInt(random.nextBoolean() ? 0x80 : 0x10000));
+        }
+        double value = random.nextBoolean() ? random.nextLong() : Double.longBitsToDouble(random.nextLong());
+        byte type = random.nextBoolean() ? MetricSink.COUNTER : MetricSink.GAUGE;
+        metrics.add(id.toString(), random.nextLong(), value, type);
+      }
+      long bound = MixedDataEncoder.ENVELOPE_SIZE + maxEncodedSize(metrics);
+      int size = encoder.encode(metrics).readableBytes();
+      assertTrue(size + " > " + bound, size <= bound);
+    }
+  }
+
+  @Test
+  public void testScratchBufferIsReused() {
+    Points batch = new Points();
+    for (int i = 0; i < 500; i++) {
+      batch.add("vertx.http.server.0.0.0.0:8080.metric" + (i % 50), 1000 + i, i,
+        i % 2 == 0 ? MetricSink.COUNTER : MetricSink.GAUGE);
+    }
+    ByteBuf first = encoder.encode(batch);
+    int capacity = first.capacity();
+    // Once grown, the same buffer is written again: batches of the same size don't allocate a payload
+    ByteBuf second = encoder.encode(batch);
+    assertSame(first, second);
+    assertEquals(capacity, second.capacity());
+    JsonObject json = encode(metrics(new SingleMetric("b", 2, 2d, COUNTER)));
+    assertNull(json.getJsonArray("gauges"));
+    assertSeries(json.getJsonArray("counters").getJsonObject(0), "b", 2, 2d);
+  }
+
+  private JsonObject encode(Points metrics) {
+    return new JsonObject(encoder.encode(metrics).toString(StandardCharsets.UTF_8));
+  }
+
+  private static long maxEncodedSize(Points metrics) {
+    long res = 0;
+    for (int i = 0; i < metrics.size(); i++) {
+      res += MixedDataEncoder.maxEncodedSize(metrics.id(i));
+    }
+    return res;
+  }
+
+  private static Points metrics(SingleMetric... metrics) {
+    Points res = new Points();
+    for (SingleMetric metric : metrics) {
+      res.add(metric);
+    }
+    return res;
+  }
+
+  private static void assertSeries(JsonObject series, String id, Number... timestampsAndValues) {
+    assertEquals(id, series.getString("id"));
+    JsonArray data = series.getJsonArray("data");
+    assertEquals(timestampsAndValues.length / 2, data.size());
+    for (int i = 0; i < data.size(); i++) {
+      JsonObject point = data.getJsonObject(i);
+      assertEquals(timestampsAndValues[2 * i].longValue(), point.getLong("timestamp").longValue());
+      assertEquals(timestampsAndValues[2 * i + 1].doubleValue(), point.getDouble("value"), 0);
+    }
+  }
+}
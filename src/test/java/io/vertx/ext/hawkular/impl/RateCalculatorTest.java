@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.ext.hawkular.spi.MetricSink;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class RateCalculatorTest {
+
+  @Test
+  public void testFirstSampleHasNoRate() {
+    MetricSink sink = new MetricSink();
+    RateCalculator rateCalculator = new RateCalculator();
+    sink.counter("a", 1000, 10);
+    rateCalculator.addRates(sink, 0);
+    assertEquals(1, sink.size());
+    assertEquals("a", sink.idOf(0));
+  }
+
+  @Test
+  public void testRatesArePerSecond() {
+    MetricSink sink = new MetricSink();
+    RateCalculator rateCalculator = new RateCalculator();
+    sink.counter("a", 1000, 10).counter("b", 1000, 0);
+    rateCalculator.addRates(sink, 0);
+    sink.clear();
+    sink.counter("a", 3000, 30).counter("b", 1500, 3);
+    rateCalculator.addRates(sink, 0);
+    assertEquals(4, sink.size());
+    assertRate(sink, 2, "a.rate", 3000, 10);
+    assertRate(sink, 3, "b.rate", 1500, 6);
+    sink.clear();
+    // An idle counter has a zero rate
+    sink.counter("a", 4000, 30);
+    rateCalculator.addRates(sink, 0);
+    assertRate(sink, 1, "a.rate", 4000, 0);
+  }
+
+  @Test
+  public void testCounterResetIsNotARate() {
+    MetricSink sink = new MetricSink();
+    RateCalculator rateCalculator = new RateCalculator();
+    sink.counter("a", 1000, 100);
+    rateCalculator.addRates(sink, 0);
+    sink.clear();
+    sink.counter("a", 2000, 5);
+    rateCalculator.addRates(sink, 0);
+    assertEquals(1, sink.size());
+    sink.clear();
+    // The value after the reset is the new baseline
+    sink.counter("a", 3000, 25);
+    rateCalculator.addRates(sink, 0);
+    assertEquals(2, sink.size());
+    assertRate(sink, 1, "a.rate", 3000, 20);
+  }
+
+  @Test
+  public void testNoRateWhenTimeDidNotAdvance() {
+    MetricSink sink = new MetricSink();
+    RateCalculator rateCalculator = new RateCalculator();
+    sink.counter("a", 1000, 10);
+    rateCalculator.addRates(sink, 0);
+    sink.clear();
+    sink.counter("a", 1000, 20);
+    rateCalculator.addRates(sink, 0);
+    assertEquals(1, sink.size());
+    sink.clear();
+    sink.counter("a", 2000, 25);
+    rateCalculator.addRates(sink, 0);
+    assertRate(sink, 1, "a.rate", 2000, 5);
+  }
+
+  @Test
+  public void testGaugesAndPointsBeforeFromAreIgnored() {
+    MetricSink sink = new MetricSink();
+    RateCalculator rateCalculator = new RateCalculator();
+    sink.counter("a", 1000, 10).gauge("g", 1000, 10);
+    rateCalculator.addRates(sink, 1);
+    sink.clear();
+    sink.counter("a", 2000, 20).gauge("g", 2000, 20);
+    rateCalculator.addRates(sink, 0);
+    // The counter was not seen before
+    assertEquals(2, sink.size());
+    sink.clear();
+    sink.counter("a", 3000, 25).gauge("g", 3000, 30);
+    rateCalculator.addRates(sink, 0);
+    assertEquals(3, sink.size());
+    assertRate(sink, 2, "a.rate", 3000, 5);
+  }
+
+  private static void assertRate(MetricSink sink, int point, String id, long timestamp, double rate) {
+    assertEquals(id, sink.idOf(point));
+    assertFalse(sink.isCounter(point));
+    assertEquals(timestamp, sink.timestampOf(point));
+    assertEquals(rate, sink.valueOf(point), 0);
+  }
+}
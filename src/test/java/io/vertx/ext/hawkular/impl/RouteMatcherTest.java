@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.net.impl.SocketAddressImpl;
+import io.vertx.ext.hawkular.VertxHawkularOptions;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class RouteMatcherTest {
+
+  @Test
+  public void testLiteralIsPreferredToParameter() {
+    RouteMatcher matcher = new RouteMatcher(Arrays.asList("/users/:id", "/users/me"));
+    assertEquals(1, matcher.match("/users/me"));
+    assertEquals(0, matcher.match("/users/42"));
+  }
+
+  @Test
+  public void testParameterIsPreferredToWildcard() {
+    RouteMatcher matcher = new RouteMatcher(Arrays.asList("/files/*", "/files/{name}"));
+    assertEquals(1, matcher.match("/files/a"));
+    assertEquals(0, matcher.match("/files/a/b"));
+    assertEquals(0, matcher.match("/files"));
+  }
+
+  @Test
+  public void testFallsBackToParameterWhenLiteralBranchFails() {
+    RouteMatcher matcher = new RouteMatcher(Arrays.asList("/users/:id/orders", "/users/me/profile"));
+    assertEquals(1, matcher.match("/users/me/profile"));
+    assertEquals(0, matcher.match("/users/me/orders"));
+  }
+
+  @Test
+  public void testFirstIdenticalTemplateWins() {
+    RouteMatcher matcher = new RouteMatcher(Arrays.asList("/users/:id", "/users/{userId}"));
+    assertEquals(0, matcher.match("/users/42"));
+  }
+
+  @Test
+  public void testQueryStringAndEmptySegmentsAreIgnored() {
+    RouteMatcher matcher = new RouteMatcher(Arrays.asList("/a/b"));
+    assertEquals(0, matcher.match("/a/b?c=/d"));
+    assertEquals(0, matcher.match("/a//b/"));
+    assertEquals(-1, matcher.match("/a"));
+    assertEquals(-1, matcher.match("/a/b/c"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWildcardMustBeLast() {
+    new RouteMatcher(Arrays.asList("/a/*/b"));
+  }
+
+  @Test
+  public void testUnmatchedRequestsFallBack() {
+    HttpServerMetricsImpl metrics = serverMetrics(10, "/users/:id");
+    assertEquals("GET./users/:id", metrics.route(HttpMethod.GET, "/users/42").getName());
+    assertEquals("GET._unmatched", metrics.route(HttpMethod.GET, "/orders").getName());
+    assertEquals("POST._unmatched", metrics.route(HttpMethod.POST, "/").getName());
+  }
+
+  @Test
+  public void testRouteCountIsCapped() {
+    HttpServerMetricsImpl metrics = serverMetrics(2, "/a", "/b", "/c");
+    RouteMetrics a = metrics.route(HttpMethod.GET, "/a");
+    assertSame(a, metrics.route(HttpMethod.GET, "/a"));
+    assertEquals("PUT./b", metrics.route(HttpMethod.PUT, "/b").getName());
+    assertEquals("_overflow", metrics.route(HttpMethod.GET, "/c").getName());
+    assertEquals("_overflow", metrics.route(HttpMethod.GET, "/unknown").getName());
+    // Existing routes are still measured separately
+    assertSame(a, metrics.route(HttpMethod.GET, "/a"));
+  }
+
+  private static HttpServerMetricsImpl serverMetrics(int maxRoutes, String... templates) {
+    VertxHawkularOptions options = new VertxHawkularOptions()
+      .setHttpServerRoutes(Arrays.asList(templates))
+      .setMaxHttpServerRoutes(maxRoutes);
+    HttpServerMetricsSupplier supplier = new HttpServerMetricsSupplier(options);
+    return new HttpServerMetricsImpl(new SocketAddressImpl(8080, "localhost"), supplier);
+  }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.hawkular.VertxHawkularOptions;
+import org.hawkular.metrics.client.common.SingleMetric;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import static java.util.concurrent.TimeUnit.*;
+import static org.hawkular.metrics.client.common.MetricType.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class SenderTest {
+  private static final String BASE_NAME = "vertx.monitor.";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Vertx vertx;
+  private Context context;
+  private int port;
+  private Sender sender;
+
+  @Before
+  public void setUp() throws Exception {
+    vertx = Vertx.vertx();
+    context = vertx.getOrCreateContext();
+    port = freePort();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (sender != null) {
+      onContext(() -> {
+        sender.stop();
+        return null;
+      });
+    }
+    vertx.close();
+  }
+
+  @Test
+  public void testByteCappedQueueSpoolsInsteadOfDropping() throws Exception {
+    // The server never responds: the first batch holds the only slot of the window
+    startServer(request -> {
+    });
+    int pointBytes = MixedDataEncoder.maxEncodedSize("metric.000");
+    createSender(options()
+      .setMaxQueueBytes(40 * pointBytes)
+      .setSpoolEnabled(true)
+      .setSpoolDirectory(folder.getRoot().getPath()));
+    for (int i = 0; i < 40; i++) {
+      handle(metrics(5 * i, 5));
+    }
+    Map<String, Double> values = collect();
+    assertEquals(0, values.get(BASE_NAME + "droppedPoints"), 0);
+    assertTrue(values.get(BASE_NAME + "spooledBatches") > 0);
+  }
+
+  @Test
+  public void testStopDoesNotSpoolRequestsInFlight() throws Exception {
+    CountDownLatch received = new CountDownLatch(1);
+    startServer(request -> received.countDown());
+    createSender(options()
+      .setSpoolEnabled(true)
+      .setSpoolDirectory(folder.getRoot().getPath()));
+    handle(metrics(0, 10));
+    assertTrue(received.await(10, SECONDS));
+    onContext(() -> {
+      sender.stop();
+      return null;
+    });
+    // Closing the HTTP client fails the request in flight
+    long deadline = System.nanoTime() + NANOSECONDS.convert(10, SECONDS);
+    while (collect().get(BASE_NAME + "inFlightRequests") > 0) {
+      assertTrue(System.nanoTime() - deadline < 0);
+      MILLISECONDS.sleep(10);
+    }
+    assertEquals(0, collect().get(BASE_NAME + "spooledBatches"), 0);
+    sender = null;
+    File[] segments = folder.getRoot().listFiles((dir, name) -> name.startsWith("spool-"));
+    assertEquals(0, segments.length);
+  }
+
+  @Test
+  public void testBatchesAreSentToTheTenantOfTheirQueue() throws Exception {
+    Map<String, List<String>> idsByTenant = new ConcurrentHashMap<>();
+    CountDownLatch received = new CountDownLatch(3);
+    startServer(request -> request.bodyHandler(body -> {
+      idsByTenant.put(request.getHeader("Hawkular-Tenant"), ids(new JsonObject(body.toString())));
+      request.response().end();
+      received.countDown();
+    }));
+    createSender(options()
+      .setMaxInFlightRequests(3)
+      .setTenant("ops")
+      .addTenantPrefix("app.", "app")
+      .addTenantPrefix("app.billing.", "billing"));
+    List<SingleMetric> metrics = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      metrics.add(new SingleMetric("app.orders." + i, 1000, 1d, GAUGE));
+      metrics.add(new SingleMetric("app.billing." + i, 1000, 1d, GAUGE));
+      metrics.add(new SingleMetric("vertx.pool." + i, 1000, 1d, GAUGE));
+    }
+    handle(metrics);
+    assertTrue(received.await(10, SECONDS));
+    assertEquals(3, idsByTenant.size());
+    assertIdsStartWith(idsByTenant.get("app"), "app.orders.");
+    assertIdsStartWith(idsByTenant.get("billing"), "app.billing.");
+    assertIdsStartWith(idsByTenant.get("ops"), "vertx.pool.");
+  }
+
+  @Test
+  public void testQueueCapacityIsSplitBetweenTenants() throws Exception {
+    startServer(request -> {
+    });
+    // Batches are never full, nothing is sent
+    createSender(options()
+      .setBatchSize(100)
+      .setMaxQueueSize(20)
+      .addTenantPrefix("app.", "app"));
+    List<SingleMetric> metrics = new ArrayList<>();
+    for (int i = 0; i < 15; i++) {
+      metrics.add(new SingleMetric("app.orders." + i, 1000, 1d, GAUGE));
+      metrics.add(new SingleMetric("vertx.pool." + i, 1000, 1d, GAUGE));
+    }
+    handle(metrics);
+    // Each tenant's queue holds 10 metrics
+    Map<String, Double> values = collect();
+    assertEquals(20, values.get(BASE_NAME + "queuedPoints"), 0);
+    assertEquals(10, values.get(BASE_NAME + "droppedPoints"), 0);
+  }
+
+  @Test
+  public void testFailedRequestFailsOverOnceThenSpools() throws Exception {
+    // Both endpoints fail with a server error
+    int otherPort = freePort();
+    AtomicInteger firstRequests = new AtomicInteger();
+    AtomicInteger otherRequests = new AtomicInteger();
+    startServer(port, request -> {
+      firstRequests.incrementAndGet();
+      request.response().setStatusCode(503).end();
+    });
+    startServer(otherPort, request -> {
+      otherRequests.incrementAndGet();
+      request.response().setStatusCode(503).end();
+    });
+    createSender(options()
+      .addEndpoint("localhost:" + port)
+      .addEndpoint("localhost:" + otherPort)
+      .setSpoolEnabled(true)
+      .setSpoolDirectory(folder.getRoot().getPath()));
+    handle(metrics(0, 10));
+    long deadline = System.nanoTime() + NANOSECONDS.convert(10, SECONDS);
+    while (collect().get(BASE_NAME + "spooledBatches") == 0) {
+      assertTrue(System.nanoTime() - deadline < 0);
+      MILLISECONDS.sleep(10);
+    }
+    // The spooled batch is replayed after a second at the earliest
+    Map<String, Double> values = collect();
+    assertEquals(1, values.get(BASE_NAME + "failovers"), 0);
+    assertEquals(2, values.get(BASE_NAME + "failedBatches"), 0);
+    assertEquals(1, values.get(BASE_NAME + "spooledBatches"), 0);
+    assertEquals(0, values.get(BASE_NAME + "endpoint.localhost:" + port + ".healthy"), 0);
+    assertEquals(0, values.get(BASE_NAME + "endpoint.localhost:" + otherPort + ".healthy"), 0);
+    assertEquals(1, firstRequests.get());
+    assertEquals(1, otherRequests.get());
+  }
+
+  @Test
+  public void testBodyBelowCompressionThresholdIsNotCompressed() throws Exception {
+    CompletableFuture<HttpServerRequest> request = new CompletableFuture<>();
+    CompletableFuture<Buffer> body = new CompletableFuture<>();
+    startServer(req -> req.bodyHandler(buffer -> {
+      request.complete(req);
+      body.complete(buffer);
+      req.response().end();
+    }));
+    createSender(options()
+      .setCompressionEnabled(true)
+      .setCompressionThreshold(64 * 1024));
+    handle(metrics(0, 10));
+    assertNull(request.get(10, SECONDS).getHeader("Content-Encoding"));
+    assertEquals(10, ids(new JsonObject(body.get(10, SECONDS).toString())).size());
+    assertEquals(0, collect().get(BASE_NAME + "compressedBytes"), 0);
+  }
+
+  @Test
+  public void testBodyAboveCompressionThresholdIsCompressed() throws Exception {
+    CompletableFuture<HttpServerRequest> request = new CompletableFuture<>();
+    CompletableFuture<Buffer> body = new CompletableFuture<>();
+    startServer(req -> req.bodyHandler(buffer -> {
+      request.complete(req);
+      body.complete(buffer);
+      req.response().end();
+    }));
+    createSender(options()
+      .setCompressionEnabled(true)
+      .setCompressionThreshold(1));
+    handle(metrics(0, 10));
+    assertEquals("gzip", request.get(10, SECONDS).getHeader("Content-Encoding"));
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body.get(10, SECONDS).getBytes()))) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] chunk = new byte[4096];
+      for (int read; (read = in.read(chunk)) >= 0; ) {
+        out.write(chunk, 0, read);
+      }
+      assertEquals(10, ids(new JsonObject(out.toString("UTF-8"))).size());
+    }
+  }
+
+  private VertxHawkularOptions options() {
+    // Batches are only sent when full, requests never time out
+    return new VertxHawkularOptions()
+      .setHost("localhost")
+      .setPort(port)
+      .setBatchSize(10)
+      .setBatchDelay(3600)
+      .setMaxInFlightRequests(1)
+      .setRequestTimeout(0)
+      .setSpoolSegmentSize(64 * 1024)
+      .setSpoolMaxSize(1024 * 1024);
+  }
+
+  private void createSender(VertxHawkularOptions options) throws Exception {
+    sender = onContext(() -> new Sender(vertx, options, context));
+  }
+
+  private void startServer(Handler<HttpServerRequest> handler) throws Exception {
+    startServer(port, handler);
+  }
+
+  private void startServer(int port, Handler<HttpServerRequest> handler) throws Exception {
+    CompletableFuture<HttpServer> future = new CompletableFuture<>();
+    vertx.createHttpServer().requestHandler(handler).listen(port, "localhost", ar -> {
+      if (ar.succeeded()) {
+        future.complete(ar.result());
+      } else {
+        future.completeExceptionally(ar.cause());
+      }
+    });
+    future.get(10, SECONDS);
+  }
+
+  private void handle(List<SingleMetric> metrics) throws Exception {
+    onContext(() -> {
+      sender.handle(metrics);
+      return null;
+    });
+  }
+
+  private Map<String, Double> collect() throws Exception {
+    Map<String, Double> values = new HashMap<>();
+    for (SingleMetric metric : onContext(sender::collect)) {
+      values.put(metric.getSource(), metric.getValue());
+    }
+    return values;
+  }
+
+  // The sender must be confined to its context
+  private <T> T onContext(Supplier<T> action) throws Exception {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    context.runOnContext(v -> {
+      try {
+        future.complete(action.get());
+      } catch (Throwable t) {
+        future.completeExceptionally(t);
+      }
+    });
+    return future.get(10, SECONDS);
+  }
+
+  private static List<SingleMetric> metrics(int first, int count) {
+    List<SingleMetric> metrics = new ArrayList<>(count);
+    for (int i = first; i < first + count; i++) {
+      metrics.add(new SingleMetric(String.format("metric.%03d", i), 1000 + i, (double) i, GAUGE));
+    }
+    return metrics;
+  }
+
+  private static List<String> ids(JsonObject payload) {
+    List<String> ids = new ArrayList<>();
+    for (String type : payload.fieldNames()) {
+      JsonArray series = payload.getJsonArray(type);
+      for (int i = 0; i < series.size(); i++) {
+        ids.add(series.getJsonObject(i).getString("id"));
+      }
+    }
+    return ids;
+  }
+
+  private static void assertIdsStartWith(List<String> ids, String prefix) {
+    assertEquals(10, ids.size());
+    for (String id : ids) {
+      assertTrue(id, id.startsWith(prefix));
+    }
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
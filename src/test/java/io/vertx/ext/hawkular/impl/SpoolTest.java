@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class SpoolTest {
+  private static final int SEGMENT_SIZE = 64;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testAppendAndRead() throws Exception {
+    Spool spool = new Spool(folder.getRoot(), SEGMENT_SIZE, 4 * SEGMENT_SIZE);
+    assertTrue(spool.isEmpty());
+    assertNull(spool.peek());
+    assertTrue(spool.append(Buffer.buffer("first"), false, null));
+    assertTrue(spool.append(Buffer.buffer("second"), true, "tenant"));
+    assertRecord(spool.peek(), "first", false, null);
+    spool.remove(spool.peek());
+    assertRecord(spool.peek(), "second", true, "tenant");
+    spool.remove(spool.peek());
+    assertTrue(spool.isEmpty());
+    spool.close();
+  }
+
+  @Test
+  public void testTenantTaggedRecords() throws Exception {
+    Spool spool = new Spool(folder.getRoot(), SEGMENT_SIZE, 4 * SEGMENT_SIZE);
+    spool.append(Buffer.buffer("a"), false, "t\u00e9nant");
+    spool.append(Buffer.buffer("b"), false, "");
+    spool.append(Buffer.buffer("c"), false, null);
+    assertRecord(spool.peek(), "a", false, "t\u00e9nant");
+    spool.remove(spool.peek());
+    assertRecord(spool.peek(), "b", false, "");
+    spool.remove(spool.peek());
+    assertRecord(spool.peek(), "c", false, null);
+    spool.close();
+  }
+
+  @Test
+  public void testSegmentRollover() throws Exception {
+    Spool spool = new Spool(folder.getRoot(), SEGMENT_SIZE, 10 * SEGMENT_SIZE);
+    // 5 bytes of header and 20 bytes of payload: two records per segment
+    for (int i = 0; i < 5; i++) {
+      assertTrue(spool.append(payload(i), false, null));
+    }
+    assertEquals(3, segmentFiles().length);
+    for (int i = 0; i < 4; i++) {
+      assertRecord(spool.peek(), payload(i).toString(), false, null);
+      spool.remove(spool.peek());
+    }
+    // Fully read segments are deleted
+    assertEquals(1, segmentFiles().length);
+    assertRecord(spool.peek(), payload(4).toString(), false, null);
+    spool.close();
+  }
+
+  @Test
+  public void testSizeCapDropsOldestSegment() throws Exception {
+    Spool spool = new Spool(folder.getRoot(), SEGMENT_SIZE, 2 * SEGMENT_SIZE);
+    for (int i = 0; i < 5; i++) {
+      assertTrue(spool.append(payload(i), false, null));
+    }
+    assertEquals(2, segmentFiles().length);
+    assertEquals(2, spool.getDropped());
+    for (int i = 2; i < 5; i++) {
+      assertRecord(spool.peek(), payload(i).toString(), false, null);
+      spool.remove(spool.peek());
+    }
+    assertTrue(spool.isEmpty());
+    spool.close();
+  }
+
+  @Test
+  public void testRemoveAfterPeekedSegmentWasDropped() throws Exception {
+    Spool spool = new Spool(folder.getRoot(), SEGMENT_SIZE, 2 * SEGMENT_SIZE);
+    for (int i = 0; i < 4; i++) {
+      assertTrue(spool.append(payload(i), false, null));
+    }
+    Spool.Record replayed = spool.peek();
+    assertRecord(replayed, payload(0).toString(), false, null);
+    // While the record is replayed, an append discards its segment
+    assertTrue(spool.append(payload(4), false, null));
+    assertEquals(2, spool.getDropped());
+    assertFalse(spool.remove(replayed));
+    // The oldest record left must not be skipped
+    assertRecord(spool.peek(), payload(2).toString(), false, null);
+    spool.close();
+    assertFalse(spool.remove(replayed));
+  }
+
+  @Test
+  public void testTooBigRecordIsDropped() throws Exception {
+    Spool spool = new Spool(folder.getRoot(), SEGMENT_SIZE, 2 * SEGMENT_SIZE);
+    assertFalse(spool.append(Buffer.buffer(new byte[SEGMENT_SIZE]), false, null));
+    assertFalse(spool.append(Buffer.buffer(new byte[SEGMENT_SIZE - 8]), false, "tenant"));
+    assertEquals(2, spool.getDropped());
+    assertTrue(spool.isEmpty());
+    spool.close();
+  }
+
+  @Test
+  public void testRecoveryAfterCrash() throws Exception {
+    Spool spool = new Spool(folder.getRoot(), SEGMENT_SIZE, 10 * SEGMENT_SIZE);
+    for (int i = 0; i < 3; i++) {
+      spool.append(payload(i), i == 1, i == 2 ? "tenant" : null);
+    }
+    spool.remove(spool.peek());
+    // Not closed: the process died, records are recovered from the segment files
+    Spool recovered = new Spool(folder.getRoot(), SEGMENT_SIZE, 10 * SEGMENT_SIZE);
+    // The read position is not persisted, the first record is read again
+    assertRecord(recovered.peek(), payload(0).toString(), false, null);
+    recovered.remove(recovered.peek());
+    assertRecord(recovered.peek(), payload(1).toString(), true, null);
+    recovered.remove(recovered.peek());
+    // Recovered segments are sealed, new records go to a new segment
+    assertTrue(recovered.append(payload(3), false, null));
+    assertRecord(recovered.peek(), payload(2).toString(), false, "tenant");
+    recovered.remove(recovered.peek());
+    assertRecord(recovered.peek(), payload(3).toString(), false, null);
+    recovered.remove(recovered.peek());
+    assertTrue(recovered.isEmpty());
+    recovered.close();
+    spool.close();
+  }
+
+  @Test
+  public void testRecoveryIgnoresTruncatedRecord() throws Exception {
+    Spool spool = new Spool(folder.getRoot(), SEGMENT_SIZE, 10 * SEGMENT_SIZE);
+    spool.append(payload(0), false, null);
+    spool.close();
+    File[] files = segmentFiles();
+    assertEquals(1, files.length);
+    // A record whose length runs past the end of the segment, as if the write had been interrupted
+    try (RandomAccessFile file = new RandomAccessFile(files[0], "rw")) {
+      file.seek(5 + 20);
+      file.writeInt(SEGMENT_SIZE);
+    }
+    Spool recovered = new Spool(folder.getRoot(), SEGMENT_SIZE, 10 * SEGMENT_SIZE);
+    assertRecord(recovered.peek(), payload(0).toString(), false, null);
+    recovered.remove(recovered.peek());
+    assertTrue(recovered.isEmpty());
+    recovered.close();
+  }
+
+  @Test
+  public void testCloseKeepsUnreadRecords() throws Exception {
+    Spool spool = new Spool(folder.getRoot(), SEGMENT_SIZE, 10 * SEGMENT_SIZE);
+    spool.append(payload(0), false, null);
+    spool.append(payload(1), false, null);
+    spool.append(payload(2), false, null);
+    spool.remove(spool.peek());
+    spool.remove(spool.peek());
+    spool.close();
+    // The first segment was fully read and is deleted, the second one is kept
+    assertEquals(1, segmentFiles().length);
+    Spool reopened = new Spool(folder.getRoot(), SEGMENT_SIZE, 10 * SEGMENT_SIZE);
+    assertRecord(reopened.peek(), payload(2).toString(), false, null);
+    reopened.remove(reopened.peek());
+    reopened.close();
+    assertEquals(0, segmentFiles().length);
+  }
+
+  @Test
+  public void testEmptySegmentsAreDeletedOnRecovery() throws Exception {
+    assertTrue(new File(folder.getRoot(), "spool-7.dat").createNewFile());
+    assertTrue(new File(folder.getRoot(), "spool-garbage.dat").createNewFile());
+    Spool spool = new Spool(folder.getRoot(), SEGMENT_SIZE, 10 * SEGMENT_SIZE);
+    assertTrue(spool.isEmpty());
+    assertFalse(new File(folder.getRoot(), "spool-7.dat").exists());
+    // New segments are numbered after recovered ones
+    spool.append(payload(0), false, null);
+    assertTrue(new File(folder.getRoot(), "spool-8.dat").exists());
+    spool.close();
+  }
+
+  private static Buffer payload(int i) {
+    return Buffer.buffer(String.format("payload-%012d", i));
+  }
+
+  private File[] segmentFiles() throws IOException {
+    return folder.getRoot().listFiles((dir, name) -> name.matches("spool-\\d+\\.dat"));
+  }
+
+  private static void assertRecord(Spool.Record record, String body, boolean gzip, String tenant) {
+    assertNotNull(record);
+    assertEquals(body, record.getBody().toString());
+    assertEquals(gzip, record.isGzip());
+    assertEquals(tenant, record.getTenant());
+  }
+}
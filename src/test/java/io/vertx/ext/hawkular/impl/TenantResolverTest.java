@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 Red Hat, Inc.
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  and Apache License v2.0 which accompanies this distribution.
+ *
+ *  The Eclipse Public License is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  The Apache License v2.0 is available at
+ *  http://www.opensource.org/licenses/apache2.0.php
+ *
+ *  You may elect to redistribute this code under either of these licenses.
+ */
+package io.vertx.ext.hawkular.impl;
+
+import io.vertx.ext.hawkular.VertxHawkularOptions;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Thomas Segismont
+ */
+public class TenantResolverTest {
+
+  @Test
+  public void testSingleTenant() {
+    TenantResolver resolver = new TenantResolver(new VertxHawkularOptions().setTenant("ops"));
+    assertTrue(resolver.isSingleTenant());
+    assertEquals(1, resolver.getTenantCount());
+    assertEquals("ops", resolver.getDefaultTenant());
+    assertEquals("ops", resolver.resolve("vertx.http.server.requests"));
+  }
+
+  @Test
+  public void testLongestPrefixWins() {
+    TenantResolver resolver = new TenantResolver(new VertxHawkularOptions()
+      .addTenantPrefix("app.", "app")
+      .addTenantPrefix("app.billing.", "billing")
+      .addTenantPrefix("app.b", "b"));
+    assertFalse(resolver.isSingleTenant());
+    assertEquals("billing", resolver.resolve("app.billing.invoices"));
+    assertEquals("b", resolver.resolve("app.bookings"));
+    assertEquals("app", resolver.resolve("app.orders"));
+  }
+
+  @Test
+  public void testUnmatchedMetricsGoToDefaultTenant() {
+    TenantResolver resolver = new TenantResolver(new VertxHawkularOptions()
+      .setTenant("ops")
+      .addTenantPrefix("app.", "app"));
+    assertEquals("ops", resolver.resolve("vertx.eventbus.handlers"));
+    // Prefixes are matched as is, not as name segments
+    assertEquals("ops", resolver.resolve("app"));
+    assertEquals("app", resolver.resolve("app."));
+  }
+
+  @Test
+  public void testTenantCountIncludesDefaultTenantOnce() {
+    TenantResolver resolver = new TenantResolver(new VertxHawkularOptions()
+      .setTenant("ops")
+      .addTenantPrefix("app.", "app")
+      .addTenantPrefix("web.", "app")
+      .addTenantPrefix("infra.", "ops"));
+    assertEquals(2, resolver.getTenantCount());
+  }
+}